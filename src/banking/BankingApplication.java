@@ -1,15 +1,20 @@
 package banking;
 
+import banking.controller.AccountController;
+import banking.controller.InterestScheduler;
 import banking.util.DatabaseUtil;
 import banking.view.LoginView;
 import javafx.application.Application;
 import javafx.stage.Stage;
 
 public class BankingApplication extends Application {
+    private InterestScheduler interestScheduler;
 
     @Override
     public void start(Stage primaryStage) {
         DatabaseUtil.initializeDatabase();
+        interestScheduler = new InterestScheduler(new AccountController());
+        interestScheduler.start();
 
         LoginView loginView = new LoginView(primaryStage);
         loginView.show();
@@ -17,6 +22,9 @@ public class BankingApplication extends Application {
 
     @Override
     public void stop() {
+        if (interestScheduler != null) {
+            interestScheduler.stop();
+        }
         DatabaseUtil.closeConnection();
     }
 
@@ -2,29 +2,57 @@ package banking.controller;
 
 import banking.dao.AccountDAO;
 import banking.dao.CustomerDAO;
+import banking.dao.IdempotencyDAO;
+import banking.dao.InterestRunDAO;
+import banking.dao.Page;
+import banking.dao.PageRequest;
+import banking.dao.ProductRuleDAO;
 import banking.dao.TransactionDAO;
+import banking.dao.TransferDAO;
 import banking.model.*;
+import banking.util.AccountLockManager;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.Set;
 
 public class AccountController {
+    private static final int BATCH_CHUNK_SIZE = 500;
+
     private AccountDAO accountDAO;
     private CustomerDAO customerDAO;
     private TransactionDAO transactionDAO;
+    private TransferDAO transferDAO;
+    private InterestRunDAO interestRunDAO;
+    private ProductRuleDAO productRuleDAO;
+    private ProductRuleEngine ruleEngine;
+    private AccountLockManager locks;
+    private AccountNumberAllocator accountNumbers;
 
     public AccountController() {
         this.accountDAO = new AccountDAO();
         this.customerDAO = new CustomerDAO();
         this.transactionDAO = new TransactionDAO();
+        this.transferDAO = new TransferDAO();
+        this.interestRunDAO = new InterestRunDAO();
+        this.productRuleDAO = new ProductRuleDAO();
+        this.ruleEngine = new ProductRuleEngine(productRuleDAO);
+        this.locks = AccountLockManager.shared();
+        this.accountNumbers = AccountNumberAllocator.shared();
     }
 
-    public Account openAccount(int customerId, String accountType, String branch, String companyName, String companyAddress, double initialDeposit) {
+    public Account openAccount(int customerId, String accountType, String branch, String companyName, String companyAddress, long initialDeposit) {
         Customer customer = customerDAO.getCustomerById(customerId);
         if (customer == null) {
             throw new IllegalArgumentException("Customer not found");
         }
 
-        String accountNumber = generateAccountNumber();
+        String accountNumber = accountNumbers.next();
         Account account;
 
         switch (accountType) {
@@ -37,7 +65,7 @@ public class AccountController {
 
             case "Investment":
                 if (initialDeposit < InvestmentAccount.getMinimumOpeningDeposit()) {
-                    throw new IllegalArgumentException("Investment account requires minimum deposit of BWP " + InvestmentAccount.getMinimumOpeningDeposit());
+                    throw new IllegalArgumentException("Investment account requires minimum deposit of BWP " + Money.format(InvestmentAccount.getMinimumOpeningDeposit()));
                 }
                 account = new InvestmentAccount(accountNumber, branch, customer, initialDeposit);
                 break;
@@ -62,6 +90,7 @@ public class AccountController {
         if (accountDAO.createAccount(account)) {
             if (initialDeposit > 0) {
                 Transaction transaction = new Transaction(
+                        account.getAccountId(),
                         accountNumber,
                         Transaction.TransactionType.DEPOSIT,
                         initialDeposit,
@@ -76,97 +105,315 @@ public class AccountController {
         return null;
     }
 
-    public boolean deposit(String accountNumber, double amount) {
-        Account account = accountDAO.getAccountByNumber(accountNumber);
-        if (account == null) {
-            throw new IllegalArgumentException("Account not found");
+    // Failures surface as exceptions from postDeposit/postWithdrawal
+    public void deposit(String accountNumber, long amount) {
+        postDeposit(accountNumber, amount);
+    }
+
+    public void withdraw(String accountNumber, long amount) {
+        postWithdrawal(accountNumber, amount);
+    }
+
+    // Balance change and ledger row are one statement pair in one commit; returns the new balance.
+    // Amounts and balances are thebe (see Money).
+    public long postDeposit(String accountNumber, long amount) {
+        return postDeposit(accountNumber, amount, null);
+    }
+
+    // A client that may resend the request (a retry after a timeout, a double click)
+    // passes the same idempotency key each time and gets the first result back
+    public long postDeposit(String accountNumber, long amount, String idempotencyKey) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Deposit amount must be positive");
         }
+        requireWellFormed(accountNumber);
+        IdempotencyDAO.validateKey(idempotencyKey);
+        AccountLockManager.Lease lease = locks.lock(accountNumber);
+        try {
+            Long balance = accountDAO.postDeposit(accountNumber, amount, "Deposit", idempotencyKey);
+            if (balance == null) {
+                throw postingFailure(accountNumber, amount, false);
+            }
+            return balance;
+        } finally {
+            lease.close();
+        }
+    }
 
-        account.deposit(amount);
-        boolean success = accountDAO.updateAccountBalance(accountNumber, account.getBalance());
+    public long postWithdrawal(String accountNumber, long amount) {
+        return postWithdrawal(accountNumber, amount, null);
+    }
 
-        if (success) {
-            Transaction transaction = new Transaction(
-                    accountNumber,
-                    Transaction.TransactionType.DEPOSIT,
-                    amount,
-                    account.getBalance(),
-                    "Deposit"
-            );
-            transactionDAO.createTransaction(transaction);
+    public long postWithdrawal(String accountNumber, long amount, String idempotencyKey) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Withdrawal amount must be positive");
+        }
+        requireWellFormed(accountNumber);
+        IdempotencyDAO.validateKey(idempotencyKey);
+        AccountLockManager.Lease lease = locks.lock(accountNumber);
+        try {
+            Long balance = accountDAO.postWithdrawal(accountNumber, amount, "Withdrawal", idempotencyKey);
+            if (balance == null) {
+                throw postingFailure(accountNumber, amount, true);
+            }
+            return balance;
+        } finally {
+            lease.close();
         }
+    }
 
-        return success;
+    // Moves money between two accounts in one database transaction: both balances,
+    // the transfer row and its TRANSFER_OUT/TRANSFER_IN ledger rows commit together
+    public Transfer transfer(String fromAccountNumber, String toAccountNumber, long amount, String description) {
+        return transfer(fromAccountNumber, toAccountNumber, amount, description, null);
     }
 
-    public boolean withdraw(String accountNumber, double amount) {
-        Account account = accountDAO.getAccountByNumber(accountNumber);
-        if (account == null) {
-            throw new IllegalArgumentException("Account not found");
+    public Transfer transfer(String fromAccountNumber, String toAccountNumber, long amount, String description,
+                             String idempotencyKey) {
+        if (fromAccountNumber == null || toAccountNumber == null) {
+            throw new IllegalArgumentException("Both accounts are required");
+        }
+        if (fromAccountNumber.equals(toAccountNumber)) {
+            throw new IllegalArgumentException("Cannot transfer to the same account");
+        }
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Transfer amount must be positive");
+        }
+        requireWellFormed(fromAccountNumber);
+        requireWellFormed(toAccountNumber);
+        IdempotencyDAO.validateKey(idempotencyKey);
+
+        // Both accounts in stripe order, so opposite transfers cannot deadlock
+        AccountLockManager.Lease lease = locks.lock(fromAccountNumber, toAccountNumber);
+        try {
+            Transfer transfer = transferDAO.postTransfer(
+                    new Transfer(fromAccountNumber, toAccountNumber, amount, description), idempotencyKey);
+            if (transfer == null) {
+                RuntimeException failure = diagnosePosting(fromAccountNumber, amount, true);
+                if (failure == null) {
+                    failure = diagnosePosting(toAccountNumber, amount, false);
+                }
+                throw failure != null ? failure
+                        : new IllegalStateException("Transfer from " + fromAccountNumber + " could not be posted");
+            }
+            return transfer;
+        } finally {
+            lease.close();
         }
+    }
+
+    // Pays many accounts from one source, e.g. a payroll file. Every line is checked
+    // first and bad lines are marked REJECTED without stopping the batch; the source
+    // must cover the total of the good lines, checked once. The good lines are then
+    // posted in chunked transactions, and each line reports its own result.
+    public BatchTransferResult batchTransfer(String fromAccountNumber, List<PaymentLine> lines) {
+        long start = System.currentTimeMillis();
+        if (lines == null || lines.isEmpty()) {
+            throw new IllegalArgumentException("Batch has no payment lines");
+        }
+        requireWellFormed(fromAccountNumber);
+
+        Set<String> destinations = new HashSet<>();
+        for (PaymentLine line : lines) {
+            if (AccountNumberAllocator.isWellFormed(line.getToAccountNumber())) {
+                destinations.add(line.getToAccountNumber());
+            }
+        }
+        Map<String, Account> accounts = accountDAO.getAccountsByNumbers(destinations);
+
+        List<PaymentLine> valid = new ArrayList<>();
+        long total = 0;
+        for (PaymentLine line : lines) {
+            String reason = validatePaymentLine(fromAccountNumber, line, accounts.get(line.getToAccountNumber()));
+            if (reason != null) {
+                line.reject(reason);
+            } else {
+                valid.add(line);
+                try {
+                    total = Math.addExact(total, line.getAmount());
+                } catch (ArithmeticException e) {
+                    throw new IllegalArgumentException("Batch total is too large");
+                }
+            }
+        }
+
+        AccountLockManager.Lease lease = locks.lock(fromAccountNumber);
+        try {
+            Account source = accountDAO.getAccountByNumber(fromAccountNumber);
+            if (source == null) {
+                throw new IllegalArgumentException("Account not found");
+            }
+            long balanceBefore = source.getBalance();
+            if (valid.isEmpty()) {
+                return new BatchTransferResult(fromAccountNumber, lines, balanceBefore, System.currentTimeMillis() - start);
+            }
+            // One funds check for the whole batch, with the usual account rules
+            source.withdraw(total);
 
-        account.withdraw(amount);
-        boolean success = accountDAO.updateAccountBalance(accountNumber, account.getBalance());
+            // Null when no chunk committed, so nothing was debited
+            Long balance = transferDAO.postBatch(fromAccountNumber, valid, BATCH_CHUNK_SIZE);
+            return new BatchTransferResult(fromAccountNumber, lines,
+                    balance != null ? balance : balanceBefore, System.currentTimeMillis() - start);
+        } finally {
+            lease.close();
+        }
+    }
 
-        if (success) {
-            Transaction transaction = new Transaction(
-                    accountNumber,
-                    Transaction.TransactionType.WITHDRAWAL,
-                    amount,
-                    account.getBalance(),
-                    "Withdrawal"
-            );
-            transactionDAO.createTransaction(transaction);
+    private String validatePaymentLine(String fromAccountNumber, PaymentLine line, Account destination) {
+        if (line.getToAccountNumber() == null || line.getToAccountNumber().trim().isEmpty()) {
+            return "Destination account is required";
+        }
+        if (line.getToAccountNumber().equals(fromAccountNumber)) {
+            return "Cannot transfer to the same account";
+        }
+        if (line.getAmount() <= 0) {
+            return "Transfer amount must be positive";
         }
+        if (!AccountNumberAllocator.isWellFormed(line.getToAccountNumber())) {
+            return "Invalid account number";
+        }
+        if (destination == null) {
+            return "Account not found";
+        }
+        if (!destination.isActive()) {
+            return "Account is not active";
+        }
+        return null;
+    }
 
-        return success;
+    private RuntimeException postingFailure(String accountNumber, long amount, boolean withdrawal) {
+        RuntimeException failure = diagnosePosting(accountNumber, amount, withdrawal);
+        return failure != null ? failure
+                : new IllegalStateException("Transaction could not be posted to account " + accountNumber);
     }
 
-    public boolean payInterest(String accountNumber) {
+    // Only runs when a posting was refused: reload the account and let the model
+    // rules produce the same error the old read-modify-write path reported.
+    // Null if the account would have accepted it (e.g. a database error).
+    private RuntimeException diagnosePosting(String accountNumber, long amount, boolean withdrawal) {
         Account account = accountDAO.getAccountByNumber(accountNumber);
         if (account == null) {
-            throw new IllegalArgumentException("Account not found");
+            return new IllegalArgumentException("Account not found");
         }
-
-        double interest = account.calculateInterest();
-        if (interest <= 0) {
-            return false;
+        try {
+            if (withdrawal) {
+                account.withdraw(amount);
+            } else {
+                account.deposit(amount);
+            }
+        } catch (RuntimeException e) {
+            return e;
         }
+        return null;
+    }
+
+    public List<Transaction> getTransferTransactions(int transferId) {
+        return transactionDAO.getTransactionsByTransferId(transferId);
+    }
+
+    public long getVersionConflicts() {
+        return AccountDAO.getVersionConflicts();
+    }
+
+    // Pays interest and charges fees for the month just ended, on each account's average
+    // daily balance over it; see InterestEngine. Refuses once the month has been paid, and carries on from
+    // where an interrupted run for the month stopped.
+    public InterestRunResult payInterestToAllAccounts() {
+        return payInterestForPeriod(YearMonth.now().minusMonths(1));
+    }
+
+    public InterestRunResult payInterestForPeriod(YearMonth period) {
+        return newInterestEngine(period).run(false, null);
+    }
+
+    // What payInterestToAllAccounts would still pay, without writing anything
+    public InterestRunResult previewInterestForAllAccounts() {
+        return newInterestEngine(YearMonth.now().minusMonths(1)).run(true, null);
+    }
+
+    // For callers that want progress reports or to cancel the run
+    public InterestEngine newInterestEngine(YearMonth period) {
+        return new InterestEngine(accountDAO, interestRunDAO, ruleEngine, period);
+    }
 
-        account.applyInterest();
-        boolean success = accountDAO.updateAccountBalance(accountNumber, account.getBalance());
+    public List<ProductRule> getProductRules() {
+        List<ProductRule> rules = productRuleDAO.getAllRules();
+        return rules != null ? rules : new ArrayList<>();
+    }
+
+    // The rates and fees a period would be priced with
+    public ProductRules getProductRules(YearMonth period) {
+        return ruleEngine.forPeriod(period);
+    }
 
-        if (success) {
-            Transaction transaction = new Transaction(
-                    accountNumber,
-                    Transaction.TransactionType.INTEREST,
-                    interest,
-                    account.getBalance(),
-                    "Monthly interest payment"
-            );
-            transactionDAO.createTransaction(transaction);
+    // Adds or edits a rate or fee band. Takes effect on this workstation at once and on
+    // the others within seconds; a run already under way keeps the rules it started with.
+    public void saveProductRule(ProductRule rule) {
+        validateProductRule(rule);
+        if (!productRuleDAO.saveRule(rule)) {
+            throw new IllegalStateException("Failed to save product rule");
         }
+        ruleEngine.reload();
+    }
 
-        return success;
+    public void deleteProductRule(int ruleId) {
+        if (!productRuleDAO.deleteRule(ruleId)) {
+            throw new IllegalArgumentException("Product rule not found");
+        }
+        ruleEngine.reload();
     }
 
-    public void payInterestToAllAccounts() {
-        List<Account> accounts = accountDAO.getAllAccounts();
-        for (Account account : accounts) {
-            if (account.isActive() && account.calculateInterest() > 0) {
-                try {
-                    payInterest(account.getAccountNumber());
-                } catch (Exception e) {
-                    System.err.println("Error paying interest to account " + account.getAccountNumber() + ": " + e.getMessage());
-                }
-            }
+    private void validateProductRule(ProductRule rule) {
+        if (!ProductRules.PRODUCTS.contains(rule.getAccountType())) {
+            throw new IllegalArgumentException("Unknown account type '" + rule.getAccountType() + "', expected one of " + ProductRules.PRODUCTS);
+        }
+        if (rule.getKind() == null) {
+            throw new IllegalArgumentException("Rule must be a RATE or a FEE");
         }
+        if (rule.getMinBalance() < 0 || rule.getRate() < 0 || rule.getFee() < 0) {
+            throw new IllegalArgumentException("Band floor, rate and fee cannot be negative");
+        }
+        if (rule.getKind() == ProductRule.Kind.RATE && rule.getRate() > 1) {
+            throw new IllegalArgumentException("Monthly rate is a fraction, e.g. 0.0005 for 0.05%");
+        }
+        YearMonth from = parsePeriod(rule.getValidFrom());
+        YearMonth to = parsePeriod(rule.getValidTo());
+        if (from != null && to != null && to.isBefore(from)) {
+            throw new IllegalArgumentException("Promotion ends before it starts");
+        }
+    }
+
+    private static YearMonth parsePeriod(String period) {
+        if (period == null) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(period);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid period '" + period + "', expected yyyy-MM");
+        }
+    }
+
+    public InterestRun getInterestRun(YearMonth period) {
+        return interestRunDAO.getRun(period.toString());
+    }
+
+    public List<InterestRun> getInterestRuns() {
+        return interestRunDAO.getAllRuns();
+    }
+
+    public List<InterestRunChunk> getInterestRunLog(int runId) {
+        return interestRunDAO.getChunks(runId);
     }
 
     public Account getAccountByNumber(String accountNumber) {
         return accountDAO.getAccountByNumber(accountNumber);
     }
 
+    public Map<String, Account> getAccountsByNumbers(Collection<String> accountNumbers) {
+        return accountDAO.getAccountsByNumbers(accountNumbers);
+    }
+
     public List<Account> getCustomerAccounts(int customerId) {
         return accountDAO.getAccountsByCustomerId(customerId);
     }
@@ -179,9 +426,27 @@ public class AccountController {
         return transactionDAO.getTransactionsByAccountNumber(accountNumber);
     }
 
-    private String generateAccountNumber() {
-        Random random = new Random();
-        long number = 1000000000L + (long) (random.nextDouble() * 9000000000L);
-        return String.valueOf(number);
+    public Page<Transaction> getAccountTransactionsPage(String accountNumber, PageRequest request) {
+        return transactionDAO.getTransactionsPage(accountNumber, request);
+    }
+
+    // Transactions in [from, to), oldest first
+    public List<Transaction> getAccountTransactionsBetween(String accountNumber, LocalDateTime from, LocalDateTime to) {
+        requireWellFormed(accountNumber);
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Start of the range must be before its end");
+        }
+        return transactionDAO.getTransactionsBetween(accountNumber, from, to);
+    }
+
+    public Page<Account> getAccountsPage(PageRequest request) {
+        return accountDAO.getAccountsPage(request);
+    }
+
+    // Catches mistyped numbers (wrong length, failed check digit) before any lookup
+    private static void requireWellFormed(String accountNumber) {
+        if (!AccountNumberAllocator.isWellFormed(accountNumber)) {
+            throw new IllegalArgumentException("Invalid account number");
+        }
     }
 }
\ No newline at end of file
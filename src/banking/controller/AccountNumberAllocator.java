@@ -0,0 +1,133 @@
+package banking.controller;
+
+import banking.dao.AccountDAO;
+import banking.util.DatabaseUtil;
+import banking.util.StorageProfile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+// Hands out new account numbers from blocks reserved in the database (hi/lo). One
+// UPDATE of the id_blocks row reserves a whole block for this process and the numbers
+// in it are handed out from memory, so blocks never overlap between threads or
+// processes and opening an account never has to retry an insert. Numbers still unused
+// in a block when the process stops are skipped, never reused.
+//
+// With the check digit switched on, a number is its ten-digit sequence number followed
+// by a Luhn digit. An eleven-digit number that fails the check is a typo and is turned
+// away before any lookup; ten-digit numbers are accounts opened without one.
+public class AccountNumberAllocator {
+    private static final long LAST_NUMBER = 9_999_999_999L;
+
+    private static AccountNumberAllocator shared;
+
+    private final AccountDAO accountDAO;
+    private final int blockSize;
+    private final boolean checkDigit;
+    private long next;
+    private long limit;
+    private Set<String> taken = Collections.emptySet();
+
+    public AccountNumberAllocator(AccountDAO accountDAO, int blockSize, boolean checkDigit) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be at least 1");
+        }
+        this.accountDAO = accountDAO;
+        this.blockSize = blockSize;
+        this.checkDigit = checkDigit;
+    }
+
+    // One allocator per process, so its threads share the reserved block
+    public static synchronized AccountNumberAllocator shared() {
+        if (shared == null) {
+            StorageProfile profile = DatabaseUtil.getProfile();
+            shared = new AccountNumberAllocator(new AccountDAO(), profile.getAccountNumberBlock(), profile.isAccountCheckDigit());
+        }
+        return shared;
+    }
+
+    public synchronized String next() {
+        return next(1).get(0);
+    }
+
+    // For opening accounts in bulk: whatever the current block cannot cover is
+    // reserved in one more block of at least the remaining count
+    public synchronized List<String> next(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Count must be at least 1");
+        }
+        List<String> numbers = new ArrayList<>(count);
+        while (numbers.size() < count) {
+            if (next >= limit) {
+                reserve(count - numbers.size());
+            }
+            String number = format(next++);
+            if (!taken.contains(number)) {
+                numbers.add(number);
+            }
+        }
+        return numbers;
+    }
+
+    private void reserve(int needed) {
+        int size = Math.max(blockSize, needed);
+        Long first = accountDAO.reserveAccountNumbers(size);
+        if (first == null) {
+            throw new IllegalStateException("Account numbers could not be reserved");
+        }
+        long last = first + size - 1;
+        if (last > LAST_NUMBER) {
+            throw new IllegalStateException("Account numbers are exhausted");
+        }
+        // Accounts opened before the allocator got random numbers, which may fall in the block
+        Set<String> existing = accountDAO.getAccountNumbersBetween(format(first), format(last));
+        if (existing == null) {
+            throw new IllegalStateException("Account numbers could not be reserved");
+        }
+        taken = existing;
+        next = first;
+        limit = last + 1;
+    }
+
+    private String format(long number) {
+        return checkDigit ? String.valueOf(number) + checkDigit(number) : String.valueOf(number);
+    }
+
+    // Ten digits, or eleven where the last is the Luhn check digit of the first ten.
+    // Needs no database, so callers can reject a mistyped number up front.
+    public static boolean isWellFormed(String accountNumber) {
+        if (accountNumber == null || (accountNumber.length() != 10 && accountNumber.length() != 11)) {
+            return false;
+        }
+        for (int i = 0; i < accountNumber.length(); i++) {
+            char c = accountNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        if (accountNumber.length() == 10) {
+            return true;
+        }
+        long number = Long.parseLong(accountNumber.substring(0, 10));
+        return accountNumber.charAt(10) - '0' == checkDigit(number);
+    }
+
+    // Luhn: from the right, every other digit starting with the last is doubled
+    static int checkDigit(long number) {
+        int sum = 0;
+        boolean doubled = true;
+        for (long n = number; n > 0; n /= 10) {
+            int digit = (int) (n % 10);
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
+    }
+}
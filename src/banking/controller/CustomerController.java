@@ -1,8 +1,12 @@
 package banking.controller;
 
 import banking.dao.CustomerDAO;
+import banking.dao.Page;
+import banking.dao.PageRequest;
 import banking.model.Customer;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public class CustomerController {
     private CustomerDAO customerDAO;
@@ -70,6 +74,10 @@ public class CustomerController {
         return customerDAO.getCustomerById(customerId);
     }
 
+    public Map<Integer, Customer> getCustomersByIds(Collection<Integer> customerIds) {
+        return customerDAO.getCustomersByIds(customerIds);
+    }
+
     public Customer getCustomerByEmail(String email) {
         return customerDAO.getCustomerByEmail(email);
     }
@@ -78,6 +86,10 @@ public class CustomerController {
         return customerDAO.getAllCustomers();
     }
 
+    public Page<Customer> getCustomersPage(CustomerDAO.CustomerSort sort, PageRequest request) {
+        return customerDAO.getCustomersPage(sort, request);
+    }
+
     public boolean updateCustomer(Customer customer) {
         if (customer == null) {
             throw new IllegalArgumentException("Customer cannot be null");
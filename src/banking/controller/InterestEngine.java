@@ -0,0 +1,349 @@
+package banking.controller;
+
+import banking.dao.AccountDAO;
+import banking.dao.InterestRunDAO;
+import banking.dao.TransactionDescriptions;
+import banking.model.Account;
+import banking.model.InterestRun;
+import banking.model.InterestRunChunk;
+import banking.model.InterestRunResult;
+import banking.model.Transaction;
+import banking.util.DatabaseUtil;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Pays one period's interest, and charges its monthly fees, to every account in one
+// pass. Both are priced by the product rules in force for the period (ProductRules) on
+// the account's average daily balance over the month, from the balance-days accrued as
+// postings were made (see AccountDAO.getInterestBalanceDays). Accounts not yet paid for
+// the period are read in account number order, one keyset page per chunk; worker threads compute
+// each chunk's interest and write it as one batched transaction of version-checked
+// updates plus ledger rows, so computing one chunk overlaps writing another. Each
+// written account is marked with the period, so it can never be paid twice for it,
+// and accounts changed by a teller mid-run fail the version check and are reloaded.
+// Every committed chunk is logged with its timings; an interrupted run carries on
+// after the last unbroken stretch of committed chunks. One engine is good for one run.
+public class InterestEngine {
+    // A RUNNING run whose heartbeat is older than this is taken to have died
+    public static final long RUN_LEASE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final int DEFAULT_CHUNK_SIZE = 500;
+    private static final int MAX_CONFLICT_ROUNDS = 5;
+
+    private final AccountDAO accountDAO;
+    private final InterestRunDAO runDAO;
+    private final ProductRuleEngine ruleEngine;
+    private final YearMonth month;
+    private final String period;
+    // Shared by every ledger row of the run
+    private final String interestDescription;
+    private final String feeDescription;
+    private final int threads;
+    private final int chunkSize;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder credited = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder totalInterest = new LongAdder();
+    private final LongAdder totalFees = new LongAdder();
+
+    // Chunks commit out of order; the resume point only moves over an unbroken prefix.
+    // A null value is a chunk with failed accounts, which holds the resume point back.
+    private final TreeMap<Integer, String> finishedChunks = new TreeMap<>();
+    private int nextToRelease;
+
+    private boolean dryRun;
+    private ProductRules rules;
+    private InterestRun run;
+    private long totalAccounts;
+    private long startNanos;
+
+    public InterestEngine(AccountDAO accountDAO, InterestRunDAO runDAO, ProductRuleEngine ruleEngine, YearMonth period) {
+        this(accountDAO, runDAO, ruleEngine, period, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+    }
+
+    public InterestEngine(AccountDAO accountDAO, InterestRunDAO runDAO, ProductRuleEngine ruleEngine, YearMonth period,
+                          int threads, int chunkSize) {
+        if (threads < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("Interest engine needs at least one thread and one account per chunk");
+        }
+        this.accountDAO = accountDAO;
+        this.runDAO = runDAO;
+        this.ruleEngine = ruleEngine;
+        this.month = period;
+        this.period = period.toString();
+        this.interestDescription = "Monthly interest payment (" + this.period + ")";
+        this.feeDescription = "Monthly account fee (" + this.period + ")";
+        this.threads = Math.min(threads, maxWorkers());
+        this.chunkSize = chunkSize;
+    }
+
+    // Blocks until every chunk is written or the run is cancelled. The progress listener
+    // (may be null) is called from worker threads after each chunk. A dry run computes
+    // what is still due for the period without writing anything.
+    public InterestRunResult run(boolean dryRun, Consumer<InterestRunResult> progress) {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("Interest engine has already been run");
+        }
+        this.dryRun = dryRun;
+        // One rule set for the whole run, even if the rules are changed while it runs
+        this.rules = ruleEngine.forPeriod(month);
+        String resumeAfter = null;
+        int chunkNo = 1;
+        if (!dryRun) {
+            run = runDAO.claim(period, RUN_LEASE_MILLIS);
+            if (run == null) {
+                throw new IllegalStateException("Interest for " + period + " is being paid by another workstation");
+            }
+            if (run.getStatus() == InterestRun.Status.COMPLETED) {
+                throw new IllegalStateException("Interest for " + period + " has already been paid");
+            }
+            // Dictionary-encodes the run's ledger descriptions (see TransactionDescriptions)
+            TransactionDescriptions.register(interestDescription, feeDescription);
+            resumeAfter = run.getResumeAfter();
+            chunkNo = run.getNextChunkNo();
+            nextToRelease = chunkNo;
+        }
+        this.totalAccounts = accountDAO.countAccountsDueInterest(period, resumeAfter);
+        this.startNanos = System.nanoTime();
+
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "interest-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Bounds the chunks waiting in memory while the writer catches up
+        Semaphore inFlight = new Semaphore(threads * 2);
+
+        try {
+            String after = resumeAfter;
+            while (!cancelled.get()) {
+                inFlight.acquire();
+                List<Account> chunk = accountDAO.getAccountsDueInterest(period, after, chunkSize);
+                if (chunk == null || chunk.isEmpty()) {
+                    // A failed read leaves processed short of the total, so the run stops unfinished
+                    inFlight.release();
+                    break;
+                }
+                after = chunk.get(chunk.size() - 1).getAccountNumber();
+                int workNo = chunkNo++;
+                workers.execute(() -> {
+                    try {
+                        processChunk(workNo, chunk);
+                        if (progress != null) {
+                            progress.accept(snapshot(false));
+                        }
+                    } catch (RuntimeException e) {
+                        // Left unlogged, so the run stops short of COMPLETED and resumes before it
+                        failed.add(chunk.size());
+                        System.err.println("Error paying interest to chunk " + workNo + ": " + e.getMessage());
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled.set(true);
+        } finally {
+            workers.shutdown();
+            awaitWorkers(workers);
+        }
+
+        if (!dryRun) {
+            boolean complete = !cancelled.get() && failed.sum() == 0 && processed.sum() >= totalAccounts;
+            runDAO.finish(run.getRunId(), complete ? InterestRun.Status.COMPLETED : InterestRun.Status.STOPPED);
+        }
+        InterestRunResult result = snapshot(true);
+        if (progress != null) {
+            progress.accept(result);
+        }
+        return result;
+    }
+
+    // Each worker borrows a reader for its balance-days, so leave two for the page reads
+    // and the rest of the application (in-memory databases read through the writer)
+    private static int maxWorkers() {
+        return Math.max(1, DatabaseUtil.getProfile().getPoolSize() - 2);
+    }
+
+    // Chunks already written stay written; the rest are left for the run to resume
+    public void cancel() {
+        cancelled.set(true);
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    private void processChunk(int chunkNo, List<Account> chunk) {
+        if (cancelled.get()) {
+            return;
+        }
+        long start = System.nanoTime();
+        Map<String, Long> balanceDays = balanceDays(chunk);
+        List<Account> due = new ArrayList<>();
+        List<List<Transaction>> entries = new ArrayList<>();
+        for (Account account : chunk) {
+            processed.increment();
+            List<Transaction> entry = accrue(account, balanceDays);
+            if (entry != null) {
+                due.add(account);
+                entries.add(entry);
+            }
+        }
+
+        List<List<Transaction>> written = new ArrayList<>();
+        int chunkFailed = 0;
+        for (int round = 1; !due.isEmpty(); round++) {
+            if (dryRun) {
+                written.addAll(entries);
+                break;
+            }
+            AccountDAO.UpdateResult[] results = accountDAO.compareAndSetInterest(due, entries, period);
+            if (results == null) {
+                chunkFailed = due.size();
+                break;
+            }
+
+            List<String> conflicted = new ArrayList<>();
+            for (int i = 0; i < results.length; i++) {
+                if (results[i] == AccountDAO.UpdateResult.UPDATED) {
+                    written.add(entries.get(i));
+                } else {
+                    conflicted.add(due.get(i).getAccountNumber());
+                }
+            }
+            if (conflicted.isEmpty()) {
+                break;
+            }
+            if (round == MAX_CONFLICT_ROUNDS) {
+                chunkFailed = conflicted.size();
+                System.err.println(conflicted.size() + " accounts kept changing during the interest run and were not paid");
+                break;
+            }
+
+            // Someone posted to these accounts since they were read: reload and recompute.
+            // An account another run has just paid for the period drops out here.
+            Map<String, Account> reloaded = accountDAO.getAccountsByNumbers(conflicted);
+            balanceDays = balanceDays(reloaded.values());
+            due = new ArrayList<>();
+            entries = new ArrayList<>();
+            for (String accountNumber : conflicted) {
+                Account account = reloaded.get(accountNumber);
+                List<Transaction> entry = account != null ? accrue(account, balanceDays) : null;
+                if (entry != null) {
+                    due.add(account);
+                    entries.add(entry);
+                }
+            }
+        }
+
+        long chunkInterest = 0;
+        long chunkFees = 0;
+        for (List<Transaction> accountEntries : written) {
+            for (Transaction entry : accountEntries) {
+                if (entry.getType() == Transaction.TransactionType.FEE) {
+                    chunkFees += entry.getAmount();
+                } else {
+                    chunkInterest += entry.getAmount();
+                }
+            }
+        }
+        credited.add(written.size());
+        failed.add(chunkFailed);
+        totalInterest.add(chunkInterest);
+        totalFees.add(chunkFees);
+
+        if (!dryRun) {
+            InterestRunChunk log = new InterestRunChunk();
+            log.setRunId(run.getRunId());
+            log.setChunkNo(chunkNo);
+            log.setFirstAccount(chunk.get(0).getAccountNumber());
+            log.setLastAccount(chunk.get(chunk.size() - 1).getAccountNumber());
+            log.setAccounts(chunk.size());
+            log.setCredited(written.size());
+            log.setFailed(chunkFailed);
+            log.setInterest(chunkInterest);
+            log.setFees(chunkFees);
+            log.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            chunkFinished(log);
+        }
+    }
+
+    // Logs the chunk and, when it closes a gap, moves the run's resume point with it.
+    // Synchronized so the resume point written to the run only ever moves forward.
+    private synchronized void chunkFinished(InterestRunChunk log) {
+        finishedChunks.put(log.getChunkNo(), log.getFailed() == 0 ? log.getLastAccount() : null);
+        String resumeAfter = null;
+        while (finishedChunks.containsKey(nextToRelease) && finishedChunks.get(nextToRelease) != null) {
+            resumeAfter = finishedChunks.remove(nextToRelease++);
+        }
+        runDAO.logChunk(log, resumeAfter);
+    }
+
+    // Read after the accounts, so a posting in between only shows up as a version conflict
+    private Map<String, Long> balanceDays(Collection<Account> accounts) {
+        List<String> accountNumbers = new ArrayList<>();
+        for (Account account : accounts) {
+            accountNumbers.add(account.getAccountNumber());
+        }
+        Map<String, Long> balanceDays = accountDAO.getInterestBalanceDays(accountNumbers, month);
+        if (balanceDays == null) {
+            throw new IllegalStateException("Could not read interest accruals");
+        }
+        return balanceDays;
+    }
+
+    // Applies interest and the monthly fee to the loaded account and returns its ledger
+    // rows, or null if nothing is due
+    private List<Transaction> accrue(Account account, Map<String, Long> balanceDays) {
+        if (!account.isActive() || period.equals(account.getLastInterestPeriod())) {
+            return null;
+        }
+        long accrued = balanceDays.getOrDefault(account.getAccountNumber(), 0L);
+        int days = month.lengthOfMonth();
+        List<Transaction> entries = new ArrayList<>(2);
+        long interest = rules.interest(account, accrued, days);
+        if (interest > 0) {
+            account.applyInterest(interest);
+            entries.add(new Transaction(account.getAccountId(), account.getAccountNumber(), Transaction.TransactionType.INTEREST,
+                    interest, account.getBalance(), interestDescription));
+        }
+        long fee = account.chargeFee(rules.monthlyFee(account, accrued, days));
+        if (fee > 0) {
+            entries.add(new Transaction(account.getAccountId(), account.getAccountNumber(), Transaction.TransactionType.FEE,
+                    fee, account.getBalance(), feeDescription));
+        }
+        return entries.isEmpty() ? null : entries;
+    }
+
+    private InterestRunResult snapshot(boolean finished) {
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        return new InterestRunResult(period, dryRun, totalAccounts, processed.sum(), credited.sum(), failed.sum(),
+                totalInterest.sum(), totalFees.sum(), elapsedMillis, finished, cancelled.get());
+    }
+
+    private static void awaitWorkers(ExecutorService workers) {
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package banking.controller;
+
+import banking.model.InterestRun;
+import banking.model.InterestRunResult;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.YearMonth;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Pays month-end interest unattended. Every few minutes it looks at the month that has
+// just ended: if that period has no completed run and the clock is inside the overnight
+// batch window, the run is started or resumed, and cancelled between chunks when the
+// window closes. Whatever is left is resumed the next night. Every workstation may run
+// a scheduler; the run's lease in the database lets only one of them work at a time.
+public class InterestScheduler {
+    private static final long CHECK_INTERVAL_MINUTES = 5;
+
+    private final AccountController accountController;
+    private final LocalTime windowStart;
+    private final LocalTime windowEnd;
+    private ScheduledExecutorService executor;
+
+    public InterestScheduler(AccountController accountController) {
+        this(accountController, LocalTime.of(1, 0), LocalTime.of(5, 0));
+    }
+
+    public InterestScheduler(AccountController accountController, LocalTime windowStart, LocalTime windowEnd) {
+        this.accountController = accountController;
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+    }
+
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        // Two threads: one runs the interest, the other closes the window on it
+        executor = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "interest-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::runIfDue, 1, CHECK_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        System.out.println("Interest scheduler started, batch window " + windowStart + "-" + windowEnd);
+    }
+
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+    }
+
+    private void runIfDue() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            if (!inWindow(now.toLocalTime())) {
+                return;
+            }
+            YearMonth period = YearMonth.from(now).minusMonths(1);
+            InterestRun previous = accountController.getInterestRun(period);
+            if (previous != null && previous.getStatus() == InterestRun.Status.COMPLETED) {
+                return;
+            }
+
+            InterestEngine engine = accountController.newInterestEngine(period);
+            ScheduledFuture<?> windowClose = executor.schedule(engine::cancel,
+                    untilWindowEnd(now).toMillis(), TimeUnit.MILLISECONDS);
+            try {
+                InterestRunResult result = engine.run(false, null);
+                System.out.println("Month-end interest " + (result.isCancelled() ? "stopped at the end of the batch window: " : "run: ") + result);
+            } finally {
+                windowClose.cancel(false);
+            }
+        } catch (IllegalStateException e) {
+            // Another workstation holds the run, or it finished since we looked
+            System.out.println("Month-end interest: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("Month-end interest run failed: " + e.getMessage());
+        }
+    }
+
+    private boolean inWindow(LocalTime time) {
+        if (windowStart.isBefore(windowEnd)) {
+            return !time.isBefore(windowStart) && time.isBefore(windowEnd);
+        }
+        // The window spans midnight
+        return !time.isBefore(windowStart) || time.isBefore(windowEnd);
+    }
+
+    private Duration untilWindowEnd(LocalDateTime now) {
+        LocalDateTime end = now.toLocalDate().atTime(windowEnd);
+        if (!end.isAfter(now)) {
+            end = end.plusDays(1);
+        }
+        return Duration.between(now, end);
+    }
+}
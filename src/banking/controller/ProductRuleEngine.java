@@ -0,0 +1,76 @@
+package banking.controller;
+
+import banking.dao.ProductRuleDAO;
+import banking.model.ProductRule;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Hands out compiled ProductRules and picks up rule changes without a restart. The
+// rule table is read and compiled once per period; after that a cheap version query,
+// at most every few seconds, tells whether another workstation has changed the rules,
+// and only then is everything recompiled. A run takes its rules once at the start, so
+// a change made mid-run applies from the next run.
+public class ProductRuleEngine {
+    private static final long CHECK_INTERVAL_MILLIS = 5000;
+
+    private final ProductRuleDAO ruleDAO;
+    private volatile Loaded loaded;
+    private volatile long checkedAt;
+
+    public ProductRuleEngine(ProductRuleDAO ruleDAO) {
+        this.ruleDAO = ruleDAO;
+    }
+
+    public ProductRules forPeriod(YearMonth period) {
+        if (System.currentTimeMillis() - checkedAt >= CHECK_INTERVAL_MILLIS) {
+            refresh();
+        }
+        Loaded current = loaded;
+        if (current == null) {
+            throw new IllegalStateException("Product rules could not be loaded");
+        }
+        return current.compiled.computeIfAbsent(period, p -> ProductRules.compile(current.rules, p));
+    }
+
+    // Forces the next forPeriod to re-read the rules, e.g. after this workstation changed them
+    public void reload() {
+        checkedAt = 0;
+    }
+
+    private synchronized void refresh() {
+        if (System.currentTimeMillis() - checkedAt < CHECK_INTERVAL_MILLIS) {
+            return;
+        }
+        Long version = ruleDAO.getRulesVersion();
+        if (version == null) {
+            // Keep pricing with the rules we have; try again on the next call
+            return;
+        }
+        Loaded current = loaded;
+        if (current == null || current.version != version) {
+            List<ProductRule> rules = ruleDAO.getAllRules();
+            if (rules == null) {
+                return;
+            }
+            loaded = new Loaded(version, rules);
+            if (current != null) {
+                System.out.println("Product rules reloaded: " + rules.size() + " rules");
+            }
+        }
+        checkedAt = System.currentTimeMillis();
+    }
+
+    // The rules as read at one version, with their compiled form per period
+    private static final class Loaded {
+        private final long version;
+        private final List<ProductRule> rules;
+        private final Map<YearMonth, ProductRules> compiled = new ConcurrentHashMap<>();
+
+        private Loaded(long version, List<ProductRule> rules) {
+            this.version = version;
+            this.rules = rules;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package banking.controller;
+
+import banking.model.Account;
+import banking.model.ChequeAccount;
+import banking.model.InvestmentAccount;
+import banking.model.Money;
+import banking.model.ProductRule;
+import banking.model.SavingsAccount;
+import java.math.RoundingMode;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// A product rule set compiled for one period. Each product's rate and fee bands become
+// a pair of sorted long arrays (fixed-point rates, fees in thebe), so pricing an account
+// is a type check and a short scan with no lookups or allocation; month-end runs price
+// every account through one of these. Immutable and safe to share between threads.
+// Built by ProductRuleEngine.
+public final class ProductRules {
+    public static final List<String> PRODUCTS = Arrays.asList(SavingsAccount.TYPE, "Investment Account", "Cheque Account");
+    // Interest is rounded once per account and month, to the nearest thebe with ties to even
+    public static final RoundingMode INTEREST_ROUNDING = RoundingMode.HALF_EVEN;
+
+    private static final int SAVINGS = 0;
+    private static final int INVESTMENT = 1;
+    private static final int CHEQUE = 2;
+
+    private final String period;
+    private final Bands[] rates = new Bands[PRODUCTS.size()];
+    private final Bands[] fees = new Bands[PRODUCTS.size()];
+
+    private ProductRules(String period) {
+        this.period = period;
+    }
+
+    static ProductRules compile(List<ProductRule> rules, YearMonth period) {
+        ProductRules compiled = new ProductRules(period.toString());
+        for (int product = 0; product < PRODUCTS.size(); product++) {
+            compiled.rates[product] = Bands.compile(rules, PRODUCTS.get(product), ProductRule.Kind.RATE, compiled.period);
+            compiled.fees[product] = Bands.compile(rules, PRODUCTS.get(product), ProductRule.Kind.FEE, compiled.period);
+        }
+        return compiled;
+    }
+
+    public String getPeriod() {
+        return period;
+    }
+
+    // Interest earned on an average daily balance of balanceDays / days (thebe). The
+    // average is never rounded on its own; the one rounding step is on the interest.
+    public long interest(Account account, long balanceDays, int days) {
+        if (balanceDays <= 0) {
+            return 0;
+        }
+        long rate = rates[product(account)].valueFor(balanceDays, days);
+        return Money.multiplyDivide(balanceDays, rate, days * Money.RATE_SCALE, INTEREST_ROUNDING);
+    }
+
+    // The monthly fee due at that average daily balance
+    public long monthlyFee(Account account, long balanceDays, int days) {
+        return fees[product(account)].valueFor(balanceDays, days);
+    }
+
+    private static int product(Account account) {
+        if (account instanceof SavingsAccount) {
+            return SAVINGS;
+        }
+        if (account instanceof InvestmentAccount) {
+            return INVESTMENT;
+        }
+        if (account instanceof ChequeAccount) {
+            return CHEQUE;
+        }
+        throw new IllegalArgumentException("No product rules for " + account.getAccountType());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ProductRules{period=").append(period);
+        for (int product = 0; product < PRODUCTS.size(); product++) {
+            sb.append(", ").append(PRODUCTS.get(product))
+                    .append(": rate ").append(rates[product])
+                    .append(" fee ").append(fees[product]);
+        }
+        return sb.append('}').toString();
+    }
+
+    private static final class Bands {
+        private static final Bands NONE = new Bands(new long[0], new long[0]);
+
+        private final long[] floors;
+        private final long[] values;
+
+        private Bands(long[] floors, long[] values) {
+            this.floors = floors;
+            this.values = values;
+        }
+
+        // Promotional bands in force for the period replace the standard ones. Where two
+        // rules share a floor the later rule wins.
+        static Bands compile(List<ProductRule> rules, String product, ProductRule.Kind kind, String period) {
+            List<ProductRule> standard = new ArrayList<>();
+            List<ProductRule> promotional = new ArrayList<>();
+            for (ProductRule rule : rules) {
+                if (rule.getKind() == kind && product.equals(rule.getAccountType()) && rule.appliesTo(period)) {
+                    (rule.isPromotional() ? promotional : standard).add(rule);
+                }
+            }
+            List<ProductRule> bands = promotional.isEmpty() ? standard : promotional;
+            if (bands.isEmpty()) {
+                return NONE;
+            }
+            bands.sort(Comparator.comparingLong(ProductRule::getMinBalance).thenComparingInt(ProductRule::getRuleId));
+
+            long[] floors = new long[bands.size()];
+            long[] values = new long[bands.size()];
+            int n = 0;
+            for (ProductRule rule : bands) {
+                if (n > 0 && floors[n - 1] == rule.getMinBalance()) {
+                    n--;
+                }
+                floors[n] = rule.getMinBalance();
+                values[n] = kind == ProductRule.Kind.RATE ? Money.rate(rule.getRate()) : rule.getFee();
+                n++;
+            }
+            return new Bands(Arrays.copyOf(floors, n), Arrays.copyOf(values, n));
+        }
+
+        // The highest band at or below the average balance balanceDays / days, compared
+        // without dividing; nothing below the lowest band
+        long valueFor(long balanceDays, int days) {
+            for (int i = floors.length - 1; i >= 0; i--) {
+                if (balanceDays >= floors[i] * days) {
+                    return values[i];
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            if (floors.length == 0) {
+                return "none";
+            }
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < floors.length; i++) {
+                sb.append(i > 0 ? ", " : "").append(Money.format(floors[i])).append("+: ").append(values[i]);
+            }
+            return sb.append(']').toString();
+        }
+    }
+}
@@ -4,36 +4,66 @@ import banking.model.*;
 import banking.util.DatabaseUtil;
 import java.sql.*;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AccountDAO {
+    public enum UpdateResult { UPDATED, CONFLICT, NOT_FOUND, FAILED }
 
-    public boolean createAccount(Account account) {
-        String sql = "INSERT INTO accounts (account_number, customer_id, account_type, balance, branch, date_opened, is_active, company_name, company_address) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    // Compare-and-set updates that lost to a concurrent writer, across all instances
+    private static final AtomicLong versionConflicts = new AtomicLong();
 
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    // Accounts are loaded together with their owner in one query. LEFT JOIN keeps
+    // orphaned accounts visible so they are reported instead of silently dropped.
+    private static final String DUE_INTEREST = "WHERE a.is_active = 1 " +
+            "AND (a.last_interest_period IS NULL OR a.last_interest_period < ?) AND a.account_number > ?";
+    private static final String SELECT_WITH_CUSTOMER =
+            "SELECT a.*, c.first_name, c.surname, c.address, c.phone_number, c.email " +
+            "FROM accounts a LEFT JOIN customers c ON c.customer_id = a.customer_id ";
 
-            pstmt.setString(1, account.getAccountNumber());
-            pstmt.setInt(2, account.getCustomer().getCustomerId());
-            pstmt.setString(3, account.getAccountType());
-            pstmt.setDouble(4, account.getBalance());
-            pstmt.setString(5, account.getBranch());
-            pstmt.setString(6, account.getDateOpened().toString());
-            pstmt.setInt(7, account.isActive() ? 1 : 0);
-
-            if (account instanceof ChequeAccount) {
-                ChequeAccount chequeAccount = (ChequeAccount) account;
-                pstmt.setString(8, chequeAccount.getCompanyName());
-                pstmt.setString(9, chequeAccount.getCompanyAddress());
-            } else {
-                pstmt.setNull(8, Types.VARCHAR);
-                pstmt.setNull(9, Types.VARCHAR);
-            }
-
-            return pstmt.executeUpdate() > 0;
+    public boolean createAccount(Account account) {
+        String sql = "INSERT INTO accounts (account_number, customer_id, account_type, balance, branch, date_opened, is_active, company_name, company_address, accrued_through) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING account_id";
 
+        try {
+            return DatabaseUtil.withRetry("createAccount", () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+                    pstmt.setString(1, account.getAccountNumber());
+                    pstmt.setInt(2, account.getCustomer().getCustomerId());
+                    pstmt.setString(3, account.getAccountType());
+                    pstmt.setLong(4, account.getBalance());
+                    pstmt.setString(5, account.getBranch());
+                    pstmt.setLong(6, account.getDateOpenedMillis());
+                    pstmt.setInt(7, account.isActive() ? 1 : 0);
+
+                    if (account instanceof ChequeAccount) {
+                        ChequeAccount chequeAccount = (ChequeAccount) account;
+                        pstmt.setString(8, chequeAccount.getCompanyName());
+                        pstmt.setString(9, chequeAccount.getCompanyAddress());
+                    } else {
+                        pstmt.setNull(8, Types.VARCHAR);
+                        pstmt.setNull(9, Types.VARCHAR);
+                    }
+                    pstmt.setLong(10, InterestAccruals.today());
+
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (rs.next()) {
+                            account.setAccountId(rs.getLong(1));
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+            });
         } catch (SQLException e) {
             System.err.println("Error creating account: " + e.getMessage());
             e.printStackTrace();
@@ -41,86 +71,105 @@ public class AccountDAO {
         return false;
     }
 
+    // Reserves a block of count account numbers with one statement on the writer, so
+    // processes sharing the database never get overlapping blocks. Returns the first
+    // number of the block, or null if none could be reserved.
+    public Long reserveAccountNumbers(int count) {
+        String sql = "UPDATE id_blocks SET next_value = next_value + ? WHERE name = 'account_number' RETURNING next_value";
+
+        try {
+            return DatabaseUtil.withRetry("reserveAccountNumbers", () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, count);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        return rs.next() ? rs.getLong(1) - count : null;
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error reserving account numbers: " + e.getMessage());
+        }
+        return null;
+    }
+
+    // Numbers already in use between first and last (same length), e.g. randomly
+    // generated ones from before the allocator
+    public Set<String> getAccountNumbersBetween(String first, String last) {
+        Set<String> numbers = new HashSet<>();
+        String sql = "SELECT account_number FROM accounts WHERE account_number BETWEEN ? AND ? AND length(account_number) = ?";
+
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, first);
+            pstmt.setString(2, last);
+            pstmt.setInt(3, first.length());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    numbers.add(rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error checking account numbers: " + e.getMessage());
+            return null;
+        }
+        return numbers;
+    }
+
     public Account getAccountByNumber(String accountNumber) {
-        String sql = "SELECT * FROM accounts WHERE account_number = ?";
+        String sql = SELECT_WITH_CUSTOMER + "WHERE a.account_number = ?";
 
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-        try {
-            conn = DatabaseUtil.getConnection();
-            pstmt = conn.prepareStatement(sql);
             pstmt.setString(1, accountNumber);
-            rs = pstmt.executeQuery();
-
-            if (rs.next()) {
-                Account account = mapResultSetToAccount(rs);
-                return account;
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return mapResultSetToAccount(rs, new HashMap<>());
+                }
             }
 
         } catch (SQLException e) {
             System.err.println("Error fetching account: " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            try {
-                if (rs != null) rs.close();
-                if (pstmt != null) pstmt.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
         }
         return null;
     }
 
     public List<Account> getAccountsByCustomerId(int customerId) {
         List<Account> accounts = new ArrayList<>();
-        String sql = "SELECT * FROM accounts WHERE customer_id = ? ORDER BY date_opened DESC";
+        String sql = SELECT_WITH_CUSTOMER + "WHERE a.customer_id = ? ORDER BY a.date_opened DESC";
 
-        Connection conn = null;
-        PreparedStatement pstmt = null;
-        ResultSet rs = null;
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-        try {
-            conn = DatabaseUtil.getConnection();
-            pstmt = conn.prepareStatement(sql);
             pstmt.setInt(1, customerId);
-            rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                accounts.add(mapResultSetToAccount(rs));
+            Map<Integer, Customer> customers = new HashMap<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    accounts.add(mapResultSetToAccount(rs, customers));
+                }
             }
 
         } catch (SQLException e) {
             System.err.println("Error fetching accounts: " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            try {
-                if (rs != null) rs.close();
-                if (pstmt != null) pstmt.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
         }
         return accounts;
     }
 
     public List<Account> getAllAccounts() {
         List<Account> accounts = new ArrayList<>();
-        String sql = "SELECT * FROM accounts ORDER BY date_opened DESC";
-
-        Connection conn = null;
-        Statement stmt = null;
-        ResultSet rs = null;
+        String sql = SELECT_WITH_CUSTOMER + "ORDER BY a.date_opened DESC";
 
-        try {
-            conn = DatabaseUtil.getConnection();
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery(sql);
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
 
+            Map<Integer, Customer> customers = new HashMap<>();
             while (rs.next()) {
                 try {
-                    Account account = mapResultSetToAccount(rs);
+                    Account account = mapResultSetToAccount(rs, customers);
                     accounts.add(account);
                 } catch (SQLException e) {
                     System.err.println("Error mapping account: " + e.getMessage());
@@ -131,28 +180,170 @@ public class AccountDAO {
         } catch (SQLException e) {
             System.err.println("Error fetching all accounts: " + e.getMessage());
             e.printStackTrace();
-        } finally {
-            try {
-                if (rs != null) rs.close();
-                if (stmt != null) stmt.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
+        }
+        return accounts;
+    }
+
+    // One keyset page of the active accounts not yet paid interest for the period, in
+    // account number order after afterAccount (null for the start). Each page is a short
+    // read, so a month-end run holds no reader or read snapshot between pages and an
+    // interrupted run can carry on where it stopped. Null on error.
+    public List<Account> getAccountsDueInterest(String period, String afterAccount, int limit) {
+        List<Account> accounts = new ArrayList<>();
+        String sql = SELECT_WITH_CUSTOMER + DUE_INTEREST + " ORDER BY a.account_number LIMIT ?";
+
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, period);
+            pstmt.setString(2, afterAccount != null ? afterAccount : "");
+            pstmt.setInt(3, limit);
+            Map<Integer, Customer> customers = new HashMap<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    accounts.add(mapResultSetToAccount(rs, customers));
+                }
             }
+        } catch (SQLException e) {
+            System.err.println("Error fetching accounts due interest: " + e.getMessage());
+            e.printStackTrace();
+            return null;
         }
         return accounts;
     }
 
-    public boolean updateAccountBalance(String accountNumber, double newBalance) {
-        String sql = "UPDATE accounts SET balance = ? WHERE account_number = ?";
+    // Balance-days each account has accrued in the period; divide by the days in the
+    // month for the average daily balance that month-end interest is paid on
+    public Map<String, Long> getInterestBalanceDays(Collection<String> accountNumbers, YearMonth period) {
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            return InterestAccruals.balanceDays(conn, accountNumbers, period);
+        } catch (SQLException e) {
+            System.err.println("Error reading interest accruals: " + e.getMessage());
+        }
+        return null;
+    }
+
+    public long countAccountsDueInterest(String period, String afterAccount) {
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM accounts a " + DUE_INTEREST)) {
+            pstmt.setString(1, period);
+            pstmt.setString(2, afterAccount != null ? afterAccount : "");
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error counting accounts due interest: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    // Accounts opened in [from, to), oldest first, by a range scan of the
+    // (date_opened, account_number) index
+    public List<Account> getAccountsOpenedBetween(LocalDateTime from, LocalDateTime to) {
+        List<Account> accounts = new ArrayList<>();
+        String sql = SELECT_WITH_CUSTOMER + "WHERE a.date_opened >= ? AND a.date_opened < ? ORDER BY a.date_opened, a.account_number";
 
-        try (Connection conn = DatabaseUtil.getConnection();
+        try (Connection conn = DatabaseUtil.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setDouble(1, newBalance);
-            pstmt.setString(2, accountNumber);
+            pstmt.setLong(1, EpochMillis.of(from));
+            pstmt.setLong(2, EpochMillis.of(to));
+            Map<Integer, Customer> customers = new HashMap<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    accounts.add(mapResultSetToAccount(rs, customers));
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error fetching accounts: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return accounts;
+    }
+
+    // Keyset page ordered by (date_opened, account_number)
+    public Page<Account> getAccountsPage(PageRequest request) {
+        List<Account> accounts = new ArrayList<>();
+        long lastOpened = 0;
+        String lastNumber = null;
+        String sql = SELECT_WITH_CUSTOMER + "WHERE 1 = 1" +
+                request.seekClause("a.date_opened", "a.account_number") +
+                request.orderBy("a.date_opened", "a.account_number");
 
-            return pstmt.executeUpdate() > 0;
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            request.bind(pstmt, 1, false);
+            Map<Integer, Customer> customers = new HashMap<>();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    accounts.add(mapResultSetToAccount(rs, customers));
+                    if (accounts.size() == request.getSize()) {
+                        lastOpened = rs.getLong("date_opened");
+                        lastNumber = rs.getString("account_number");
+                    }
+                }
+            }
 
+        } catch (SQLException e) {
+            System.err.println("Error fetching account page: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return Page.of(accounts, request, lastOpened, lastNumber);
+    }
+
+    // Bulk lookup in request order; unknown account numbers are left out of the map
+    public Map<String, Account> getAccountsByNumbers(Collection<String> accountNumbers) {
+        Map<String, Account> found = new HashMap<>();
+        Map<Integer, Customer> customers = new HashMap<>();
+
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            for (List<String> chunk : InList.chunks(accountNumbers)) {
+                String sql = SELECT_WITH_CUSTOMER + "WHERE a.account_number IN (" + InList.placeholders(chunk.size()) + ")";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        pstmt.setString(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            Account account = mapResultSetToAccount(rs, customers);
+                            found.put(account.getAccountNumber(), account);
+                        }
+                    }
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error fetching accounts: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        Map<String, Account> accounts = new LinkedHashMap<>();
+        for (String accountNumber : accountNumbers) {
+            Account account = found.get(accountNumber);
+            if (account != null) {
+                accounts.put(accountNumber, account);
+            }
+        }
+        return accounts;
+    }
+
+    // Unconditional write; still bumps the version so concurrent compare-and-set writers notice it
+    public boolean updateAccountBalance(String accountNumber, long newBalance) {
+        String sql = "UPDATE accounts SET balance = ?, version = version + 1 WHERE account_number = ?";
+
+        try {
+            return DatabaseUtil.withRetry("updateAccountBalance", () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+                    InterestAccruals.roll(conn, accountNumber);
+                    pstmt.setLong(1, newBalance);
+                    pstmt.setString(2, accountNumber);
+
+                    return pstmt.executeUpdate() > 0;
+                }
+            });
         } catch (SQLException e) {
             System.err.println("Error updating account balance: " + e.getMessage());
             e.printStackTrace();
@@ -160,45 +351,298 @@ public class AccountDAO {
         return false;
     }
 
+    // Saves balance and status only if nobody changed the row since it was read
     public boolean updateAccount(Account account) {
-        String sql = "UPDATE accounts SET balance = ?, is_active = ? WHERE account_number = ?";
+        return compareAndSet(account, null) == UpdateResult.UPDATED;
+    }
 
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    // Writes the account if its row still has the version it was loaded with, and
+    // optionally the ledger row for the change in the same transaction. On success
+    // the account carries the new version; on CONFLICT reload it and try again.
+    public UpdateResult compareAndSet(Account account, Transaction ledgerEntry) {
+        String sql = "UPDATE accounts SET balance = ?, is_active = ?, version = version + 1 " +
+                "WHERE account_id = ? AND version = ? RETURNING version";
 
-            pstmt.setDouble(1, account.getBalance());
-            pstmt.setInt(2, account.isActive() ? 1 : 0);
-            pstmt.setString(3, account.getAccountNumber());
+        try {
+            return DatabaseUtil.withRetry("updateAccount", () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection()) {
+                    boolean autoCommit = conn.getAutoCommit();
+                    conn.setAutoCommit(false);
+                    try {
+                        InterestAccruals.roll(conn, account.getAccountNumber());
+                        UpdateResult result;
+                        long newVersion = 0;
+                        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                            pstmt.setLong(1, account.getBalance());
+                            pstmt.setInt(2, account.isActive() ? 1 : 0);
+                            pstmt.setLong(3, account.getAccountId());
+                            pstmt.setLong(4, account.getVersion());
+                            try (ResultSet rs = pstmt.executeQuery()) {
+                                result = rs.next() ? UpdateResult.UPDATED : null;
+                                if (result != null) {
+                                    newVersion = rs.getLong(1);
+                                }
+                            }
+                        }
+
+                        if (result == null) {
+                            result = exists(conn, account.getAccountId()) ? UpdateResult.CONFLICT : UpdateResult.NOT_FOUND;
+                        } else if (ledgerEntry != null && !TransactionDAO.insertTransaction(conn, ledgerEntry)) {
+                            throw new SQLException("Ledger row was not written for " + account.getAccountNumber());
+                        }
+                        if (autoCommit) {
+                            conn.commit();
+                        }
+
+                        if (result == UpdateResult.UPDATED) {
+                            account.setVersion(newVersion);
+                        } else if (result == UpdateResult.CONFLICT) {
+                            versionConflicts.incrementAndGet();
+                        }
+                        return result;
+                    } catch (SQLException e) {
+                        if (autoCommit) {
+                            conn.rollback();
+                        }
+                        throw e;
+                    } finally {
+                        if (autoCommit) {
+                            conn.setAutoCommit(true);
+                        }
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error updating account: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return UpdateResult.FAILED;
+    }
 
-            return pstmt.executeUpdate() > 0;
+    // Batch form of compareAndSet for month-end interest: one transaction holding one JDBC
+    // batch of version-checked balance updates, then one batch of ledger rows (interest
+    // and/or fee, per account) for the accounts that were written. Each written account
+    // is marked as paid for the period, and an account already marked for it is never
+    // written again. Returns UPDATED or CONFLICT per account, or null if the whole batch
+    // failed and was rolled back.
+    public UpdateResult[] compareAndSetInterest(List<Account> accounts, List<List<Transaction>> ledgerEntries, String period) {
+        String sql = "UPDATE accounts SET balance = ?2, version = version + 1, last_interest_period = ?1 " +
+                "WHERE account_id = ?3 AND version = ?4 AND (last_interest_period IS NULL OR last_interest_period < ?1)";
 
+        try {
+            return DatabaseUtil.withRetry("payInterest", () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection()) {
+                    WriteScope scope = WriteScope.begin(conn);
+                    try {
+                        List<String> accountNumbers = new ArrayList<>();
+                        for (Account account : accounts) {
+                            accountNumbers.add(account.getAccountNumber());
+                        }
+                        InterestAccruals.roll(conn, accountNumbers);
+
+                        int[] counts;
+                        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                            for (Account account : accounts) {
+                                pstmt.setString(1, period);
+                                pstmt.setLong(2, account.getBalance());
+                                pstmt.setLong(3, account.getAccountId());
+                                pstmt.setLong(4, account.getVersion());
+                                pstmt.addBatch();
+                            }
+                            counts = pstmt.executeBatch();
+                        }
+
+                        UpdateResult[] results = new UpdateResult[accounts.size()];
+                        List<Transaction> written = new ArrayList<>();
+                        for (int i = 0; i < results.length; i++) {
+                            results[i] = counts[i] > 0 ? UpdateResult.UPDATED : UpdateResult.CONFLICT;
+                            if (results[i] == UpdateResult.UPDATED) {
+                                written.addAll(ledgerEntries.get(i));
+                            }
+                        }
+                        TransactionDAO.insertTransactions(conn, written);
+                        scope.commit();
+
+                        for (int i = 0; i < results.length; i++) {
+                            Account account = accounts.get(i);
+                            if (results[i] == UpdateResult.UPDATED) {
+                                account.setVersion(account.getVersion() + 1);
+                                account.setLastInterestPeriod(period);
+                            } else {
+                                versionConflicts.incrementAndGet();
+                            }
+                        }
+                        return results;
+                    } catch (SQLException e) {
+                        scope.rollback();
+                        throw e;
+                    } finally {
+                        scope.end();
+                    }
+                }
+            });
         } catch (SQLException e) {
-            System.err.println("Error updating account: " + e.getMessage());
+            System.err.println("Error paying interest to " + accounts.size() + " accounts: " + e.getMessage());
             e.printStackTrace();
         }
-        return false;
+        return null;
+    }
+
+    public static long getVersionConflicts() {
+        return versionConflicts.get();
+    }
+
+    private boolean exists(Connection conn, long accountId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM accounts WHERE account_id = ?")) {
+            pstmt.setLong(1, accountId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    // Balance changes as single conditional statements: ?1 is the amount, ?2 the account
+    // number. A debit only matches an active account that allows withdrawals and holds
+    // enough funds, so the check and the update cannot be separated by another writer.
+    // The account's key comes back with the balance for the ledger row.
+    static final String CREDIT_SQL = "UPDATE accounts SET balance = balance + ?1, version = version + 1 " +
+            "WHERE account_number = ?2 AND is_active = 1 RETURNING balance, account_id";
+    static final String DEBIT_SQL = "UPDATE accounts SET balance = balance - ?1, version = version + 1 " +
+            "WHERE account_number = ?2 AND is_active = 1 AND account_type <> '" + SavingsAccount.TYPE + "' AND balance >= ?1 RETURNING balance, account_id";
+
+    // Credits the account and writes the ledger row in one write transaction.
+    // Returns the new balance, or null if no active account matched.
+    public Long postDeposit(String accountNumber, long amount, String description) {
+        return postDeposit(accountNumber, amount, description, null);
+    }
+
+    // With an idempotency key, a repeat of a completed deposit returns the balance it
+    // produced the first time instead of crediting the account again
+    public Long postDeposit(String accountNumber, long amount, String description, String idempotencyKey) {
+        return post(CREDIT_SQL, accountNumber, amount, Transaction.TransactionType.DEPOSIT, description, idempotencyKey);
+    }
+
+    // Returns the new balance, or null if the account did not qualify; callers work out why on that cold path
+    public Long postWithdrawal(String accountNumber, long amount, String description) {
+        return postWithdrawal(accountNumber, amount, description, null);
+    }
+
+    public Long postWithdrawal(String accountNumber, long amount, String description, String idempotencyKey) {
+        return post(DEBIT_SQL, accountNumber, amount, Transaction.TransactionType.WITHDRAWAL, description, idempotencyKey);
+    }
+
+    // Runs CREDIT_SQL or DEBIT_SQL on the caller's connection; null if the row did not qualify
+    static Posted applyBalanceChange(Connection conn, String sql, String accountNumber, long amount) throws SQLException {
+        InterestAccruals.roll(conn, accountNumber);
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, amount);
+            pstmt.setString(2, accountNumber);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? new Posted(rs.getLong(2), rs.getLong(1)) : null;
+            }
+        }
+    }
+
+    // The account a balance change hit and its balance afterwards
+    static final class Posted {
+        final long accountId;
+        final long balance;
+
+        Posted(long accountId, long balance) {
+            this.accountId = accountId;
+            this.balance = balance;
+        }
+    }
+
+    private Long post(String sql, String accountNumber, long amount, Transaction.TransactionType type,
+                      String description, String idempotencyKey) {
+        String request = idempotencyKey == null ? null : IdempotencyDAO.describe(type.name(), accountNumber, amount);
+        if (idempotencyKey != null) {
+            // A recent repeat is answered without taking the writer
+            IdempotencyDAO.StoredResult recent = IdempotencyDAO.cached(idempotencyKey);
+            if (recent != null) {
+                return Long.valueOf(recent.resultFor(request));
+            }
+        }
+        try {
+            return DatabaseUtil.withRetry("post" + type, () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection()) {
+                    boolean autoCommit = conn.getAutoCommit();
+                    conn.setAutoCommit(false);
+                    try {
+                        // The key lookup shares the write transaction, so two workstations
+                        // retrying the same request cannot both get past it
+                        if (idempotencyKey != null) {
+                            IdempotencyDAO.StoredResult previous = IdempotencyDAO.find(conn, idempotencyKey);
+                            if (previous != null) {
+                                return Long.valueOf(previous.resultFor(request));
+                            }
+                        }
+
+                        Posted posted = applyBalanceChange(conn, sql, accountNumber, amount);
+                        Long balance = posted != null ? posted.balance : null;
+
+                        IdempotencyDAO.StoredResult stored = null;
+                        if (posted != null) {
+                            Transaction transaction = new Transaction(posted.accountId, accountNumber, type, amount, balance, description);
+                            if (!TransactionDAO.insertTransaction(conn, transaction)) {
+                                throw new SQLException("Ledger row was not written for " + accountNumber);
+                            }
+                            if (idempotencyKey != null) {
+                                stored = IdempotencyDAO.record(conn, idempotencyKey, request, String.valueOf(balance));
+                            }
+                        }
+                        if (autoCommit) {
+                            conn.commit();
+                            if (stored != null) {
+                                IdempotencyDAO.remember(idempotencyKey, stored);
+                            }
+                        }
+                        return balance;
+                    } catch (SQLException e) {
+                        if (autoCommit) {
+                            conn.rollback();
+                        }
+                        throw e;
+                    } finally {
+                        if (autoCommit) {
+                            conn.setAutoCommit(true);
+                        }
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error posting " + type + " to account " + accountNumber + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return null;
     }
 
-    private Account mapResultSetToAccount(ResultSet rs) throws SQLException {
+    // customers is the identity map for one load: each owner is built once and shared by its accounts
+    private Account mapResultSetToAccount(ResultSet rs, Map<Integer, Customer> customers) throws SQLException {
         String accountType = rs.getString("account_type");
+        long accountId = rs.getLong("account_id");
         String accountNumber = rs.getString("account_number");
         String branch = rs.getString("branch");
-        double balance = rs.getDouble("balance");
+        long balance = rs.getLong("balance");
         boolean isActive = rs.getInt("is_active") == 1;
-        LocalDateTime dateOpened = LocalDateTime.parse(rs.getString("date_opened"));
-
-        // Get customer
-        CustomerDAO customerDAO = new CustomerDAO();
-        Customer customer = customerDAO.getCustomerById(rs.getInt("customer_id"));
+        long dateOpened = rs.getLong("date_opened");
 
+        // Customer columns come from the join; NULL first_name means no matching customer row
+        int customerId = rs.getInt("customer_id");
+        Customer customer = customers.get(customerId);
         if (customer == null) {
-            throw new SQLException("Customer not found for account " + accountNumber);
+            if (rs.getString("first_name") == null) {
+                throw new SQLException("Customer not found for account " + accountNumber);
+            }
+            customer = CustomerDAO.mapResultSetToCustomer(rs);
+            customers.put(customerId, customer);
         }
 
         Account account;
 
         switch (accountType) {
-            case "Savings Account":
+            case SavingsAccount.TYPE:
                 account = new SavingsAccount(accountNumber, branch, customer);
                 break;
             case "Investment Account":
@@ -216,9 +660,12 @@ public class AccountDAO {
                 throw new SQLException("Unknown account type: " + accountType);
         }
 
+        account.setAccountId(accountId);
         account.setBalance(balance);
         account.setActive(isActive);
-        account.setDateOpened(dateOpened);
+        account.setVersion(rs.getLong("version"));
+        account.setLastInterestPeriod(rs.getString("last_interest_period"));
+        account.setDateOpenedMillis(dateOpened);
 
         return account;
     }
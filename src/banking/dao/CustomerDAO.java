@@ -4,35 +4,38 @@ import banking.model.Customer;
 import banking.util.DatabaseUtil;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class CustomerDAO {
 
     public boolean createCustomer(Customer customer) {
-        String sql = "INSERT INTO customers (first_name, surname, address, phone_number, email) VALUES (?, ?, ?, ?, ?)";
-
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, customer.getFirstName());
-            pstmt.setString(2, customer.getSurname());
-            pstmt.setString(3, customer.getAddress());
-            pstmt.setString(4, customer.getPhoneNumber());
-            pstmt.setString(5, customer.getEmail());
-
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
-                // Retrieve the generated customer_id using last_insert_rowid()
-                String getIdSql = "SELECT last_insert_rowid()";
-                try (Statement stmt = conn.createStatement();
-                     ResultSet rs = stmt.executeQuery(getIdSql)) {
-                    if (rs.next()) {
-                        customer.setCustomerId(rs.getInt(1));
+        String sql = "INSERT INTO customers (first_name, surname, address, phone_number, email) VALUES (?, ?, ?, ?, ?) RETURNING customer_id";
+
+        try {
+            return DatabaseUtil.withRetry("createCustomer", () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+                    pstmt.setString(1, customer.getFirstName());
+                    pstmt.setString(2, customer.getSurname());
+                    pstmt.setString(3, customer.getAddress());
+                    pstmt.setString(4, customer.getPhoneNumber());
+                    pstmt.setString(5, customer.getEmail());
+
+                    // The generated customer_id comes back in the same round trip
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (rs.next()) {
+                            customer.setCustomerId(rs.getInt(1));
+                            return true;
+                        }
                     }
-                }
-                return true;
-            }
 
+                    return false;
+                }
+            });
         } catch (SQLException e) {
             System.err.println("Error creating customer: " + e.getMessage());
             e.printStackTrace();
@@ -43,7 +46,7 @@ public class CustomerDAO {
     public Customer getCustomerById(int customerId) {
         String sql = "SELECT * FROM customers WHERE customer_id = ?";
 
-        try (Connection conn = DatabaseUtil.getConnection();
+        try (Connection conn = DatabaseUtil.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, customerId);
@@ -59,10 +62,36 @@ public class CustomerDAO {
         return null;
     }
 
+    // Loads many customers in a few IN queries; ids that do not exist are left out of the map
+    public Map<Integer, Customer> getCustomersByIds(Collection<Integer> customerIds) {
+        Map<Integer, Customer> customers = new LinkedHashMap<>();
+
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            for (List<Integer> chunk : InList.chunks(customerIds)) {
+                String sql = "SELECT * FROM customers WHERE customer_id IN (" + InList.placeholders(chunk.size()) + ")";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        pstmt.setInt(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            Customer customer = mapResultSetToCustomer(rs);
+                            customers.put(customer.getCustomerId(), customer);
+                        }
+                    }
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error fetching customers: " + e.getMessage());
+        }
+        return customers;
+    }
+
     public Customer getCustomerByEmail(String email) {
         String sql = "SELECT * FROM customers WHERE email = ?";
 
-        try (Connection conn = DatabaseUtil.getConnection();
+        try (Connection conn = DatabaseUtil.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, email);
@@ -82,7 +111,7 @@ public class CustomerDAO {
         List<Customer> customers = new ArrayList<>();
         String sql = "SELECT * FROM customers ORDER BY customer_id";
 
-        try (Connection conn = DatabaseUtil.getConnection();
+        try (Connection conn = DatabaseUtil.getReadConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -96,21 +125,56 @@ public class CustomerDAO {
         return customers;
     }
 
-    public boolean updateCustomer(Customer customer) {
-        String sql = "UPDATE customers SET first_name = ?, surname = ?, address = ?, phone_number = ?, email = ? WHERE customer_id = ?";
+    public enum CustomerSort { ID, SURNAME }
 
-        try (Connection conn = DatabaseUtil.getConnection();
+    // Keyset page by customer id, or alphabetically by (surname, customer_id)
+    public Page<Customer> getCustomersPage(CustomerSort sort, PageRequest request) {
+        List<Customer> customers = new ArrayList<>();
+        String sortColumn = sort == CustomerSort.SURNAME ? "surname" : "customer_id";
+        Object lastSortValue = null;
+        int lastId = 0;
+        String sql = "SELECT * FROM customers WHERE 1 = 1" +
+                request.seekClause(sortColumn, "customer_id") +
+                request.orderBy(sortColumn, "customer_id");
+
+        try (Connection conn = DatabaseUtil.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setString(1, customer.getFirstName());
-            pstmt.setString(2, customer.getSurname());
-            pstmt.setString(3, customer.getAddress());
-            pstmt.setString(4, customer.getPhoneNumber());
-            pstmt.setString(5, customer.getEmail());
-            pstmt.setInt(6, customer.getCustomerId());
+            request.bind(pstmt, 1, sort == CustomerSort.ID);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    customers.add(mapResultSetToCustomer(rs));
+                    if (customers.size() == request.getSize()) {
+                        lastSortValue = rs.getObject(sortColumn);
+                        lastId = rs.getInt("customer_id");
+                    }
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error fetching customer page: " + e.getMessage());
+        }
+        return Page.of(customers, request, lastSortValue, lastId);
+    }
+
+    public boolean updateCustomer(Customer customer) {
+        String sql = "UPDATE customers SET first_name = ?, surname = ?, address = ?, phone_number = ?, email = ? WHERE customer_id = ?";
 
-            return pstmt.executeUpdate() > 0;
+        try {
+            return DatabaseUtil.withRetry("updateCustomer", () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
+                    pstmt.setString(1, customer.getFirstName());
+                    pstmt.setString(2, customer.getSurname());
+                    pstmt.setString(3, customer.getAddress());
+                    pstmt.setString(4, customer.getPhoneNumber());
+                    pstmt.setString(5, customer.getEmail());
+                    pstmt.setInt(6, customer.getCustomerId());
+
+                    return pstmt.executeUpdate() > 0;
+                }
+            });
         } catch (SQLException e) {
             System.err.println("Error updating customer: " + e.getMessage());
         }
@@ -120,19 +184,23 @@ public class CustomerDAO {
     public boolean deleteCustomer(int customerId) {
         String sql = "DELETE FROM customers WHERE customer_id = ?";
 
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, customerId);
-            return pstmt.executeUpdate() > 0;
+        try {
+            return DatabaseUtil.withRetry("deleteCustomer", () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
+                    pstmt.setInt(1, customerId);
+                    return pstmt.executeUpdate() > 0;
+                }
+            });
         } catch (SQLException e) {
             System.err.println("Error deleting customer: " + e.getMessage());
         }
         return false;
     }
 
-    private Customer mapResultSetToCustomer(ResultSet rs) throws SQLException {
+    // Also used by AccountDAO for rows joined with customers
+    static Customer mapResultSetToCustomer(ResultSet rs) throws SQLException {
         Customer customer = new Customer();
         customer.setCustomerId(rs.getInt("customer_id"));
         customer.setFirstName(rs.getString("first_name"));
@@ -0,0 +1,137 @@
+package banking.dao;
+
+import banking.util.DatabaseUtil;
+import java.sql.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Client idempotency keys for postings. A completed request's result is written in the
+// same transaction as the posting, so a retry finds it even after a crash or restart.
+// The authoritative check runs inside the write transaction, where the writer lock
+// already serializes it; a bounded cache with expiry answers repeats of recent keys
+// without touching the database at all.
+public class IdempotencyDAO {
+    public static final int MAX_KEY_LENGTH = 128;
+
+    private static final int CACHE_SIZE = 10_000;
+    private static final long CACHE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private static final Map<String, StoredResult> cache = new LinkedHashMap<String, StoredResult>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, StoredResult> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    // What a key was used for and what it produced
+    public static final class StoredResult {
+        private final String request;
+        private final String result;
+        private final long expiresAt;
+
+        // Cached no longer than the key itself stays replayable
+        StoredResult(String request, String result, long createdAt) {
+            this.request = request;
+            this.result = result;
+            long retention = retentionMillis();
+            long cachedUntil = System.currentTimeMillis() + CACHE_TTL_MILLIS;
+            this.expiresAt = retention == 0 ? cachedUntil : Math.min(cachedUntil, createdAt + retention);
+        }
+
+        // A key may only be replayed for the request it was first used with
+        public String resultFor(String request) {
+            if (!this.request.equals(request)) {
+                throw new IllegalArgumentException("Idempotency key was already used for a different request");
+            }
+            return result;
+        }
+    }
+
+    // Identifies a request, so a reused key with different details is refused rather than replayed
+    public static String describe(String operation, String account, long amount) {
+        return operation + "|" + account + "|" + amount;
+    }
+
+    public static void validateKey(String key) {
+        if (key != null && (key.trim().isEmpty() || key.length() > MAX_KEY_LENGTH)) {
+            throw new IllegalArgumentException("Idempotency key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+    }
+
+    // Recent keys only; a miss here is settled inside the posting transaction
+    public static StoredResult cached(String key) {
+        synchronized (cache) {
+            StoredResult stored = cache.get(key);
+            if (stored == null) {
+                return null;
+            }
+            if (stored.expiresAt < System.currentTimeMillis()) {
+                cache.remove(key);
+                return null;
+            }
+            return stored;
+        }
+    }
+
+    // Looks the key up on the caller's connection, inside its write transaction. Keys past the
+    // retention period are not replayed whether or not maintenance has purged them yet; this key's
+    // stale row is dropped here so the new posting can record it again.
+    static StoredResult find(Connection conn, String key) throws SQLException {
+        long retention = retentionMillis();
+        long cutoff = retention == 0 ? Long.MIN_VALUE : System.currentTimeMillis() - retention;
+        try (PreparedStatement pstmt = conn.prepareStatement(
+                "DELETE FROM idempotency_keys WHERE idempotency_key = ? AND created_at < ?")) {
+            pstmt.setString(1, key);
+            pstmt.setLong(2, cutoff);
+            pstmt.executeUpdate();
+        }
+        String sql = "SELECT request, result, created_at FROM idempotency_keys WHERE idempotency_key = ? AND created_at >= ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, key);
+            pstmt.setLong(2, cutoff);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                StoredResult stored = new StoredResult(rs.getString("request"), rs.getString("result"),
+                        rs.getLong("created_at"));
+                remember(key, stored);
+                return stored;
+            }
+        }
+    }
+
+    // How long a key stays replayable; 0 keeps every key
+    private static long retentionMillis() {
+        return TimeUnit.HOURS.toMillis(DatabaseUtil.getProfile().getIdempotencyRetentionHours());
+    }
+
+    // Written with the posting it describes; the primary key rejects a second writer of the same key
+    static StoredResult record(Connection conn, String key, String request, String result) throws SQLException {
+        String sql = "INSERT INTO idempotency_keys (idempotency_key, request, result, created_at) VALUES (?, ?, ?, ?)";
+        long createdAt = System.currentTimeMillis();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, key);
+            pstmt.setString(2, request);
+            pstmt.setString(3, result);
+            pstmt.setLong(4, createdAt);
+            pstmt.executeUpdate();
+        }
+        return new StoredResult(request, result, createdAt);
+    }
+
+    // Only called once the posting has committed
+    static void remember(String key, StoredResult stored) {
+        synchronized (cache) {
+            cache.put(key, stored);
+        }
+    }
+
+    // The cache is per process, not per database: forget it when switching to another one
+    public static void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+}
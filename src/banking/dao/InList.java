@@ -0,0 +1,45 @@
+package banking.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+// Splits keys for "col IN (?, ?, ...)" lookups. Each chunk is padded up to one of
+// a few fixed sizes by repeating its last key, so only a handful of distinct SQL
+// strings exist and the pooled statement cache keeps hitting.
+final class InList {
+    private static final int[] SIZES = {8, 64, 512};
+
+    private InList() {
+    }
+
+    static <T> List<List<T>> chunks(Collection<T> keys) {
+        List<T> distinct = new ArrayList<>(new LinkedHashSet<>(keys));
+        distinct.removeIf(key -> key == null);
+
+        int max = SIZES[SIZES.length - 1];
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += max) {
+            List<T> chunk = new ArrayList<>(distinct.subList(from, Math.min(from + max, distinct.size())));
+            int size = paddedSize(chunk.size());
+            chunk.addAll(Collections.nCopies(size - chunk.size(), chunk.get(chunk.size() - 1)));
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static int paddedSize(int count) {
+        for (int size : SIZES) {
+            if (count <= size) {
+                return size;
+            }
+        }
+        return count;
+    }
+}
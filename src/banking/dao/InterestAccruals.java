@@ -0,0 +1,145 @@
+package banking.dao;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Daily interest accrual. Interest is earned on each day's closing balance, so a month
+// pays on sum(balance x days held) over the month, kept exactly in thebe-days. There is no nightly pass over every
+// account: before a posting changes a balance, the balance in effect since the account's
+// accrued_through day is rolled into interest_accruals (split at month ends) and
+// accrued_through moves to today. An account nobody touches costs nothing until payout,
+// which adds its still-open stretch at the current balance.
+final class InterestAccruals {
+    private static final String UPSERT_SQL = "INSERT INTO interest_accruals (account_id, period, balance_days) VALUES (?, ?, ?) " +
+            "ON CONFLICT (account_id, period) DO UPDATE SET balance_days = balance_days + excluded.balance_days";
+    private static final String ADVANCE_SQL = "UPDATE accounts SET accrued_through = ? WHERE account_id = ?";
+
+    private InterestAccruals() {
+    }
+
+    static long today() {
+        return LocalDate.now().toEpochDay();
+    }
+
+    // Call on the posting's connection, before its balance change. Only the first
+    // posting of the day to an account writes anything.
+    static void roll(Connection conn, String accountNumber) throws SQLException {
+        roll(conn, accountNumber, today());
+    }
+
+    // The rolls and balanceDays taking a day are the same as of that epoch day
+    static void roll(Connection conn, String accountNumber, long today) throws SQLException {
+        String sql = "SELECT account_id, balance, accrued_through FROM accounts WHERE account_number = ? AND accrued_through < ?";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, accountNumber);
+            pstmt.setLong(2, today);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return;
+                }
+                long accountId = rs.getLong(1);
+                try (PreparedStatement upsert = conn.prepareStatement(UPSERT_SQL);
+                     PreparedStatement advance = conn.prepareStatement(ADVANCE_SQL)) {
+                    addSegments(upsert, accountId, rs.getLong(2), rs.getLong(3), today);
+                    upsert.executeBatch();
+                    advance.setLong(1, today);
+                    advance.setLong(2, accountId);
+                    advance.executeUpdate();
+                }
+            }
+        }
+    }
+
+    // roll for many accounts at once, for batch postings
+    static void roll(Connection conn, Collection<String> accountNumbers) throws SQLException {
+        roll(conn, accountNumbers, today());
+    }
+
+    static void roll(Connection conn, Collection<String> accountNumbers, long today) throws SQLException {
+        try (PreparedStatement upsert = conn.prepareStatement(UPSERT_SQL);
+             PreparedStatement advance = conn.prepareStatement(ADVANCE_SQL)) {
+            boolean any = false;
+            for (List<String> keys : InList.chunks(accountNumbers)) {
+                String sql = "SELECT account_id, balance, accrued_through FROM accounts " +
+                        "WHERE accrued_through < ? AND account_number IN (" + InList.placeholders(keys.size()) + ")";
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setLong(1, today);
+                    for (int i = 0; i < keys.size(); i++) {
+                        pstmt.setString(i + 2, keys.get(i));
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            long accountId = rs.getLong(1);
+                            addSegments(upsert, accountId, rs.getLong(2), rs.getLong(3), today);
+                            advance.setLong(1, today);
+                            advance.setLong(2, accountId);
+                            advance.addBatch();
+                            any = true;
+                        }
+                    }
+                }
+            }
+            if (any) {
+                upsert.executeBatch();
+                advance.executeBatch();
+            }
+        }
+    }
+
+    // Balance-days each account has earned in the period: the rolled-up total plus the
+    // open stretch since accrued_through at today's balance, up to today or the period end
+    static Map<String, Long> balanceDays(Connection conn, Collection<String> accountNumbers, YearMonth period) throws SQLException {
+        return balanceDays(conn, accountNumbers, period, today());
+    }
+
+    static Map<String, Long> balanceDays(Connection conn, Collection<String> accountNumbers, YearMonth period, long today)
+            throws SQLException {
+        long start = period.atDay(1).toEpochDay();
+        long end = Math.min(period.plusMonths(1).atDay(1).toEpochDay(), today + 1);
+        Map<String, Long> result = new HashMap<>();
+        for (List<String> keys : InList.chunks(accountNumbers)) {
+            // The numbered parameters come first, so the IN list's plain ones are ?4 onwards
+            String sql = "SELECT a.account_number, COALESCE(i.balance_days, 0) + " +
+                    "a.balance * MAX(0, ?3 - MAX(COALESCE(a.accrued_through, ?2), ?2)) " +
+                    "FROM accounts a LEFT JOIN interest_accruals i ON i.account_id = a.account_id AND i.period = ?1 " +
+                    "WHERE a.account_number IN (" + InList.placeholders(keys.size()) + ")";
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, period.toString());
+                pstmt.setLong(2, start);
+                pstmt.setLong(3, end);
+                for (int i = 0; i < keys.size(); i++) {
+                    pstmt.setString(i + 4, keys.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        result.put(rs.getString(1), rs.getLong(2));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    // One row per calendar month the stretch [from, to) touches
+    private static void addSegments(PreparedStatement upsert, long accountId, long balance, long from, long to) throws SQLException {
+        LocalDate day = LocalDate.ofEpochDay(from);
+        LocalDate end = LocalDate.ofEpochDay(to);
+        while (day.isBefore(end)) {
+            YearMonth month = YearMonth.from(day);
+            LocalDate next = month.plusMonths(1).atDay(1);
+            if (next.isAfter(end)) {
+                next = end;
+            }
+            upsert.setLong(1, accountId);
+            upsert.setString(2, month.toString());
+            upsert.setLong(3, Math.multiplyExact(balance, next.toEpochDay() - day.toEpochDay()));
+            upsert.addBatch();
+            day = next;
+        }
+    }
+}
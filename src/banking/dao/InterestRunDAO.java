@@ -0,0 +1,237 @@
+package banking.dao;
+
+import banking.model.InterestRun;
+import banking.model.InterestRunChunk;
+import banking.util.DatabaseUtil;
+import java.sql.*;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+public class InterestRunDAO {
+    private static final String SELECT_RUN = "SELECT r.*, " +
+            "(SELECT COALESCE(MAX(chunk_no), 0) + 1 FROM interest_run_chunks c WHERE c.run_id = r.run_id) AS next_chunk_no " +
+            "FROM interest_runs r ";
+
+    // Starts the run for a period, or takes over one that stopped or whose owner went
+    // quiet for longer than leaseMillis. Returns the run (COMPLETED if the period is
+    // already paid), or null if another workstation is running it right now.
+    public InterestRun claim(String period, long leaseMillis) {
+        try {
+            return DatabaseUtil.withRetry("claimInterestRun", () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection()) {
+                    WriteScope scope = WriteScope.begin(conn);
+                    try {
+                        long now = System.currentTimeMillis();
+                        InterestRun run = findRun(conn, period);
+                        if (run == null) {
+                            String sql = "INSERT INTO interest_runs (period, status, started_at, heartbeat_at) VALUES (?, ?, ?, ?)";
+                            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                                pstmt.setString(1, period);
+                                pstmt.setString(2, InterestRun.Status.RUNNING.name());
+                                pstmt.setLong(3, now);
+                                pstmt.setLong(4, now);
+                                pstmt.executeUpdate();
+                            }
+                        } else if (run.getStatus() == InterestRun.Status.COMPLETED) {
+                            scope.commit();
+                            return run;
+                        } else if (run.getStatus() == InterestRun.Status.RUNNING
+                                && toMillis(run.getHeartbeatAt()) > now - leaseMillis) {
+                            scope.commit();
+                            return null;
+                        } else {
+                            String sql = "UPDATE interest_runs SET status = ?, heartbeat_at = ? WHERE run_id = ?";
+                            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                                pstmt.setString(1, InterestRun.Status.RUNNING.name());
+                                pstmt.setLong(2, now);
+                                pstmt.setInt(3, run.getRunId());
+                                pstmt.executeUpdate();
+                            }
+                        }
+                        run = findRun(conn, period);
+                        scope.commit();
+                        return run;
+                    } catch (SQLException e) {
+                        scope.rollback();
+                        throw e;
+                    } finally {
+                        scope.end();
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error claiming interest run for " + period + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    // Appends the chunk to the run log and refreshes the heartbeat. resumeAfter, when not
+    // null, moves the point an interrupted run restarts from.
+    public boolean logChunk(InterestRunChunk chunk, String resumeAfter) {
+        String insertSql = "INSERT INTO interest_run_chunks (run_id, chunk_no, first_account, last_account, accounts, " +
+                "credited, failed, interest, fees, elapsed_ms, finished_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        String runSql = "UPDATE interest_runs SET heartbeat_at = ?, resume_after = COALESCE(?, resume_after) WHERE run_id = ?";
+
+        try {
+            return DatabaseUtil.withRetry("logInterestChunk", () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection()) {
+                    WriteScope scope = WriteScope.begin(conn);
+                    try (PreparedStatement insert = conn.prepareStatement(insertSql);
+                         PreparedStatement update = conn.prepareStatement(runSql)) {
+                        long now = System.currentTimeMillis();
+                        insert.setInt(1, chunk.getRunId());
+                        insert.setInt(2, chunk.getChunkNo());
+                        insert.setString(3, chunk.getFirstAccount());
+                        insert.setString(4, chunk.getLastAccount());
+                        insert.setInt(5, chunk.getAccounts());
+                        insert.setInt(6, chunk.getCredited());
+                        insert.setInt(7, chunk.getFailed());
+                        insert.setLong(8, chunk.getInterest());
+                        insert.setLong(9, chunk.getFees());
+                        insert.setLong(10, chunk.getElapsedMillis());
+                        insert.setLong(11, now);
+                        insert.executeUpdate();
+
+                        update.setLong(1, now);
+                        update.setString(2, resumeAfter);
+                        update.setInt(3, chunk.getRunId());
+                        update.executeUpdate();
+                        scope.commit();
+                        return true;
+                    } catch (SQLException e) {
+                        scope.rollback();
+                        throw e;
+                    } finally {
+                        scope.end();
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error logging interest chunk " + chunk.getChunkNo() + ": " + e.getMessage());
+        }
+        return false;
+    }
+
+    // Totals come from the run log, so they cover every attempt of the run
+    public boolean finish(int runId, InterestRun.Status status) {
+        String sql = "UPDATE interest_runs SET status = ?, finished_at = ?, " +
+                "accounts_credited = (SELECT COALESCE(SUM(credited), 0) FROM interest_run_chunks WHERE run_id = ?3), " +
+                "total_interest = (SELECT COALESCE(SUM(interest), 0) FROM interest_run_chunks WHERE run_id = ?3), " +
+                "total_fees = (SELECT COALESCE(SUM(fees), 0) FROM interest_run_chunks WHERE run_id = ?3) " +
+                "WHERE run_id = ?3";
+
+        try {
+            return DatabaseUtil.withRetry("finishInterestRun", () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, status.name());
+                    if (status == InterestRun.Status.COMPLETED) {
+                        pstmt.setLong(2, System.currentTimeMillis());
+                    } else {
+                        pstmt.setNull(2, Types.INTEGER);
+                    }
+                    pstmt.setInt(3, runId);
+                    return pstmt.executeUpdate() > 0;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error finishing interest run " + runId + ": " + e.getMessage());
+        }
+        return false;
+    }
+
+    public InterestRun getRun(String period) {
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            return findRun(conn, period);
+        } catch (SQLException e) {
+            System.err.println("Error fetching interest run: " + e.getMessage());
+        }
+        return null;
+    }
+
+    public List<InterestRun> getAllRuns() {
+        List<InterestRun> runs = new ArrayList<>();
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(SELECT_RUN + "ORDER BY r.period DESC")) {
+            while (rs.next()) {
+                runs.add(mapResultSetToRun(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error fetching interest runs: " + e.getMessage());
+        }
+        return runs;
+    }
+
+    public List<InterestRunChunk> getChunks(int runId) {
+        List<InterestRunChunk> chunks = new ArrayList<>();
+        String sql = "SELECT * FROM interest_run_chunks WHERE run_id = ? ORDER BY chunk_no";
+
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, runId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    chunks.add(mapResultSetToChunk(rs));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("Error fetching interest run log: " + e.getMessage());
+        }
+        return chunks;
+    }
+
+    private static InterestRun findRun(Connection conn, String period) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SELECT_RUN + "WHERE r.period = ?")) {
+            pstmt.setString(1, period);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapResultSetToRun(rs) : null;
+            }
+        }
+    }
+
+    private static InterestRun mapResultSetToRun(ResultSet rs) throws SQLException {
+        InterestRun run = new InterestRun();
+        run.setRunId(rs.getInt("run_id"));
+        run.setPeriod(rs.getString("period"));
+        run.setStatus(InterestRun.Status.valueOf(rs.getString("status")));
+        run.setStartedAt(toDateTime(rs.getLong("started_at")));
+        run.setHeartbeatAt(toDateTime(rs.getLong("heartbeat_at")));
+        long finishedAt = rs.getLong("finished_at");
+        run.setFinishedAt(rs.wasNull() ? null : toDateTime(finishedAt));
+        run.setResumeAfter(rs.getString("resume_after"));
+        run.setNextChunkNo(rs.getInt("next_chunk_no"));
+        run.setAccountsCredited(rs.getLong("accounts_credited"));
+        run.setTotalInterest(rs.getLong("total_interest"));
+        run.setTotalFees(rs.getLong("total_fees"));
+        return run;
+    }
+
+    private static InterestRunChunk mapResultSetToChunk(ResultSet rs) throws SQLException {
+        InterestRunChunk chunk = new InterestRunChunk();
+        chunk.setRunId(rs.getInt("run_id"));
+        chunk.setChunkNo(rs.getInt("chunk_no"));
+        chunk.setFirstAccount(rs.getString("first_account"));
+        chunk.setLastAccount(rs.getString("last_account"));
+        chunk.setAccounts(rs.getInt("accounts"));
+        chunk.setCredited(rs.getInt("credited"));
+        chunk.setFailed(rs.getInt("failed"));
+        chunk.setInterest(rs.getLong("interest"));
+        chunk.setFees(rs.getLong("fees"));
+        chunk.setElapsedMillis(rs.getLong("elapsed_ms"));
+        chunk.setFinishedAt(toDateTime(rs.getLong("finished_at")));
+        return chunk;
+    }
+
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,38 @@
+package banking.dao;
+
+import java.util.Collections;
+import java.util.List;
+
+// One page of rows plus the request for the page after it (null on the last page)
+public final class Page<T> {
+    private final List<T> items;
+    private final PageRequest next;
+
+    private Page(List<T> items, PageRequest next) {
+        this.items = Collections.unmodifiableList(items);
+        this.next = next;
+    }
+
+    // rows holds up to size + 1 items; the extra row only signals that more exist.
+    // The cursor values are the raw column values of the last row kept, as read from
+    // the database, so the next seek compares exactly what is stored.
+    static <T> Page<T> of(List<T> rows, PageRequest request, Object lastSortValue, Object lastKey) {
+        if (rows.size() <= request.getSize()) {
+            return new Page<>(rows, null);
+        }
+        return new Page<>(rows.subList(0, request.getSize()),
+                PageRequest.after(lastSortValue, lastKey, request.getSize(), request.getDirection()));
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    public PageRequest getNext() {
+        return next;
+    }
+}
@@ -0,0 +1,101 @@
+package banking.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+// A keyset page request: instead of an OFFSET it carries the sort value and key of
+// the last row already shown, so every page is one index seek however deep it is.
+public final class PageRequest {
+    public enum Direction { ASCENDING, DESCENDING }
+
+    public static final int MAX_SIZE = 1000;
+
+    private final int size;
+    private final Direction direction;
+    private final Object afterSortValue;
+    private final Object afterKey;
+
+    private PageRequest(int size, Direction direction, Object afterSortValue, Object afterKey) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_SIZE);
+        }
+        if (direction == null) {
+            throw new IllegalArgumentException("Direction is required");
+        }
+        this.size = size;
+        this.direction = direction;
+        this.afterSortValue = afterSortValue;
+        this.afterKey = afterKey;
+    }
+
+    public static PageRequest first(int size, Direction direction) {
+        return new PageRequest(size, direction, null, null);
+    }
+
+    // The page that follows the row with this sort value and key
+    public static PageRequest after(Object sortValue, Object key, int size, Direction direction) {
+        if (key == null) {
+            throw new IllegalArgumentException("Cursor key is required");
+        }
+        return new PageRequest(size, direction, sortValue, key);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    public boolean isFirstPage() {
+        return afterKey == null;
+    }
+
+    public Object getAfterSortValue() {
+        return afterSortValue;
+    }
+
+    public Object getAfterKey() {
+        return afterKey;
+    }
+
+    // "AND (sort, key) > (?, ?)" for a later page; the row-value comparison lets
+    // SQLite seek straight into the (sort, key) index. Empty for the first page.
+    String seekClause(String sortColumn, String keyColumn) {
+        if (isFirstPage()) {
+            return "";
+        }
+        String op = direction == Direction.ASCENDING ? ">" : "<";
+        if (sortColumn.equals(keyColumn)) {
+            return " AND " + keyColumn + " " + op + " ?";
+        }
+        return " AND (" + sortColumn + ", " + keyColumn + ") " + op + " (?, ?)";
+    }
+
+    String orderBy(String sortColumn, String keyColumn) {
+        String dir = direction == Direction.ASCENDING ? " ASC" : " DESC";
+        if (sortColumn.equals(keyColumn)) {
+            return " ORDER BY " + keyColumn + dir + " LIMIT ?";
+        }
+        return " ORDER BY " + sortColumn + dir + ", " + keyColumn + dir + " LIMIT ?";
+    }
+
+    // Binds the cursor and the limit (one extra row to detect a further page), returns the next index
+    int bind(PreparedStatement pstmt, int index, boolean keyOnly) throws SQLException {
+        if (!isFirstPage()) {
+            if (!keyOnly) {
+                pstmt.setObject(index++, afterSortValue);
+            }
+            pstmt.setObject(index++, afterKey);
+        }
+        pstmt.setInt(index++, size + 1);
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return "PageRequest{size=" + size + ", direction=" + direction +
+                (isFirstPage() ? "" : ", after=" + afterSortValue + "/" + afterKey) + '}';
+    }
+}
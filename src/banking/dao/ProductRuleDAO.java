@@ -0,0 +1,113 @@
+package banking.dao;
+
+import banking.model.ProductRule;
+import banking.util.DatabaseUtil;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ProductRuleDAO {
+
+    public List<ProductRule> getAllRules() {
+        List<ProductRule> rules = new ArrayList<>();
+        String sql = "SELECT * FROM product_rules ORDER BY account_type, kind, min_balance, rule_id";
+
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                rules.add(mapResultSetToRule(rs));
+            }
+        } catch (SQLException e) {
+            System.err.println("Error fetching product rules: " + e.getMessage());
+            return null;
+        }
+        return rules;
+    }
+
+    // Goes up with every rule added, edited or removed (the product_rules triggers bump it
+    // in the writing transaction), so a cached rule set can tell it is stale without
+    // reloading and recompiling the rules
+    public Long getRulesVersion() {
+        String sql = "SELECT version FROM product_rules_version";
+
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            if (rs.next()) {
+                return rs.getLong(1);
+            }
+        } catch (SQLException e) {
+            System.err.println("Error checking product rules: " + e.getMessage());
+        }
+        return null;
+    }
+
+    // Inserts the rule when it has no id yet, otherwise updates it
+    public boolean saveRule(ProductRule rule) {
+        String insertSql = "INSERT INTO product_rules (account_type, kind, min_balance, rate, fee, valid_from, valid_to, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?) RETURNING rule_id";
+        String updateSql = "UPDATE product_rules SET account_type = ?, kind = ?, min_balance = ?, rate = ?, fee = ?, " +
+                "valid_from = ?, valid_to = ?, updated_at = ? WHERE rule_id = ?";
+
+        try {
+            return DatabaseUtil.withRetry("saveProductRule", () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(rule.getRuleId() == 0 ? insertSql : updateSql)) {
+                    pstmt.setString(1, rule.getAccountType());
+                    pstmt.setString(2, rule.getKind().name());
+                    pstmt.setLong(3, rule.getMinBalance());
+                    pstmt.setDouble(4, rule.getRate());
+                    pstmt.setLong(5, rule.getFee());
+                    pstmt.setString(6, rule.getValidFrom());
+                    pstmt.setString(7, rule.getValidTo());
+                    pstmt.setLong(8, System.currentTimeMillis());
+                    if (rule.getRuleId() != 0) {
+                        pstmt.setInt(9, rule.getRuleId());
+                        return pstmt.executeUpdate() > 0;
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (rs.next()) {
+                            rule.setRuleId(rs.getInt(1));
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error saving product rule: " + e.getMessage());
+        }
+        return false;
+    }
+
+    public boolean deleteRule(int ruleId) {
+        String sql = "DELETE FROM product_rules WHERE rule_id = ?";
+
+        try {
+            return DatabaseUtil.withRetry("deleteProductRule", () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, ruleId);
+                    return pstmt.executeUpdate() > 0;
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error deleting product rule: " + e.getMessage());
+        }
+        return false;
+    }
+
+    private static ProductRule mapResultSetToRule(ResultSet rs) throws SQLException {
+        ProductRule rule = new ProductRule();
+        rule.setRuleId(rs.getInt("rule_id"));
+        rule.setAccountType(rs.getString("account_type"));
+        rule.setKind(ProductRule.Kind.valueOf(rs.getString("kind")));
+        rule.setMinBalance(rs.getLong("min_balance"));
+        rule.setRate(rs.getDouble("rate"));
+        rule.setFee(rs.getLong("fee"));
+        rule.setValidFrom(rs.getString("valid_from"));
+        rule.setValidTo(rs.getString("valid_to"));
+        return rule;
+    }
+}
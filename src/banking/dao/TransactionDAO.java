@@ -1,5 +1,6 @@
 package banking.dao;
 
+import banking.model.EpochMillis;
 import banking.model.Transaction;
 import banking.util.DatabaseUtil;
 import java.sql.*;
@@ -8,33 +9,18 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class TransactionDAO {
+    // Ledger rows are keyed by account_id; the display number comes from the account by primary key
+    private static final String SELECT_WITH_ACCOUNT =
+            "SELECT t.*, a.account_number FROM transactions t JOIN accounts a ON a.account_id = t.account_id ";
+    private static final String FOR_ACCOUNT = "WHERE t.account_id = (SELECT account_id FROM accounts WHERE account_number = ?)";
 
     public boolean createTransaction(Transaction transaction) {
-        String sql = "INSERT INTO transactions (account_number, transaction_type, amount, balance_after, description, timestamp) VALUES (?, ?, ?, ?, ?, ?)";
-
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, transaction.getAccountNumber());
-            pstmt.setString(2, transaction.getType().name());
-            pstmt.setDouble(3, transaction.getAmount());
-            pstmt.setDouble(4, transaction.getBalanceAfter());
-            pstmt.setString(5, transaction.getDescription());
-            pstmt.setString(6, transaction.getTimestamp().toString());
-
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
-                // Retrieve the generated transaction_id using last_insert_rowid()
-                String getIdSql = "SELECT last_insert_rowid()";
-                try (Statement stmt = conn.createStatement();
-                     ResultSet rs = stmt.executeQuery(getIdSql)) {
-                    if (rs.next()) {
-                        transaction.setTransactionId(rs.getInt(1));
-                    }
+        try {
+            return DatabaseUtil.withRetry("createTransaction", () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection()) {
+                    return insertTransaction(conn, transaction);
                 }
-                return true;
-            }
-
+            });
         } catch (SQLException e) {
             System.err.println("Error creating transaction: " + e.getMessage());
             e.printStackTrace();
@@ -42,11 +28,62 @@ public class TransactionDAO {
         return false;
     }
 
+    // Writes the ledger row on the caller's connection, inside whatever transaction it has open
+    static boolean insertTransaction(Connection conn, Transaction transaction) throws SQLException {
+        String sql = "INSERT INTO transactions (account_id, type_code, amount, balance_after, description_id, description, timestamp, transfer_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?) RETURNING transaction_id";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, transaction.getAccountId());
+            pstmt.setInt(2, transaction.getType().getCode());
+            pstmt.setLong(3, transaction.getAmount());
+            pstmt.setLong(4, transaction.getBalanceAfter());
+            TransactionDescriptions.bind(pstmt, 5, transaction.getDescription());
+            pstmt.setLong(7, transaction.getTimestampMillis());
+            if (transaction.getTransferId() != null) {
+                pstmt.setInt(8, transaction.getTransferId());
+            } else {
+                pstmt.setNull(8, Types.INTEGER);
+            }
+
+            // The generated transaction_id comes back in the same round trip
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    transaction.setTransactionId(rs.getInt(1));
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Batch form of insertTransaction for bulk jobs; generated ids are not read back
+    static void insertTransactions(Connection conn, List<Transaction> transactions) throws SQLException {
+        String sql = "INSERT INTO transactions (account_id, type_code, amount, balance_after, description_id, description, timestamp, transfer_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (Transaction transaction : transactions) {
+                pstmt.setLong(1, transaction.getAccountId());
+                pstmt.setInt(2, transaction.getType().getCode());
+                pstmt.setLong(3, transaction.getAmount());
+                pstmt.setLong(4, transaction.getBalanceAfter());
+                TransactionDescriptions.bind(pstmt, 5, transaction.getDescription());
+                pstmt.setLong(7, transaction.getTimestampMillis());
+                if (transaction.getTransferId() != null) {
+                    pstmt.setInt(8, transaction.getTransferId());
+                } else {
+                    pstmt.setNull(8, Types.INTEGER);
+                }
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
     public List<Transaction> getTransactionsByAccountNumber(String accountNumber) {
         List<Transaction> transactions = new ArrayList<>();
-        String sql = "SELECT * FROM transactions WHERE account_number = ? ORDER BY timestamp DESC";
+        String sql = SELECT_WITH_ACCOUNT + FOR_ACCOUNT + " ORDER BY t.timestamp DESC";
 
-        try (Connection conn = DatabaseUtil.getConnection();
+        try (Connection conn = DatabaseUtil.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, accountNumber);
@@ -62,11 +99,36 @@ public class TransactionDAO {
         return transactions;
     }
 
+    // One account's transactions in [from, to), oldest first. Times are INTEGER epoch
+    // milliseconds, so this is a range scan of the (account_id, timestamp) index.
+    public List<Transaction> getTransactionsBetween(String accountNumber, LocalDateTime from, LocalDateTime to) {
+        List<Transaction> transactions = new ArrayList<>();
+        String sql = SELECT_WITH_ACCOUNT + FOR_ACCOUNT +
+                " AND t.timestamp >= ? AND t.timestamp < ? ORDER BY t.timestamp, t.transaction_id";
+
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, accountNumber);
+            pstmt.setLong(2, EpochMillis.of(from));
+            pstmt.setLong(3, EpochMillis.of(to));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    transactions.add(mapResultSetToTransaction(rs));
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error fetching transactions: " + e.getMessage());
+        }
+        return transactions;
+    }
+
     public List<Transaction> getAllTransactions() {
         List<Transaction> transactions = new ArrayList<>();
-        String sql = "SELECT * FROM transactions ORDER BY timestamp DESC LIMIT 100";
+        String sql = SELECT_WITH_ACCOUNT + "ORDER BY t.timestamp DESC LIMIT 100";
 
-        try (Connection conn = DatabaseUtil.getConnection();
+        try (Connection conn = DatabaseUtil.getReadConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
 
@@ -80,10 +142,76 @@ public class TransactionDAO {
         return transactions;
     }
 
+    // Keyset page of one account's history ordered by (timestamp, transaction_id)
+    public Page<Transaction> getTransactionsPage(String accountNumber, PageRequest request) {
+        String sql = SELECT_WITH_ACCOUNT + FOR_ACCOUNT +
+                request.seekClause("t.timestamp", "t.transaction_id") +
+                request.orderBy("t.timestamp", "t.transaction_id");
+        return queryPage(sql, accountNumber, request);
+    }
+
+    // Keyset page across all accounts, newest or oldest first
+    public Page<Transaction> getAllTransactionsPage(PageRequest request) {
+        String sql = SELECT_WITH_ACCOUNT + "WHERE 1 = 1" +
+                request.seekClause("t.timestamp", "t.transaction_id") +
+                request.orderBy("t.timestamp", "t.transaction_id");
+        return queryPage(sql, null, request);
+    }
+
+    private Page<Transaction> queryPage(String sql, String accountNumber, PageRequest request) {
+        List<Transaction> transactions = new ArrayList<>();
+        long lastTimestamp = 0;
+        int lastId = 0;
+
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            int index = 1;
+            if (accountNumber != null) {
+                pstmt.setString(index++, accountNumber);
+            }
+            request.bind(pstmt, index, false);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    transactions.add(mapResultSetToTransaction(rs));
+                    if (transactions.size() == request.getSize()) {
+                        lastTimestamp = rs.getLong("timestamp");
+                        lastId = rs.getInt("transaction_id");
+                    }
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error fetching transaction page: " + e.getMessage());
+        }
+        return Page.of(transactions, request, lastTimestamp, lastId);
+    }
+
+    // Both legs of a transfer, TRANSFER_OUT first
+    public List<Transaction> getTransactionsByTransferId(int transferId) {
+        List<Transaction> transactions = new ArrayList<>();
+        String sql = SELECT_WITH_ACCOUNT + "WHERE t.transfer_id = ? ORDER BY t.transaction_id";
+
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, transferId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    transactions.add(mapResultSetToTransaction(rs));
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("Error fetching transfer transactions: " + e.getMessage());
+        }
+        return transactions;
+    }
+
     public Transaction getTransactionById(int transactionId) {
-        String sql = "SELECT * FROM transactions WHERE transaction_id = ?";
+        String sql = SELECT_WITH_ACCOUNT + "WHERE t.transaction_id = ?";
 
-        try (Connection conn = DatabaseUtil.getConnection();
+        try (Connection conn = DatabaseUtil.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, transactionId);
@@ -102,12 +230,17 @@ public class TransactionDAO {
     private Transaction mapResultSetToTransaction(ResultSet rs) throws SQLException {
         Transaction transaction = new Transaction();
         transaction.setTransactionId(rs.getInt("transaction_id"));
+        transaction.setAccountId(rs.getLong("account_id"));
         transaction.setAccountNumber(rs.getString("account_number"));
-        transaction.setType(Transaction.TransactionType.valueOf(rs.getString("transaction_type")));
-        transaction.setAmount(rs.getDouble("amount"));
-        transaction.setBalanceAfter(rs.getDouble("balance_after"));
-        transaction.setDescription(rs.getString("description"));
-        transaction.setTimestamp(LocalDateTime.parse(rs.getString("timestamp")));
+        transaction.setType(Transaction.TransactionType.fromCode(rs.getInt("type_code")));
+        transaction.setAmount(rs.getLong("amount"));
+        transaction.setBalanceAfter(rs.getLong("balance_after"));
+        transaction.setDescription(TransactionDescriptions.read(rs));
+        transaction.setTimestampMillis(rs.getLong("timestamp"));
+        int transferId = rs.getInt("transfer_id");
+        if (!rs.wasNull()) {
+            transaction.setTransferId(transferId);
+        }
         return transaction;
     }
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+package banking.dao;
+
+import banking.util.DatabaseUtil;
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+
+// The dictionary behind transactions.description_id. Descriptions the bank writes over
+// and over ("Deposit", "Monthly interest payment (2026-10)") are stored once in
+// transaction_descriptions and referenced by id; anything else, such as a transfer's
+// own wording, stays inline in transactions.description. The dictionary is cached for
+// the process, so encoding a row is a map lookup and every row read with the same
+// description shares one String.
+//
+// Rows only ever reference entries that are already committed, so an id can never be
+// taken away again by a rolled-back write. New texts are added with register, in a
+// transaction of their own, before the rows that use them are written; a text the
+// cache does not know yet is simply stored inline.
+public final class TransactionDescriptions {
+    private static volatile Snapshot snapshot;
+
+    private TransactionDescriptions() {
+    }
+
+    // Adds the texts to the dictionary (texts already in it are left alone)
+    public static boolean register(String... texts) {
+        if (DatabaseUtil.holdsWriter()) {
+            throw new IllegalStateException("Descriptions must be registered outside a write transaction");
+        }
+        String sql = "INSERT INTO transaction_descriptions (text) VALUES (?) ON CONFLICT(text) DO NOTHING";
+
+        try {
+            DatabaseUtil.withRetry("registerDescriptions", () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (String text : texts) {
+                        pstmt.setString(1, text);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                    return true;
+                }
+            });
+            reload();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error registering transaction descriptions: " + e.getMessage());
+        }
+        return false;
+    }
+
+    // Binds description_id at index and the inline description at index + 1
+    static void bind(PreparedStatement pstmt, int index, String description) throws SQLException {
+        Integer id = description == null ? null : current().ids.get(description);
+        if (id != null) {
+            pstmt.setInt(index, id);
+            pstmt.setNull(index + 1, Types.VARCHAR);
+        } else {
+            pstmt.setNull(index, Types.INTEGER);
+            pstmt.setString(index + 1, description);
+        }
+    }
+
+    static String read(ResultSet rs) throws SQLException {
+        int id = rs.getInt("description_id");
+        if (rs.wasNull()) {
+            return rs.getString("description");
+        }
+        String text = current().texts.get(id);
+        if (text == null) {
+            // Registered by another workstation since the cache was loaded
+            text = reload().texts.get(id);
+            if (text == null) {
+                throw new SQLException("Unknown transaction description " + id);
+            }
+        }
+        return text;
+    }
+
+    private static Snapshot current() throws SQLException {
+        Snapshot current = snapshot;
+        return current != null ? current : reload();
+    }
+
+    private static synchronized Snapshot reload() throws SQLException {
+        Snapshot loaded = new Snapshot();
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT description_id, text FROM transaction_descriptions")) {
+            while (rs.next()) {
+                String text = rs.getString(2);
+                loaded.ids.put(text, rs.getInt(1));
+                loaded.texts.put(rs.getInt(1), text);
+            }
+        }
+        snapshot = loaded;
+        return loaded;
+    }
+
+    private static final class Snapshot {
+        final Map<String, Integer> ids = new HashMap<>();
+        final Map<Integer, String> texts = new HashMap<>();
+    }
+}
@@ -0,0 +1,310 @@
+package banking.dao;
+
+import banking.model.PaymentLine;
+import banking.model.Transaction;
+import banking.model.Transfer;
+import banking.util.DatabaseUtil;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TransferDAO {
+    // transfers keeps both accounts by account_id; their numbers come from the accounts rows
+    private static final String SELECT_WITH_ACCOUNTS =
+            "SELECT t.*, f.account_number AS from_account, o.account_number AS to_account FROM transfers t " +
+            "JOIN accounts f ON f.account_id = t.from_account_id JOIN accounts o ON o.account_id = t.to_account_id ";
+
+    // Debit, credit, the transfer row and both ledger rows commit together or not at all.
+    // Returns the saved transfer, or null if either account did not qualify (nothing is written).
+    // Inside a transaction the caller already owns, the transfer is isolated with a savepoint.
+    public Transfer postTransfer(Transfer transfer) {
+        return postTransfer(transfer, null);
+    }
+
+    // With an idempotency key, a repeat of a completed transfer returns the original
+    // transfer instead of moving the money again
+    public Transfer postTransfer(Transfer transfer, String idempotencyKey) {
+        String request = idempotencyKey == null ? null : IdempotencyDAO.describe("TRANSFER",
+                transfer.getFromAccountNumber() + ">" + transfer.getToAccountNumber(), transfer.getAmount());
+        if (idempotencyKey != null) {
+            IdempotencyDAO.StoredResult recent = IdempotencyDAO.cached(idempotencyKey);
+            if (recent != null) {
+                return getTransferById(Integer.parseInt(recent.resultFor(request)));
+            }
+        }
+        try {
+            return DatabaseUtil.withRetry("postTransfer", () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection()) {
+                    WriteScope scope = WriteScope.begin(conn);
+                    try {
+                        if (idempotencyKey != null) {
+                            IdempotencyDAO.StoredResult previous = IdempotencyDAO.find(conn, idempotencyKey);
+                            if (previous != null) {
+                                Transfer original = findTransfer(conn, Integer.parseInt(previous.resultFor(request)));
+                                scope.rollback();
+                                return original;
+                            }
+                        }
+
+                        boolean posted = postTransfer(conn, transfer);
+                        IdempotencyDAO.StoredResult stored = null;
+                        if (posted && idempotencyKey != null) {
+                            stored = IdempotencyDAO.record(conn, idempotencyKey, request,
+                                    String.valueOf(transfer.getTransferId()));
+                        }
+                        if (!posted) {
+                            scope.rollback();
+                        } else {
+                            scope.commit();
+                            if (stored != null && scope.ownsTransaction()) {
+                                IdempotencyDAO.remember(idempotencyKey, stored);
+                            }
+                        }
+                        return posted ? transfer : null;
+                    } catch (SQLException e) {
+                        scope.rollback();
+                        throw e;
+                    } finally {
+                        scope.end();
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error posting transfer from " + transfer.getFromAccountNumber() +
+                    " to " + transfer.getToAccountNumber() + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    // Writes one transfer on the caller's connection and transaction. Returns false as
+    // soon as a leg does not qualify; the caller must then roll back the partial work.
+    static boolean postTransfer(Connection conn, Transfer transfer) throws SQLException {
+        AccountDAO.Posted from = AccountDAO.applyBalanceChange(conn, AccountDAO.DEBIT_SQL,
+                transfer.getFromAccountNumber(), transfer.getAmount());
+        if (from == null) {
+            return false;
+        }
+        AccountDAO.Posted to = AccountDAO.applyBalanceChange(conn, AccountDAO.CREDIT_SQL,
+                transfer.getToAccountNumber(), transfer.getAmount());
+        if (to == null) {
+            return false;
+        }
+
+        String sql = "INSERT INTO transfers (from_account_id, to_account_id, amount, description, timestamp) VALUES (?, ?, ?, ?, ?) RETURNING transfer_id";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, from.accountId);
+            pstmt.setLong(2, to.accountId);
+            pstmt.setLong(3, transfer.getAmount());
+            pstmt.setString(4, transfer.getDescription());
+            pstmt.setLong(5, transfer.getTimestampMillis());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Transfer row was not written");
+                }
+                transfer.setTransferId(rs.getInt(1));
+            }
+        }
+        transfer.setFromBalanceAfter(from.balance);
+        transfer.setToBalanceAfter(to.balance);
+
+        Transaction out = new Transaction(from.accountId, transfer.getFromAccountNumber(), Transaction.TransactionType.TRANSFER_OUT,
+                transfer.getAmount(), from.balance, describe(transfer, "to " + transfer.getToAccountNumber()));
+        Transaction in = new Transaction(to.accountId, transfer.getToAccountNumber(), Transaction.TransactionType.TRANSFER_IN,
+                transfer.getAmount(), to.balance, describe(transfer, "from " + transfer.getFromAccountNumber()));
+        for (Transaction leg : new Transaction[]{out, in}) {
+            leg.setTransferId(transfer.getTransferId());
+            leg.setTimestampMillis(transfer.getTimestampMillis());
+            if (!TransactionDAO.insertTransaction(conn, leg)) {
+                throw new SQLException("Ledger row was not written for " + leg.getAccountNumber());
+            }
+        }
+        return true;
+    }
+
+    // Posts lines from one source account, committing every chunkSize lines. Each chunk
+    // credits its destinations in one JDBC batch, debits the source once for the chunk
+    // total and writes the transfer and ledger rows as batches. Line results are set
+    // after the chunk commits. Returns the source balance after the last committed
+    // chunk, or null if none committed.
+    public Long postBatch(String fromAccountNumber, List<PaymentLine> lines, int chunkSize) {
+        Long sourceBalance = null;
+
+        for (int start = 0; start < lines.size(); start += chunkSize) {
+            List<PaymentLine> chunk = lines.subList(start, Math.min(start + chunkSize, lines.size()));
+            try {
+                ChunkOutcome outcome = DatabaseUtil.withRetry("postBatch", () -> {
+                    try (Connection conn = DatabaseUtil.getWriteConnection()) {
+                        WriteScope scope = WriteScope.begin(conn);
+                        try {
+                            ChunkOutcome result = postChunk(conn, fromAccountNumber, chunk);
+                            if (result == null) {
+                                scope.rollback();
+                            } else {
+                                scope.commit();
+                            }
+                            return result;
+                        } catch (SQLException e) {
+                            scope.rollback();
+                            throw e;
+                        } finally {
+                            scope.end();
+                        }
+                    }
+                });
+
+                if (outcome == null) {
+                    for (PaymentLine line : chunk) {
+                        line.reject("Insufficient funds in source account");
+                    }
+                    continue;
+                }
+                for (int i = 0; i < chunk.size(); i++) {
+                    if (outcome.transferIds[i] > 0) {
+                        chunk.get(i).posted(outcome.transferIds[i], outcome.balances[i]);
+                    } else {
+                        chunk.get(i).reject("Account not found or not active");
+                    }
+                }
+                if (outcome.sourceBalance != null) {
+                    sourceBalance = outcome.sourceBalance;
+                }
+
+            } catch (SQLException e) {
+                System.err.println("Error posting batch chunk from " + fromAccountNumber + ": " + e.getMessage());
+                e.printStackTrace();
+                for (PaymentLine line : chunk) {
+                    line.reject("Database error: " + e.getMessage());
+                }
+            }
+        }
+        return sourceBalance;
+    }
+
+    // Null if the source could not cover the chunk; the caller rolls back
+    private static ChunkOutcome postChunk(Connection conn, String fromAccountNumber, List<PaymentLine> chunk) throws SQLException {
+        ChunkOutcome outcome = new ChunkOutcome(chunk.size());
+
+        List<String> destinations = new ArrayList<>();
+        for (PaymentLine line : chunk) {
+            destinations.add(line.getToAccountNumber());
+        }
+        InterestAccruals.roll(conn, destinations);
+
+        // Each credit returns the destination's balance right after it, so an account
+        // paid twice in one chunk gets the right running balance on each ledger row
+        long[] toAccountIds = new long[chunk.size()];
+        long total = 0;
+        try (PreparedStatement pstmt = conn.prepareStatement(AccountDAO.CREDIT_SQL)) {
+            for (int i = 0; i < chunk.size(); i++) {
+                PaymentLine line = chunk.get(i);
+                pstmt.setLong(1, line.getAmount());
+                pstmt.setString(2, line.getToAccountNumber());
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        outcome.balances[i] = rs.getLong(1);
+                        toAccountIds[i] = rs.getLong(2);
+                        total += line.getAmount();
+                    }
+                }
+            }
+        }
+        if (total == 0) {
+            return outcome;
+        }
+
+        AccountDAO.Posted source = AccountDAO.applyBalanceChange(conn, AccountDAO.DEBIT_SQL, fromAccountNumber, total);
+        if (source == null) {
+            return null;
+        }
+        outcome.sourceBalance = source.balance;
+
+        long timestamp = System.currentTimeMillis();
+        String transferSql = "INSERT INTO transfers (from_account_id, to_account_id, amount, description, timestamp) VALUES (?, ?, ?, ?, ?) RETURNING transfer_id";
+        List<Transaction> legs = new ArrayList<>();
+        try (PreparedStatement transfers = conn.prepareStatement(transferSql)) {
+            long sourceBalance = source.balance + total;
+            for (int i = 0; i < chunk.size(); i++) {
+                if (toAccountIds[i] == 0) {
+                    continue;
+                }
+                PaymentLine line = chunk.get(i);
+                Transfer transfer = new Transfer(fromAccountNumber, line.getToAccountNumber(), line.getAmount(), line.getReference());
+                transfers.setLong(1, source.accountId);
+                transfers.setLong(2, toAccountIds[i]);
+                transfers.setLong(3, line.getAmount());
+                transfers.setString(4, line.getReference());
+                transfers.setLong(5, timestamp);
+                try (ResultSet rs = transfers.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("Transfer row was not written");
+                    }
+                    outcome.transferIds[i] = rs.getInt(1);
+                }
+                sourceBalance -= line.getAmount();
+
+                legs.add(leg(source.accountId, fromAccountNumber, Transaction.TransactionType.TRANSFER_OUT, line.getAmount(),
+                        sourceBalance, describe(transfer, "to " + line.getToAccountNumber()), timestamp, outcome.transferIds[i]));
+                legs.add(leg(toAccountIds[i], line.getToAccountNumber(), Transaction.TransactionType.TRANSFER_IN, line.getAmount(),
+                        outcome.balances[i], describe(transfer, "from " + fromAccountNumber), timestamp, outcome.transferIds[i]));
+            }
+        }
+        TransactionDAO.insertTransactions(conn, legs);
+        return outcome;
+    }
+
+    private static Transaction leg(long accountId, String accountNumber, Transaction.TransactionType type, long amount,
+                                   long balanceAfter, String description, long timestamp, int transferId) {
+        Transaction leg = new Transaction(accountId, accountNumber, type, amount, balanceAfter, description);
+        leg.setTimestampMillis(timestamp);
+        leg.setTransferId(transferId);
+        return leg;
+    }
+
+    public Transfer getTransferById(int transferId) {
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            return findTransfer(conn, transferId);
+        } catch (SQLException e) {
+            System.err.println("Error fetching transfer: " + e.getMessage());
+        }
+        return null;
+    }
+
+    private static Transfer findTransfer(Connection conn, int transferId) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(SELECT_WITH_ACCOUNTS + "WHERE t.transfer_id = ?")) {
+            pstmt.setInt(1, transferId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? mapResultSetToTransfer(rs) : null;
+            }
+        }
+    }
+
+    private static String describe(Transfer transfer, String counterparty) {
+        String description = transfer.getDescription();
+        return description == null || description.trim().isEmpty()
+                ? "Transfer " + counterparty
+                : description.trim() + " (" + counterparty + ")";
+    }
+
+    private static class ChunkOutcome {
+        final int[] transferIds;
+        final long[] balances;
+        Long sourceBalance;
+
+        ChunkOutcome(int size) {
+            transferIds = new int[size];
+            balances = new long[size];
+        }
+    }
+
+    private static Transfer mapResultSetToTransfer(ResultSet rs) throws SQLException {
+        Transfer transfer = new Transfer();
+        transfer.setTransferId(rs.getInt("transfer_id"));
+        transfer.setFromAccountNumber(rs.getString("from_account"));
+        transfer.setToAccountNumber(rs.getString("to_account"));
+        transfer.setAmount(rs.getLong("amount"));
+        transfer.setDescription(rs.getString("description"));
+        transfer.setTimestampMillis(rs.getLong("timestamp"));
+        return transfer;
+    }
+}
@@ -9,7 +9,7 @@ public class UserDAO {
     public User authenticate(String username, String password) {
         String sql = "SELECT * FROM users WHERE username = ? AND password = ?";
 
-        try (Connection conn = DatabaseUtil.getConnection();
+        try (Connection conn = DatabaseUtil.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, username);
@@ -27,33 +27,33 @@ public class UserDAO {
     }
 
     public boolean createUser(User user) {
-        String sql = "INSERT INTO users (username, password, role, customer_id) VALUES (?, ?, ?, ?)";
-
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, user.getUsername());
-            pstmt.setString(2, user.getPassword());
-            pstmt.setString(3, user.getRole().name());
-            if (user.getCustomerId() != null) {
-                pstmt.setInt(4, user.getCustomerId());
-            } else {
-                pstmt.setNull(4, Types.INTEGER);
-            }
+        String sql = "INSERT INTO users (username, password, role, customer_id) VALUES (?, ?, ?, ?) RETURNING user_id";
+
+        try {
+            return DatabaseUtil.withRetry("createUser", () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+                    pstmt.setString(1, user.getUsername());
+                    pstmt.setString(2, user.getPassword());
+                    pstmt.setString(3, user.getRole().name());
+                    if (user.getCustomerId() != null) {
+                        pstmt.setInt(4, user.getCustomerId());
+                    } else {
+                        pstmt.setNull(4, Types.INTEGER);
+                    }
 
-            int affectedRows = pstmt.executeUpdate();
-            if (affectedRows > 0) {
-                // Retrieve the generated user_id using last_insert_rowid()
-                String getIdSql = "SELECT last_insert_rowid()";
-                try (Statement stmt = conn.createStatement();
-                     ResultSet rs = stmt.executeQuery(getIdSql)) {
-                    if (rs.next()) {
-                        user.setUserId(rs.getInt(1));
+                    // The generated user_id comes back in the same round trip
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        if (rs.next()) {
+                            user.setUserId(rs.getInt(1));
+                            return true;
+                        }
                     }
-                }
-                return true;
-            }
 
+                    return false;
+                }
+            });
         } catch (SQLException e) {
             System.err.println("Error creating user: " + e.getMessage());
             e.printStackTrace();
@@ -64,7 +64,7 @@ public class UserDAO {
     public User getUserById(int userId) {
         String sql = "SELECT * FROM users WHERE user_id = ?";
 
-        try (Connection conn = DatabaseUtil.getConnection();
+        try (Connection conn = DatabaseUtil.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, userId);
@@ -83,14 +83,17 @@ public class UserDAO {
     public boolean updatePassword(int userId, String newPassword) {
         String sql = "UPDATE users SET password = ? WHERE user_id = ?";
 
-        try (Connection conn = DatabaseUtil.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try {
+            return DatabaseUtil.withRetry("updatePassword", () -> {
+                try (Connection conn = DatabaseUtil.getWriteConnection();
+                     PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            pstmt.setString(1, newPassword);
-            pstmt.setInt(2, userId);
-
-            return pstmt.executeUpdate() > 0;
+                    pstmt.setString(1, newPassword);
+                    pstmt.setInt(2, userId);
 
+                    return pstmt.executeUpdate() > 0;
+                }
+            });
         } catch (SQLException e) {
             System.err.println("Error updating password: " + e.getMessage());
         }
@@ -0,0 +1,58 @@
+package banking.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+
+// The transaction a DAO write runs in. On a writer in autocommit it is a transaction of
+// its own; when a caller already has one open on the re-entrant writer it is a
+// savepoint inside it, so finishing or abandoning this work never commits or ends the
+// caller's transaction.
+final class WriteScope {
+    private final Connection conn;
+    private final boolean owner;
+    private final Savepoint savepoint;
+
+    private WriteScope(Connection conn, boolean owner, Savepoint savepoint) {
+        this.conn = conn;
+        this.owner = owner;
+        this.savepoint = savepoint;
+    }
+
+    static WriteScope begin(Connection conn) throws SQLException {
+        if (conn.getAutoCommit()) {
+            conn.setAutoCommit(false);
+            return new WriteScope(conn, true, null);
+        }
+        return new WriteScope(conn, false, conn.setSavepoint());
+    }
+
+    // True when this scope's commit is the real one, not a release into the caller's transaction
+    boolean ownsTransaction() {
+        return owner;
+    }
+
+    void commit() throws SQLException {
+        if (owner) {
+            conn.commit();
+        } else {
+            conn.releaseSavepoint(savepoint);
+        }
+    }
+
+    void rollback() throws SQLException {
+        if (owner) {
+            conn.rollback();
+        } else {
+            conn.rollback(savepoint);
+            conn.releaseSavepoint(savepoint);
+        }
+    }
+
+    // Call in finally
+    void end() throws SQLException {
+        if (owner) {
+            conn.setAutoCommit(true);
+        }
+    }
+}
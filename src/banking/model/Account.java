@@ -2,16 +2,20 @@ package banking.model;
 
 import java.time.LocalDateTime;
 
+// Balance methods are synchronized so one Account instance shared between threads stays consistent
 public abstract class Account implements IAccount {
+    protected long accountId;
     protected String accountNumber;
-    protected double balance;
+    protected long balance;
     protected String branch;
-    protected LocalDateTime dateOpened;
+    protected long dateOpened;
     protected Customer customer;
     protected boolean isActive;
+    protected long version;
+    protected String lastInterestPeriod;
 
     public Account() {
-        this.dateOpened = LocalDateTime.now();
+        this.dateOpened = System.currentTimeMillis();
         this.isActive = true;
     }
 
@@ -19,13 +23,13 @@ public abstract class Account implements IAccount {
         this.accountNumber = accountNumber;
         this.branch = branch;
         this.customer = customer;
-        this.balance = 0.0;
-        this.dateOpened = LocalDateTime.now();
+        this.balance = 0;
+        this.dateOpened = System.currentTimeMillis();
         this.isActive = true;
     }
 
     @Override
-    public void deposit(double amount) throws IllegalArgumentException {
+    public synchronized void deposit(long amount) throws IllegalArgumentException {
         if (amount <= 0) {
             throw new IllegalArgumentException("Deposit amount must be positive");
         }
@@ -36,7 +40,7 @@ public abstract class Account implements IAccount {
     }
 
     @Override
-    public void withdraw(double amount) throws IllegalArgumentException, UnsupportedOperationException {
+    public synchronized void withdraw(long amount) throws IllegalArgumentException, UnsupportedOperationException {
         if (amount <= 0) {
             throw new IllegalArgumentException("Withdrawal amount must be positive");
         }
@@ -49,21 +53,39 @@ public abstract class Account implements IAccount {
         balance -= amount;
     }
 
+    // Credits interest priced by the product rules (see ProductRules) from the month's accrued balance
     @Override
-    public abstract double calculateInterest();
-
-    @Override
-    public void applyInterest() {
-        double interest = calculateInterest();
+    public synchronized void applyInterest(long interest) {
         if (interest > 0) {
             balance += interest;
         }
     }
 
+    // Takes a monthly fee, never more than the account holds since there is no
+    // overdraft to charge it to. Returns the amount actually taken.
+    @Override
+    public synchronized long chargeFee(long fee) {
+        long charged = Math.min(fee, Math.max(0, balance));
+        if (charged > 0) {
+            balance -= charged;
+        }
+        return Math.max(0, charged);
+    }
+
     @Override
     public abstract String getAccountType();
 
     // Getters and Setters
+
+    // Internal key of the accounts row; 0 until the account has been saved
+    public long getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(long accountId) {
+        this.accountId = accountId;
+    }
+
     @Override
     public String getAccountNumber() {
         return accountNumber;
@@ -74,11 +96,11 @@ public abstract class Account implements IAccount {
     }
 
     @Override
-    public double getBalance() {
+    public synchronized long getBalance() {
         return balance;
     }
 
-    public void setBalance(double balance) {
+    public synchronized void setBalance(long balance) {
         this.balance = balance;
     }
 
@@ -91,10 +113,19 @@ public abstract class Account implements IAccount {
     }
 
     public LocalDateTime getDateOpened() {
-        return dateOpened;
+        return EpochMillis.toLocal(dateOpened);
     }
 
     public void setDateOpened(LocalDateTime dateOpened) {
+        this.dateOpened = EpochMillis.of(dateOpened);
+    }
+
+    // Epoch milliseconds, as stored
+    public long getDateOpenedMillis() {
+        return dateOpened;
+    }
+
+    public void setDateOpenedMillis(long dateOpened) {
         this.dateOpened = dateOpened;
     }
 
@@ -114,11 +145,29 @@ public abstract class Account implements IAccount {
         isActive = active;
     }
 
+    // Row version this object was loaded with, used for optimistic updates
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    // Month (yyyy-MM) of the last month-end interest run that paid this account
+    public String getLastInterestPeriod() {
+        return lastInterestPeriod;
+    }
+
+    public void setLastInterestPeriod(String lastInterestPeriod) {
+        this.lastInterestPeriod = lastInterestPeriod;
+    }
+
     @Override
     public String toString() {
         return getAccountType() + "{" +
                 "accountNumber='" + accountNumber + '\'' +
-                ", balance=" + String.format("%.2f", balance) +
+                ", balance=" + Money.format(balance) +
                 ", branch='" + branch + '\'' +
                 '}';
     }
@@ -0,0 +1,74 @@
+package banking.model;
+
+import java.util.List;
+
+// Outcome of a batch transfer: per-line results plus totals
+public class BatchTransferResult {
+    private final String fromAccountNumber;
+    private final List<PaymentLine> lines;
+    private final long sourceBalanceAfter;
+    private final long elapsedMillis;
+
+    public BatchTransferResult(String fromAccountNumber, List<PaymentLine> lines, long sourceBalanceAfter, long elapsedMillis) {
+        this.fromAccountNumber = fromAccountNumber;
+        this.lines = lines;
+        this.sourceBalanceAfter = sourceBalanceAfter;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public String getFromAccountNumber() {
+        return fromAccountNumber;
+    }
+
+    public List<PaymentLine> getLines() {
+        return lines;
+    }
+
+    public int getPostedCount() {
+        return count(PaymentLine.Status.POSTED);
+    }
+
+    public int getRejectedCount() {
+        return count(PaymentLine.Status.REJECTED);
+    }
+
+    public long getTotalPosted() {
+        long total = 0;
+        for (PaymentLine line : lines) {
+            if (line.getStatus() == PaymentLine.Status.POSTED) {
+                total += line.getAmount();
+            }
+        }
+        return total;
+    }
+
+    public long getSourceBalanceAfter() {
+        return sourceBalanceAfter;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    private int count(PaymentLine.Status status) {
+        int count = 0;
+        for (PaymentLine line : lines) {
+            if (line.getStatus() == status) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchTransferResult{" +
+                "from=" + fromAccountNumber +
+                ", posted=" + getPostedCount() +
+                ", rejected=" + getRejectedCount() +
+                ", total=" + Money.format(getTotalPosted()) +
+                ", sourceBalance=" + Money.format(sourceBalanceAfter) +
+                ", elapsedMs=" + elapsedMillis +
+                '}';
+    }
+}
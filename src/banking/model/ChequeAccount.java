@@ -20,11 +20,6 @@ public class ChequeAccount extends Account {
         this.companyAddress = companyAddress;
     }
 
-    @Override
-    public double calculateInterest() {
-        return 0.0; // Cheque accounts do not earn interest
-    }
-
     @Override
     public String getAccountType() {
         return "Cheque Account";
@@ -0,0 +1,22 @@
+package banking.model;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+// Times are kept as epoch milliseconds, the way the INTEGER time columns store them, so
+// loading a row copies a long instead of parsing text. A LocalDateTime (system zone) is
+// only built when something asks for one, e.g. a table cell being drawn.
+public final class EpochMillis {
+
+    private EpochMillis() {
+    }
+
+    public static long of(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    public static LocalDateTime toLocal(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
@@ -1,11 +1,11 @@
 package banking.model;
 
 public interface IAccount {
-    void deposit(double amount) throws IllegalArgumentException;
-    void withdraw(double amount) throws IllegalArgumentException, UnsupportedOperationException;
-    double calculateInterest();
-    void applyInterest();
+    void deposit(long amount) throws IllegalArgumentException;
+    void withdraw(long amount) throws IllegalArgumentException, UnsupportedOperationException;
+    void applyInterest(long interest);
+    long chargeFee(long fee);
     String getAccountType();
-    double getBalance();
+    long getBalance();
     String getAccountNumber();
 }
@@ -0,0 +1,123 @@
+package banking.model;
+
+import java.time.LocalDateTime;
+
+// The month-end interest run for one period (yyyy-MM). A run that was cancelled,
+// ran out of batch window or crashed is resumed rather than started again.
+public class InterestRun {
+    public enum Status { RUNNING, STOPPED, COMPLETED }
+
+    private int runId;
+    private String period;
+    private Status status;
+    private LocalDateTime startedAt;
+    private LocalDateTime heartbeatAt;
+    private LocalDateTime finishedAt;
+    private String resumeAfter;
+    private int nextChunkNo;
+    private long accountsCredited;
+    private long totalInterest;
+    private long totalFees;
+
+    public int getRunId() {
+        return runId;
+    }
+
+    public void setRunId(int runId) {
+        this.runId = runId;
+    }
+
+    public String getPeriod() {
+        return period;
+    }
+
+    public void setPeriod(String period) {
+        this.period = period;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    // Refreshed after every chunk; a RUNNING run whose heartbeat is old has died
+    public LocalDateTime getHeartbeatAt() {
+        return heartbeatAt;
+    }
+
+    public void setHeartbeatAt(LocalDateTime heartbeatAt) {
+        this.heartbeatAt = heartbeatAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    // Every account up to and including this one has been dealt with
+    public String getResumeAfter() {
+        return resumeAfter;
+    }
+
+    public void setResumeAfter(String resumeAfter) {
+        this.resumeAfter = resumeAfter;
+    }
+
+    public int getNextChunkNo() {
+        return nextChunkNo;
+    }
+
+    public void setNextChunkNo(int nextChunkNo) {
+        this.nextChunkNo = nextChunkNo;
+    }
+
+    public long getAccountsCredited() {
+        return accountsCredited;
+    }
+
+    public void setAccountsCredited(long accountsCredited) {
+        this.accountsCredited = accountsCredited;
+    }
+
+    public long getTotalInterest() {
+        return totalInterest;
+    }
+
+    public void setTotalInterest(long totalInterest) {
+        this.totalInterest = totalInterest;
+    }
+
+    public long getTotalFees() {
+        return totalFees;
+    }
+
+    public void setTotalFees(long totalFees) {
+        this.totalFees = totalFees;
+    }
+
+    @Override
+    public String toString() {
+        return "InterestRun{" +
+                "runId=" + runId +
+                ", period=" + period +
+                ", status=" + status +
+                ", credited=" + accountsCredited +
+                ", interest=" + Money.format(totalInterest) +
+                ", fees=" + Money.format(totalFees) +
+                '}';
+    }
+}
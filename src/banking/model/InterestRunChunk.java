@@ -0,0 +1,120 @@
+package banking.model;
+
+import java.time.LocalDateTime;
+
+// Run log entry: one committed chunk of a month-end interest run and how long it took
+public class InterestRunChunk {
+    private int runId;
+    private int chunkNo;
+    private String firstAccount;
+    private String lastAccount;
+    private int accounts;
+    private int credited;
+    private int failed;
+    private long interest;
+    private long fees;
+    private long elapsedMillis;
+    private LocalDateTime finishedAt;
+
+    public int getRunId() {
+        return runId;
+    }
+
+    public void setRunId(int runId) {
+        this.runId = runId;
+    }
+
+    public int getChunkNo() {
+        return chunkNo;
+    }
+
+    public void setChunkNo(int chunkNo) {
+        this.chunkNo = chunkNo;
+    }
+
+    public String getFirstAccount() {
+        return firstAccount;
+    }
+
+    public void setFirstAccount(String firstAccount) {
+        this.firstAccount = firstAccount;
+    }
+
+    public String getLastAccount() {
+        return lastAccount;
+    }
+
+    public void setLastAccount(String lastAccount) {
+        this.lastAccount = lastAccount;
+    }
+
+    public int getAccounts() {
+        return accounts;
+    }
+
+    public void setAccounts(int accounts) {
+        this.accounts = accounts;
+    }
+
+    public int getCredited() {
+        return credited;
+    }
+
+    public void setCredited(int credited) {
+        this.credited = credited;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public long getInterest() {
+        return interest;
+    }
+
+    public void setInterest(long interest) {
+        this.interest = interest;
+    }
+
+    public long getFees() {
+        return fees;
+    }
+
+    public void setFees(long fees) {
+        this.fees = fees;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "InterestRunChunk{" +
+                "run=" + runId +
+                ", chunk=" + chunkNo +
+                ", accounts=" + firstAccount + ".." + lastAccount + " (" + accounts + ")" +
+                ", credited=" + credited +
+                ", failed=" + failed +
+                ", interest=" + Money.format(interest) +
+                ", fees=" + Money.format(fees) +
+                ", elapsedMs=" + elapsedMillis +
+                '}';
+    }
+}
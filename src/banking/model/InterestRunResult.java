@@ -0,0 +1,102 @@
+package banking.model;
+
+// Totals of one attempt at a period's interest run. The engine hands out one of these
+// after every chunk as a progress snapshot, and a final one when the attempt stops.
+public class InterestRunResult {
+    private final String period;
+    private final boolean dryRun;
+    private final long totalAccounts;
+    private final long processed;
+    private final long credited;
+    private final long failed;
+    private final long totalInterest;
+    private final long totalFees;
+    private final long elapsedMillis;
+    private final boolean finished;
+    private final boolean cancelled;
+
+    public InterestRunResult(String period, boolean dryRun, long totalAccounts, long processed, long credited, long failed,
+                             long totalInterest, long totalFees, long elapsedMillis, boolean finished, boolean cancelled) {
+        this.period = period;
+        this.dryRun = dryRun;
+        this.totalAccounts = totalAccounts;
+        this.processed = processed;
+        this.credited = credited;
+        this.failed = failed;
+        this.totalInterest = totalInterest;
+        this.totalFees = totalFees;
+        this.elapsedMillis = elapsedMillis;
+        this.finished = finished;
+        this.cancelled = cancelled;
+    }
+
+    public String getPeriod() {
+        return period;
+    }
+
+    // In a dry run nothing is written; credited, totalInterest and totalFees are what a real run would post
+    public boolean isDryRun() {
+        return dryRun;
+    }
+
+    public long getTotalAccounts() {
+        return totalAccounts;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public long getCredited() {
+        return credited;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getTotalInterest() {
+        return totalInterest;
+    }
+
+    // Monthly account fees charged in the same run
+    public long getTotalFees() {
+        return totalFees;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public double getFractionDone() {
+        return totalAccounts == 0 ? (finished ? 1 : 0) : Math.min(1.0, (double) processed / totalAccounts);
+    }
+
+    public double getAccountsPerSecond() {
+        return elapsedMillis == 0 ? 0 : processed * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "InterestRunResult{" +
+                "period=" + period + ", " +
+                (dryRun ? "dryRun, " : "") +
+                "processed=" + processed + "/" + totalAccounts +
+                ", credited=" + credited +
+                ", failed=" + failed +
+                ", interest=" + Money.format(totalInterest) +
+                ", fees=" + Money.format(totalFees) +
+                ", elapsedMs=" + elapsedMillis +
+                ", accountsPerSec=" + String.format("%.0f", getAccountsPerSecond()) +
+                (cancelled ? ", cancelled" : "") +
+                '}';
+    }
+}
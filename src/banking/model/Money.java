@@ -0,0 +1,152 @@
+package banking.model;
+
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+// Money is a long count of thebe (1/100 pula) everywhere: in the models, the DAOs and
+// the INTEGER columns behind them. Sums and comparisons are exact, and nothing here
+// allocates, so postings and month-end runs stay on primitive arithmetic. Rates are
+// fixed point as well, in billionths; the only rounding is where a rate is applied or
+// an amount divided, and the caller always says which way it goes.
+public final class Money {
+    public static final long THEBE_PER_PULA = 100;
+    public static final long RATE_SCALE = 1_000_000_000L;
+
+    private Money() {
+    }
+
+    public static long ofPula(long pula) {
+        return Math.multiplyExact(pula, THEBE_PER_PULA);
+    }
+
+    // Parses an amount typed as pula, e.g. "1250", "1250.5" or "1,250.50"
+    public static long parse(String text) {
+        if (text == null) {
+            throw new NumberFormatException("Amount is required");
+        }
+        String value = text.trim().replace(",", "");
+        if (value.isEmpty()) {
+            throw new NumberFormatException("Amount is required");
+        }
+        boolean negative = value.charAt(0) == '-';
+        int i = negative || value.charAt(0) == '+' ? 1 : 0;
+        long pula = 0;
+        long thebe = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (c >= '0' && c <= '9') {
+                digits++;
+                if (decimals < 0) {
+                    pula = Math.addExact(Math.multiplyExact(pula, 10), c - '0');
+                } else if (++decimals <= 2) {
+                    thebe = thebe * 10 + (c - '0');
+                } else {
+                    throw new NumberFormatException("Amounts have at most two decimal places: " + text);
+                }
+            } else {
+                throw new NumberFormatException("Invalid amount: " + text);
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Invalid amount: " + text);
+        }
+        if (decimals == 1) {
+            thebe *= 10;
+        }
+        long amount = Math.addExact(ofPula(pula), thebe);
+        return negative ? -amount : amount;
+    }
+
+    // "1250.50", "-0.05"
+    public static String format(long thebe) {
+        long pula = Math.abs(thebe / THEBE_PER_PULA);
+        long cents = Math.abs(thebe % THEBE_PER_PULA);
+        return (thebe < 0 ? "-" : "") + pula + (cents < 10 ? ".0" : ".") + cents;
+    }
+
+    // For charts and ratios only; never feed the result back into a balance
+    public static double toPula(long thebe) {
+        return thebe / (double) THEBE_PER_PULA;
+    }
+
+    // A rate such as 0.0005 (0.05%) in billionths, for applyRate
+    public static long rate(double rate) {
+        return Math.round(rate * RATE_SCALE);
+    }
+
+    public static double rateValue(long rate) {
+        return rate / (double) RATE_SCALE;
+    }
+
+    // amount x rate, rounded as asked
+    public static long applyRate(long amount, long rate, RoundingMode mode) {
+        return multiplyDivide(amount, rate, RATE_SCALE, mode);
+    }
+
+    // a x b / c with one rounding step at the end. The product only leaves 64 bits for
+    // balances far beyond anything this bank holds, and only then is a BigInteger made.
+    public static long multiplyDivide(long a, long b, long c, RoundingMode mode) {
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        if ((high == 0 && low >= 0) || (high == -1 && low < 0)) {
+            return divide(low, c, mode);
+        }
+        BigInteger[] qr = BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).divideAndRemainder(BigInteger.valueOf(c));
+        long q = qr[0].longValueExact();
+        int sign = qr[1].signum() * Long.signum(c);
+        if (sign == 0) {
+            return q;
+        }
+        int half = qr[1].abs().shiftLeft(1).compareTo(BigInteger.valueOf(c).abs());
+        return round(q, sign, half, mode);
+    }
+
+    // dividend / divisor, rounded as asked
+    public static long divide(long dividend, long divisor, RoundingMode mode) {
+        long q = dividend / divisor;
+        long r = dividend % divisor;
+        if (r == 0) {
+            return q;
+        }
+        // Sign of the exact quotient, and where the remainder sits against half the divisor
+        int sign = (dividend < 0) == (divisor < 0) ? 1 : -1;
+        long absR = Math.abs(r);
+        int half = Long.compare(absR, Math.abs(divisor) - absR);
+        return round(q, sign, half, mode);
+    }
+
+    private static long round(long truncated, int sign, int half, RoundingMode mode) {
+        boolean awayFromZero;
+        switch (mode) {
+            case UNNECESSARY:
+                throw new ArithmeticException("Amount does not divide exactly");
+            case DOWN:
+                awayFromZero = false;
+                break;
+            case UP:
+                awayFromZero = true;
+                break;
+            case FLOOR:
+                awayFromZero = sign < 0;
+                break;
+            case CEILING:
+                awayFromZero = sign > 0;
+                break;
+            case HALF_UP:
+                awayFromZero = half >= 0;
+                break;
+            case HALF_DOWN:
+                awayFromZero = half > 0;
+                break;
+            case HALF_EVEN:
+            default:
+                awayFromZero = half > 0 || (half == 0 && (truncated & 1) != 0);
+                break;
+        }
+        return awayFromZero ? truncated + sign : truncated;
+    }
+}
@@ -0,0 +1,91 @@
+package banking.model;
+
+// One line of a batch transfer (e.g. a salary payment) and, once the batch has
+// run, what happened to it
+public class PaymentLine {
+    public enum Status { PENDING, POSTED, REJECTED }
+
+    private String toAccountNumber;
+    private long amount;
+    private String reference;
+    private Status status;
+    private String message;
+    private int transferId;
+    private long balanceAfter;
+
+    public PaymentLine() {
+        this.status = Status.PENDING;
+    }
+
+    public PaymentLine(String toAccountNumber, long amount, String reference) {
+        this.toAccountNumber = toAccountNumber;
+        this.amount = amount;
+        this.reference = reference;
+        this.status = Status.PENDING;
+    }
+
+    public void posted(int transferId, long balanceAfter) {
+        this.status = Status.POSTED;
+        this.transferId = transferId;
+        this.balanceAfter = balanceAfter;
+        this.message = null;
+    }
+
+    public void reject(String message) {
+        this.status = Status.REJECTED;
+        this.message = message;
+    }
+
+    // Getters and Setters
+    public String getToAccountNumber() {
+        return toAccountNumber;
+    }
+
+    public void setToAccountNumber(String toAccountNumber) {
+        this.toAccountNumber = toAccountNumber;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public void setAmount(long amount) {
+        this.amount = amount;
+    }
+
+    public String getReference() {
+        return reference;
+    }
+
+    public void setReference(String reference) {
+        this.reference = reference;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public int getTransferId() {
+        return transferId;
+    }
+
+    // Destination balance right after this line was credited
+    public long getBalanceAfter() {
+        return balanceAfter;
+    }
+
+    @Override
+    public String toString() {
+        return "PaymentLine{" +
+                "to=" + toAccountNumber +
+                ", amount=" + Money.format(amount) +
+                ", reference='" + reference + '\'' +
+                ", status=" + status +
+                (message != null ? ", message='" + message + '\'' : "") +
+                '}';
+    }
+}
@@ -0,0 +1,127 @@
+package banking.model;
+
+// One band of an account product's pricing, kept in the product_rules table. A RATE
+// band pays its monthly rate on the month's average daily balance, a FEE band charges
+// its fee once a month; the band that applies is the one with the highest minBalance
+// at or below the average balance. Amounts are thebe (see Money). A rule with
+// validFrom/validTo (yyyy-MM, inclusive, either may be open) is promotional: for the
+// months it covers, the product's promotional bands of that kind replace its standard ones.
+public class ProductRule {
+    public enum Kind { RATE, FEE }
+
+    private int ruleId;
+    private String accountType;
+    private Kind kind;
+    private long minBalance;
+    private double rate;
+    private long fee;
+    private String validFrom;
+    private String validTo;
+
+    public ProductRule() {
+    }
+
+    public static ProductRule rate(String accountType, long minBalance, double rate) {
+        ProductRule rule = new ProductRule(accountType, Kind.RATE, minBalance);
+        rule.rate = rate;
+        return rule;
+    }
+
+    public static ProductRule fee(String accountType, long minBalance, long fee) {
+        ProductRule rule = new ProductRule(accountType, Kind.FEE, minBalance);
+        rule.fee = fee;
+        return rule;
+    }
+
+    private ProductRule(String accountType, Kind kind, long minBalance) {
+        this.accountType = accountType;
+        this.kind = kind;
+        this.minBalance = minBalance;
+    }
+
+    public int getRuleId() {
+        return ruleId;
+    }
+
+    public void setRuleId(int ruleId) {
+        this.ruleId = ruleId;
+    }
+
+    public String getAccountType() {
+        return accountType;
+    }
+
+    public void setAccountType(String accountType) {
+        this.accountType = accountType;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public void setKind(Kind kind) {
+        this.kind = kind;
+    }
+
+    public long getMinBalance() {
+        return minBalance;
+    }
+
+    public void setMinBalance(long minBalance) {
+        this.minBalance = minBalance;
+    }
+
+    // Monthly rate of a RATE rule, e.g. 0.0005 for 0.05%
+    public double getRate() {
+        return rate;
+    }
+
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    public long getFee() {
+        return fee;
+    }
+
+    public void setFee(long fee) {
+        this.fee = fee;
+    }
+
+    public String getValidFrom() {
+        return validFrom;
+    }
+
+    public void setValidFrom(String validFrom) {
+        this.validFrom = validFrom;
+    }
+
+    public String getValidTo() {
+        return validTo;
+    }
+
+    public void setValidTo(String validTo) {
+        this.validTo = validTo;
+    }
+
+    public boolean isPromotional() {
+        return validFrom != null || validTo != null;
+    }
+
+    public boolean appliesTo(String period) {
+        return (validFrom == null || validFrom.compareTo(period) <= 0)
+                && (validTo == null || validTo.compareTo(period) >= 0);
+    }
+
+    @Override
+    public String toString() {
+        return "ProductRule{" +
+                "id=" + ruleId +
+                ", " + accountType +
+                " " + kind +
+                " from BWP " + Money.format(minBalance) +
+                ": " + (kind == Kind.FEE ? "BWP " + Money.format(fee) : String.valueOf(rate)) +
+                (isPromotional() ? ", " + (validFrom != null ? validFrom : "") + ".." + (validTo != null ? validTo : "") : "") +
+                '}';
+    }
+}
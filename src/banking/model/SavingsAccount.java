@@ -1,7 +1,8 @@
 package banking.model;
 
 public class SavingsAccount extends Account {
-    private static final double INTEREST_RATE = 0.0005; // 0.05% monthly
+    // Stored in accounts.account_type; AccountDAO.DEBIT_SQL refuses debits on this type
+    public static final String TYPE = "Savings Account";
 
     public SavingsAccount() {
         super();
@@ -12,21 +13,12 @@ public class SavingsAccount extends Account {
     }
 
     @Override
-    public void withdraw(double amount) throws UnsupportedOperationException {
+    public void withdraw(long amount) throws UnsupportedOperationException {
         throw new UnsupportedOperationException("Withdrawals are not allowed on Savings Accounts");
     }
 
-    @Override
-    public double calculateInterest() {
-        return balance * INTEREST_RATE;
-    }
-
     @Override
     public String getAccountType() {
-        return "Savings Account";
-    }
-
-    public static double getInterestRate() {
-        return INTEREST_RATE;
+        return TYPE;
     }
 }
\ No newline at end of file
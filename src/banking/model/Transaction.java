@@ -4,28 +4,59 @@ import java.time.LocalDateTime;
 
 public class Transaction {
     private int transactionId;
+    private long accountId;
     private String accountNumber;
     private TransactionType type;
-    private double amount;
-    private LocalDateTime timestamp;
+    private long amount;
+    private long timestamp;
     private String description;
-    private double balanceAfter;
+    private long balanceAfter;
+    private Integer transferId;
 
+    // Stored as the code, which must never change once rows carry it
     public enum TransactionType {
-        DEPOSIT, WITHDRAWAL, INTEREST, TRANSFER_IN, TRANSFER_OUT
+        DEPOSIT(1), WITHDRAWAL(2), INTEREST(3), FEE(4), TRANSFER_IN(5), TRANSFER_OUT(6);
+
+        private static final TransactionType[] BY_CODE = new TransactionType[7];
+
+        static {
+            for (TransactionType type : values()) {
+                BY_CODE[type.code] = type;
+            }
+        }
+
+        private final int code;
+
+        TransactionType(int code) {
+            this.code = code;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        public static TransactionType fromCode(int code) {
+            TransactionType type = code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+            if (type == null) {
+                throw new IllegalArgumentException("Unknown transaction type code: " + code);
+            }
+            return type;
+        }
     }
 
     public Transaction() {
-        this.timestamp = LocalDateTime.now();
+        this.timestamp = System.currentTimeMillis();
     }
 
-    public Transaction(String accountNumber, TransactionType type, double amount, double balanceAfter, String description) {
+    // Ledger rows are keyed by accountId; the number is carried along for display
+    public Transaction(long accountId, String accountNumber, TransactionType type, long amount, long balanceAfter, String description) {
+        this.accountId = accountId;
         this.accountNumber = accountNumber;
         this.type = type;
         this.amount = amount;
         this.balanceAfter = balanceAfter;
         this.description = description;
-        this.timestamp = LocalDateTime.now();
+        this.timestamp = System.currentTimeMillis();
     }
 
     // Getters and Setters
@@ -37,6 +68,14 @@ public class Transaction {
         this.transactionId = transactionId;
     }
 
+    public long getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(long accountId) {
+        this.accountId = accountId;
+    }
+
     public String getAccountNumber() {
         return accountNumber;
     }
@@ -53,19 +92,28 @@ public class Transaction {
         this.type = type;
     }
 
-    public double getAmount() {
+    public long getAmount() {
         return amount;
     }
 
-    public void setAmount(double amount) {
+    public void setAmount(long amount) {
         this.amount = amount;
     }
 
     public LocalDateTime getTimestamp() {
-        return timestamp;
+        return EpochMillis.toLocal(timestamp);
     }
 
     public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = EpochMillis.of(timestamp);
+    }
+
+    // Epoch milliseconds, as stored
+    public long getTimestampMillis() {
+        return timestamp;
+    }
+
+    public void setTimestampMillis(long timestamp) {
         this.timestamp = timestamp;
     }
 
@@ -77,22 +125,31 @@ public class Transaction {
         this.description = description;
     }
 
-    public double getBalanceAfter() {
+    public long getBalanceAfter() {
         return balanceAfter;
     }
 
-    public void setBalanceAfter(double balanceAfter) {
+    public void setBalanceAfter(long balanceAfter) {
         this.balanceAfter = balanceAfter;
     }
 
+    // Shared by the two legs of a transfer, null for other postings
+    public Integer getTransferId() {
+        return transferId;
+    }
+
+    public void setTransferId(Integer transferId) {
+        this.transferId = transferId;
+    }
+
     @Override
     public String toString() {
         return "Transaction{" +
                 "id=" + transactionId +
                 ", type=" + type +
-                ", amount=" + String.format("%.2f", amount) +
-                ", balance=" + String.format("%.2f", balanceAfter) +
-                ", time=" + timestamp +
+                ", amount=" + Money.format(amount) +
+                ", balance=" + Money.format(balanceAfter) +
+                ", time=" + getTimestamp() +
                 '}';
     }
 }
\ No newline at end of file
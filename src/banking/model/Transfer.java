@@ -0,0 +1,113 @@
+package banking.model;
+
+import java.time.LocalDateTime;
+
+// A movement of money between two accounts. Its TRANSFER_OUT and TRANSFER_IN
+// ledger rows carry the same transfer id.
+public class Transfer {
+    private int transferId;
+    private String fromAccountNumber;
+    private String toAccountNumber;
+    private long amount;
+    private String description;
+    private long timestamp;
+    private long fromBalanceAfter;
+    private long toBalanceAfter;
+
+    public Transfer() {
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public Transfer(String fromAccountNumber, String toAccountNumber, long amount, String description) {
+        this.fromAccountNumber = fromAccountNumber;
+        this.toAccountNumber = toAccountNumber;
+        this.amount = amount;
+        this.description = description;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    // Getters and Setters
+    public int getTransferId() {
+        return transferId;
+    }
+
+    public void setTransferId(int transferId) {
+        this.transferId = transferId;
+    }
+
+    public String getFromAccountNumber() {
+        return fromAccountNumber;
+    }
+
+    public void setFromAccountNumber(String fromAccountNumber) {
+        this.fromAccountNumber = fromAccountNumber;
+    }
+
+    public String getToAccountNumber() {
+        return toAccountNumber;
+    }
+
+    public void setToAccountNumber(String toAccountNumber) {
+        this.toAccountNumber = toAccountNumber;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public void setAmount(long amount) {
+        this.amount = amount;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return EpochMillis.toLocal(timestamp);
+    }
+
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = EpochMillis.of(timestamp);
+    }
+
+    // Epoch milliseconds, as stored
+    public long getTimestampMillis() {
+        return timestamp;
+    }
+
+    public void setTimestampMillis(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public long getFromBalanceAfter() {
+        return fromBalanceAfter;
+    }
+
+    public void setFromBalanceAfter(long fromBalanceAfter) {
+        this.fromBalanceAfter = fromBalanceAfter;
+    }
+
+    public long getToBalanceAfter() {
+        return toBalanceAfter;
+    }
+
+    public void setToBalanceAfter(long toBalanceAfter) {
+        this.toBalanceAfter = toBalanceAfter;
+    }
+
+    @Override
+    public String toString() {
+        return "Transfer{" +
+                "id=" + transferId +
+                ", from=" + fromAccountNumber +
+                ", to=" + toAccountNumber +
+                ", amount=" + Money.format(amount) +
+                ", time=" + getTimestamp() +
+                '}';
+    }
+}
@@ -0,0 +1,132 @@
+package banking.util;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Serializes work on the same account while letting different accounts proceed
+// in parallel. Account numbers hash onto a fixed set of lock stripes, so memory
+// does not grow with the number of accounts. Operations that touch several
+// accounts take their stripes in ascending order, which rules out deadlock.
+public class AccountLockManager {
+    private static final int DEFAULT_STRIPES = 256;
+    private static final AccountLockManager SHARED = new AccountLockManager(DEFAULT_STRIPES);
+
+    private final ReentrantLock[] stripes;
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong contended = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public AccountLockManager(int stripeCount) {
+        if (stripeCount < 1 || Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a power of two");
+        }
+        stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    // The instance every controller uses, so all postings agree on the same locks
+    public static AccountLockManager shared() {
+        return SHARED;
+    }
+
+    // Locks every listed account; close the returned lease to release them
+    public Lease lock(String... accountNumbers) {
+        int[] indexes = new int[accountNumbers.length];
+        for (int i = 0; i < accountNumbers.length; i++) {
+            if (accountNumbers[i] == null) {
+                throw new IllegalArgumentException("Account number is required");
+            }
+            indexes[i] = stripeIndex(accountNumbers[i]);
+        }
+        // Ascending stripe order, each stripe once even if two accounts share it
+        indexes = Arrays.stream(indexes).distinct().sorted().toArray();
+
+        int locked = 0;
+        try {
+            for (int index : indexes) {
+                acquire(stripes[index]);
+                locked++;
+            }
+        } finally {
+            if (locked < indexes.length) {
+                release(indexes, locked);
+            }
+        }
+        return new Lease(indexes);
+    }
+
+    private void acquire(ReentrantLock lock) {
+        acquisitions.incrementAndGet();
+        if (lock.tryLock()) {
+            return;
+        }
+        contended.incrementAndGet();
+        long start = System.nanoTime();
+        lock.lock();
+        long waited = System.nanoTime() - start;
+        waitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+
+    private void release(int[] indexes, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            stripes[indexes[i]].unlock();
+        }
+    }
+
+    int stripeIndex(String accountNumber) {
+        int h = accountNumber.hashCode();
+        h ^= (h >>> 16);   // spread the high bits, sequential account numbers differ mostly in the low digits
+        return h & (stripes.length - 1);
+    }
+
+    public long getAcquisitions() {
+        return acquisitions.get();
+    }
+
+    public long getContended() {
+        return contended.get();
+    }
+
+    public double getAverageWaitMillis() {
+        long waits = contended.get();
+        return waits == 0 ? 0 : waitNanos.get() / 1_000_000.0 / waits;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return "AccountLocks{stripes=" + stripes.length +
+                ", acquisitions=" + acquisitions.get() +
+                ", contended=" + contended.get() +
+                ", avgWaitMs=" + String.format("%.3f", getAverageWaitMillis()) +
+                ", maxWaitMs=" + String.format("%.3f", getMaxWaitMillis()) +
+                ", totalWaitMs=" + TimeUnit.NANOSECONDS.toMillis(waitNanos.get()) +
+                '}';
+    }
+
+    public class Lease implements AutoCloseable {
+        private final int[] indexes;
+        private boolean released;
+
+        private Lease(int[] indexes) {
+            this.indexes = indexes;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(indexes, indexes.length);
+            }
+        }
+    }
+}
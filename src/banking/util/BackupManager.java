@@ -0,0 +1,433 @@
+package banking.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+// Online backups plus continuous WAL archiving for point-in-time restore.
+//
+// A base backup is taken with SQLite's backup API through the driver's
+// "backup to" command, which copies the database in small page steps from a
+// reader while the writer keeps posting. While archiving is enabled the
+// maintenance daemon owns checkpoints (wal_autocheckpoint is forced to 0), and
+// before each checkpoint the WAL file is copied into the archive under the
+// writer lock. Replaying a base plus every later segment in order rebuilds the
+// ledger as it was when the last replayed segment was archived.
+public class BackupManager {
+    private static final String MANIFEST = "manifest.log";
+    private static final int WAL_HEADER_BYTES = 32;
+
+    private final StorageProfile profile;
+    private final Path archiveDir;
+    private long sequence;
+    private long lastArchivedTransactionId = -1;
+    private long archivedTransactionCount = -1;
+
+    public BackupManager(StorageProfile profile) {
+        this.profile = profile;
+        this.archiveDir = profile.isArchivingEnabled() ? Paths.get(profile.getArchiveDir()) : null;
+    }
+
+    public boolean isArchivingEnabled() {
+        return archiveDir != null;
+    }
+
+    // Copy the live database to dest without stopping postings
+    public synchronized BackupResult backup(Path dest) throws SQLException {
+        ConnectionPool.Stats before = DatabaseUtil.getPoolStats();
+        long start = System.nanoTime();
+        long transactionCount;
+        long maxTransactionId;
+
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             Statement stmt = conn.createStatement()) {
+            Files.deleteIfExists(dest);
+            if (dest.getParent() != null) {
+                Files.createDirectories(dest.getParent());
+            }
+            stmt.executeUpdate("backup to " + quote(dest.toAbsolutePath().toString()));
+        } catch (IOException e) {
+            throw new SQLException("Cannot prepare backup file " + dest + ": " + e.getMessage(), e);
+        }
+
+        // Counts come from the copy itself, so they describe exactly what was backed up
+        try (Connection copy = DriverManager.getConnection("jdbc:sqlite:" + dest.toAbsolutePath());
+             Statement stmt = copy.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*), COALESCE(MAX(transaction_id), 0) FROM transactions")) {
+            rs.next();
+            transactionCount = rs.getLong(1);
+            maxTransactionId = rs.getLong(2);
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        ConnectionPool.Stats after = DatabaseUtil.getPoolStats();
+        long writes = after.getWriterAcquisitions() - before.getWriterAcquisitions();
+        double writerWaitMillis = writes == 0 ? 0
+                : (after.getWriterWaitNanos() - before.getWriterWaitNanos()) / 1_000_000.0 / writes;
+
+        BackupResult result = new BackupResult(dest, dest.toFile().length(), elapsedNanos / 1_000_000,
+                writes, writerWaitMillis, transactionCount, maxTransactionId);
+        System.out.println("Backup complete: " + result);
+        return result;
+    }
+
+    // Take a base backup into the archive; later WAL segments are replayed on top of it
+    public synchronized BackupResult baseBackup() throws SQLException {
+        requireArchive();
+        long now = System.currentTimeMillis();
+        BackupResult result = backup(archiveDir.resolve("base-" + now + ".db"));
+        // The writer is held for its lock only, so no write lands while the chain restarts
+        Connection writer = DatabaseUtil.getWriteConnection();
+        try {
+            // Only segments archived after this point need replaying on this base
+            lastArchivedTransactionId = result.getMaxTransactionId();
+            archivedTransactionCount = result.getTransactionCount();
+            appendManifest(nextSequence(), "base", now, result.getFile().getFileName().toString(),
+                    result.getTransactionCount(), result.getMaxTransactionId());
+        } finally {
+            writer.close();
+        }
+        return result;
+    }
+
+    // Called by the maintenance daemon in place of a plain checkpoint. The writer
+    // is held from the copy until the checkpoint so no frame can slip in between.
+    public synchronized void archiveAndCheckpoint() throws SQLException {
+        requireArchive();
+        File wal = new File(profile.getPath() + "-wal");
+
+        try (Connection conn = DatabaseUtil.getWriteConnection()) {
+            if (wal.length() <= WAL_HEADER_BYTES) {
+                return;
+            }
+            if (archivedTransactionCount < 0) {
+                // No base in this process yet - start the chain with one
+                baseBackup();
+            }
+
+            long now = System.currentTimeMillis();
+            long seq = nextSequence();
+            String name = String.format("wal-%010d-%d.wal", seq, now);
+            try {
+                Files.copy(wal.toPath(), archiveDir.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new SQLException("Cannot archive WAL segment: " + e.getMessage(), e);
+            }
+
+            // Ledger rows are append-only, so the running count only needs the new rows
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT COUNT(*), COALESCE(MAX(transaction_id), ?) FROM transactions WHERE transaction_id > ?")) {
+                pstmt.setLong(1, lastArchivedTransactionId);
+                pstmt.setLong(2, lastArchivedTransactionId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    rs.next();
+                    archivedTransactionCount += rs.getLong(1);
+                    lastArchivedTransactionId = rs.getLong(2);
+                }
+            }
+            appendManifest(seq, "wal", now, name, archivedTransactionCount, lastArchivedTransactionId);
+
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("PRAGMA wal_checkpoint(TRUNCATE)")) {
+                if (rs.next() && rs.getInt(1) != 0) {
+                    // Frames stay in the WAL and are simply archived again next time
+                    System.out.println("WAL checkpoint after archiving could not complete, readers still active");
+                }
+            }
+        }
+    }
+
+    // Rebuild the database as of the last archived segment at or before the given time
+    public RestoreResult restore(long pointInTimeMillis, Path target) throws SQLException {
+        requireArchive();
+        List<ManifestEntry> entries = readManifest();
+
+        ManifestEntry base = null;
+        for (ManifestEntry entry : entries) {
+            if (entry.type.equals("base") && entry.timeMillis <= pointInTimeMillis) {
+                base = entry;
+            }
+        }
+        if (base == null) {
+            throw new SQLException("No base backup at or before " + pointInTimeMillis);
+        }
+
+        long start = System.nanoTime();
+        ManifestEntry last = base;
+        int segments = 0;
+        try {
+            Files.deleteIfExists(Paths.get(target + "-wal"));
+            Files.deleteIfExists(Paths.get(target + "-shm"));
+            Files.copy(archiveDir.resolve(base.file), target, StandardCopyOption.REPLACE_EXISTING);
+            setWalMode(target);
+
+            for (ManifestEntry entry : entries) {
+                if (!entry.type.equals("wal") || entry.timeMillis <= base.timeMillis
+                        || entry.timeMillis > pointInTimeMillis) {
+                    continue;
+                }
+                // SQLite recovers the committed frames of a WAL it finds next to the
+                // database; the TRUNCATE checkpoint then folds them into the file
+                Files.copy(archiveDir.resolve(entry.file), Paths.get(target + "-wal"), StandardCopyOption.REPLACE_EXISTING);
+                try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + target.toAbsolutePath());
+                     Statement stmt = conn.createStatement()) {
+                    stmt.executeQuery("PRAGMA wal_checkpoint(TRUNCATE)").close();
+                }
+                last = entry;
+                segments++;
+            }
+        } catch (IOException e) {
+            throw new SQLException("Restore failed: " + e.getMessage(), e);
+        }
+
+        RestoreResult result = verify(target, last, segments, (System.nanoTime() - start) / 1_000_000);
+        System.out.println("Restore complete: " + result);
+        return result;
+    }
+
+    // Integrity check plus ledger row count against what the archive recorded
+    public RestoreResult verify(Path target, ManifestEntry expected, int segments, long elapsedMillis) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + target.toAbsolutePath());
+             Statement stmt = conn.createStatement()) {
+            String integrity;
+            try (ResultSet rs = stmt.executeQuery("PRAGMA quick_check")) {
+                integrity = rs.next() ? rs.getString(1) : "unknown";
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*), COALESCE(MAX(transaction_id), 0) FROM transactions")) {
+                rs.next();
+                return new RestoreResult(target, expected.timeMillis, segments, elapsedMillis, integrity,
+                        expected.transactionCount, rs.getLong(1), expected.maxTransactionId, rs.getLong(2));
+            }
+        }
+    }
+
+    private void setWalMode(Path target) throws SQLException {
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + target.toAbsolutePath());
+             Statement stmt = conn.createStatement()) {
+            stmt.executeQuery("PRAGMA journal_mode = WAL").close();
+        }
+    }
+
+    private long nextSequence() {
+        if (sequence == 0) {
+            for (ManifestEntry entry : readManifestQuietly()) {
+                sequence = Math.max(sequence, entry.sequence);
+            }
+        }
+        return ++sequence;
+    }
+
+    private void appendManifest(long seq, String type, long timeMillis, String file, long transactionCount, long maxTransactionId) throws SQLException {
+        String line = seq + "|" + type + "|" + timeMillis + "|" + file + "|" + transactionCount + "|" + maxTransactionId;
+        try (BufferedWriter writer = Files.newBufferedWriter(archiveDir.resolve(MANIFEST), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(line);
+            writer.newLine();
+        } catch (IOException e) {
+            throw new SQLException("Cannot write archive manifest: " + e.getMessage(), e);
+        }
+    }
+
+    private List<ManifestEntry> readManifest() throws SQLException {
+        try {
+            List<ManifestEntry> entries = new ArrayList<>();
+            Path manifest = archiveDir.resolve(MANIFEST);
+            if (!Files.exists(manifest)) {
+                return entries;
+            }
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                String[] parts = line.split("\\|");
+                if (parts.length == 6) {
+                    entries.add(new ManifestEntry(Long.parseLong(parts[0]), parts[1], Long.parseLong(parts[2]),
+                            parts[3], Long.parseLong(parts[4]), Long.parseLong(parts[5])));
+                }
+            }
+            entries.sort((e1, e2) -> Long.compare(e1.sequence, e2.sequence));
+            return entries;
+        } catch (IOException e) {
+            throw new SQLException("Cannot read archive manifest: " + e.getMessage(), e);
+        }
+    }
+
+    private List<ManifestEntry> readManifestQuietly() {
+        try {
+            return readManifest();
+        } catch (SQLException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    private void requireArchive() throws SQLException {
+        if (archiveDir == null) {
+            throw new SQLException("WAL archiving is disabled - set banking.db.archiveDir");
+        }
+        try {
+            Files.createDirectories(archiveDir);
+        } catch (IOException e) {
+            throw new SQLException("Cannot create archive directory " + archiveDir + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String quote(String path) {
+        return '"' + path.replace("\"", "\"\"") + '"';
+    }
+
+    public static class ManifestEntry {
+        private final long sequence;
+        private final String type;
+        private final long timeMillis;
+        private final String file;
+        private final long transactionCount;
+        private final long maxTransactionId;
+
+        ManifestEntry(long sequence, String type, long timeMillis, String file, long transactionCount, long maxTransactionId) {
+            this.sequence = sequence;
+            this.type = type;
+            this.timeMillis = timeMillis;
+            this.file = file;
+            this.transactionCount = transactionCount;
+            this.maxTransactionId = maxTransactionId;
+        }
+    }
+
+    public static class BackupResult {
+        private final Path file;
+        private final long bytes;
+        private final long elapsedMillis;
+        private final long concurrentWrites;
+        private final double averageWriterWaitMillis;
+        private final long transactionCount;
+        private final long maxTransactionId;
+
+        BackupResult(Path file, long bytes, long elapsedMillis, long concurrentWrites, double averageWriterWaitMillis,
+                     long transactionCount, long maxTransactionId) {
+            this.file = file;
+            this.bytes = bytes;
+            this.elapsedMillis = elapsedMillis;
+            this.concurrentWrites = concurrentWrites;
+            this.averageWriterWaitMillis = averageWriterWaitMillis;
+            this.transactionCount = transactionCount;
+            this.maxTransactionId = maxTransactionId;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public double getThroughputMBps() {
+            return elapsedMillis == 0 ? 0 : bytes / 1024.0 / 1024.0 / (elapsedMillis / 1000.0);
+        }
+
+        // Postings that ran while the backup was copying, and how long they waited for the writer
+        public long getConcurrentWrites() {
+            return concurrentWrites;
+        }
+
+        public double getAverageWriterWaitMillis() {
+            return averageWriterWaitMillis;
+        }
+
+        public long getTransactionCount() {
+            return transactionCount;
+        }
+
+        public long getMaxTransactionId() {
+            return maxTransactionId;
+        }
+
+        @Override
+        public String toString() {
+            return "BackupResult{" +
+                    "file=" + file +
+                    ", bytes=" + bytes +
+                    ", elapsedMs=" + elapsedMillis +
+                    ", throughputMBps=" + String.format("%.1f", getThroughputMBps()) +
+                    ", concurrentWrites=" + concurrentWrites +
+                    ", avgWriterWaitMs=" + String.format("%.3f", averageWriterWaitMillis) +
+                    ", transactions=" + transactionCount +
+                    '}';
+        }
+    }
+
+    public static class RestoreResult {
+        private final Path file;
+        private final long restoredToMillis;
+        private final int segmentsApplied;
+        private final long elapsedMillis;
+        private final String integrity;
+        private final long expectedTransactions;
+        private final long actualTransactions;
+        private final long expectedMaxTransactionId;
+        private final long actualMaxTransactionId;
+
+        RestoreResult(Path file, long restoredToMillis, int segmentsApplied, long elapsedMillis, String integrity,
+                      long expectedTransactions, long actualTransactions, long expectedMaxTransactionId, long actualMaxTransactionId) {
+            this.file = file;
+            this.restoredToMillis = restoredToMillis;
+            this.segmentsApplied = segmentsApplied;
+            this.elapsedMillis = elapsedMillis;
+            this.integrity = integrity;
+            this.expectedTransactions = expectedTransactions;
+            this.actualTransactions = actualTransactions;
+            this.expectedMaxTransactionId = expectedMaxTransactionId;
+            this.actualMaxTransactionId = actualMaxTransactionId;
+        }
+
+        public boolean isVerified() {
+            return "ok".equals(integrity)
+                    && expectedTransactions == actualTransactions
+                    && expectedMaxTransactionId == actualMaxTransactionId;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public long getRestoredToMillis() {
+            return restoredToMillis;
+        }
+
+        public int getSegmentsApplied() {
+            return segmentsApplied;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public long getActualTransactions() {
+            return actualTransactions;
+        }
+
+        @Override
+        public String toString() {
+            return "RestoreResult{" +
+                    "file=" + file +
+                    ", restoredTo=" + restoredToMillis +
+                    ", segments=" + segmentsApplied +
+                    ", elapsedMs=" + elapsedMillis +
+                    ", integrity=" + integrity +
+                    ", transactions=" + actualTransactions + "/" + expectedTransactions +
+                    ", maxTransactionId=" + actualMaxTransactionId + "/" + expectedMaxTransactionId +
+                    ", verified=" + isVerified() +
+                    '}';
+        }
+    }
+}
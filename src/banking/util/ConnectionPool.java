@@ -0,0 +1,479 @@
+package banking.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bounded pool of read-only connections plus a single dedicated writer.
+// SQLite only ever allows one writer per database file, so funnelling every
+// write through one connection avoids lock fights between our own threads.
+public class ConnectionPool {
+    private final StorageProfile profile;
+    private final int maxReaders;
+    private final long acquireTimeoutMillis;
+    private final long validationIntervalMillis;
+
+    private final BlockingQueue<PhysicalConnection> idleReaders;
+    private final AtomicInteger openReaders = new AtomicInteger();
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+    private PhysicalConnection writer;
+    private volatile boolean closed;
+
+    // Statistics
+    private final AtomicLong readerAcquisitions = new AtomicLong();
+    private final AtomicLong writerAcquisitions = new AtomicLong();
+    private final AtomicLong readerWaitNanos = new AtomicLong();
+    private final AtomicLong writerWaitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong connectionsDiscarded = new AtomicLong();
+    private final StatementCache.Counters statementCounters = new StatementCache.Counters();
+
+    public ConnectionPool(StorageProfile profile, long validationIntervalMillis) {
+        this.profile = profile;
+        this.maxReaders = profile.getPoolSize();
+        this.acquireTimeoutMillis = profile.getAcquireTimeout();
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.idleReaders = new ArrayBlockingQueue<>(Math.max(1, maxReaders));
+    }
+
+    // Borrow a read-only connection. A thread that already holds the writer
+    // gets the writer back so it can read its own uncommitted changes, and a
+    // pool without readers (in-memory profile) serves every read from the writer.
+    public Connection getReadConnection() throws SQLException {
+        if (maxReaders == 0 || writerLock.isHeldByCurrentThread()) {
+            return getWriteConnection();
+        }
+        ensureOpen();
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+        PhysicalConnection physical = null;
+
+        while (physical == null) {
+            physical = idleReaders.poll();
+            if (physical == null && reserveReaderSlot()) {
+                try {
+                    physical = open(true);
+                } catch (SQLException e) {
+                    openReaders.decrementAndGet();
+                    throw e;
+                }
+            }
+            if (physical == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    timeouts.incrementAndGet();
+                    throw new SQLException("Timed out after " + acquireTimeoutMillis + " ms waiting for a read connection");
+                }
+                try {
+                    physical = idleReaders.poll(remaining, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a read connection", e);
+                }
+            }
+            if (physical != null && !isHealthy(physical)) {
+                discard(physical);
+                openReaders.decrementAndGet();
+                physical = null;
+            }
+        }
+
+        readerAcquisitions.incrementAndGet();
+        readerWaitNanos.addAndGet(System.nanoTime() - start);
+        return wrap(physical, false);
+    }
+
+    // Borrow the writer connection. The writer is re-entrant: nested calls from
+    // the same thread share the physical connection and its open transaction.
+    public Connection getWriteConnection() throws SQLException {
+        return getWriteConnection(acquireTimeoutMillis);
+    }
+
+    public Connection getWriteConnection(long timeoutMillis) throws SQLException {
+        ensureOpen();
+
+        long start = System.nanoTime();
+        try {
+            if (!writerLock.tryLock(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLException("Timed out after " + timeoutMillis + " ms waiting for the write connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the write connection", e);
+        }
+
+        try {
+            if (writerLock.getHoldCount() == 1) {
+                if (writer != null && !isHealthy(writer)) {
+                    discard(writer);
+                    writer = null;
+                }
+                if (writer == null) {
+                    writer = open(false);
+                }
+                writerAcquisitions.incrementAndGet();
+                writerWaitNanos.addAndGet(System.nanoTime() - start);
+            }
+            return wrap(writer, true);
+        } catch (SQLException | RuntimeException e) {
+            writerLock.unlock();
+            throw e;
+        }
+    }
+
+    public boolean holdsWriter() {
+        return writerLock.isHeldByCurrentThread();
+    }
+
+    public Stats getStats() {
+        return new Stats(openReaders.get(), idleReaders.size(), maxReaders,
+                writerLock.isLocked(), writerLock.getQueueLength(),
+                readerAcquisitions.get(), writerAcquisitions.get(),
+                readerWaitNanos.get(), writerWaitNanos.get(),
+                timeouts.get(), connectionsCreated.get(), connectionsDiscarded.get(),
+                statementCounters.hits.get(), statementCounters.misses.get(), statementCounters.evictions.get());
+    }
+
+    public void close() {
+        closed = true;
+        PhysicalConnection reader;
+        while ((reader = idleReaders.poll()) != null) {
+            discard(reader);
+            openReaders.decrementAndGet();
+        }
+        writerLock.lock();
+        try {
+            if (writer != null) {
+                discard(writer);
+                writer = null;
+            }
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    private void ensureOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool has been closed");
+        }
+    }
+
+    private boolean reserveReaderSlot() {
+        while (true) {
+            int current = openReaders.get();
+            if (current >= maxReaders) {
+                return false;
+            }
+            if (openReaders.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    protected Connection createPhysicalConnection(boolean readOnly) throws SQLException {
+        Properties properties = new Properties();
+        if (readOnly) {
+            properties.setProperty("open_mode", "1"); // SQLITE_OPEN_READONLY
+        } else {
+            // Take the write lock when a transaction starts rather than on its first write,
+            // so another process cannot make us fail half way through a transaction
+            properties.setProperty("transaction_mode", "IMMEDIATE");
+        }
+        Connection connection = DriverManager.getConnection(profile.getJdbcUrl(), properties);
+        try {
+            profile.apply(connection, !readOnly);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    private PhysicalConnection open(boolean readOnly) throws SQLException {
+        Connection connection = createPhysicalConnection(readOnly);
+        connectionsCreated.incrementAndGet();
+        return new PhysicalConnection(connection,
+                new StatementCache(connection, profile.getStatementCacheSize(), statementCounters));
+    }
+
+    // Only validate connections that have been idle for a while so the
+    // common borrow path does not pay for an extra round trip.
+    private boolean isHealthy(PhysicalConnection physical) {
+        try {
+            if (physical.connection.isClosed()) {
+                return false;
+            }
+            long idleMillis = System.currentTimeMillis() - physical.lastReturned;
+            if (idleMillis < validationIntervalMillis) {
+                return true;
+            }
+            try (Statement stmt = physical.connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT 1")) {
+                return rs.next();
+            }
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(PhysicalConnection physical) {
+        connectionsDiscarded.incrementAndGet();
+        physical.statements.closeAll();
+        try {
+            physical.connection.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    private void release(PhysicalConnection physical, boolean isWriter) {
+        if (isWriter) {
+            try {
+                if (writerLock.getHoldCount() == 1) {
+                    resetState(physical);
+                }
+            } finally {
+                writerLock.unlock();
+            }
+            return;
+        }
+
+        if (closed || !resetState(physical) || !idleReaders.offer(physical)) {
+            discard(physical);
+            openReaders.decrementAndGet();
+        }
+    }
+
+    // Roll back anything a caller left open so the next borrower starts clean.
+    private boolean resetState(PhysicalConnection physical) {
+        physical.lastReturned = System.currentTimeMillis();
+        try {
+            if (!physical.connection.getAutoCommit()) {
+                physical.connection.rollback();
+                physical.connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error resetting pooled connection: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private Connection wrap(PhysicalConnection physical, boolean isWriter) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new PooledConnectionHandler(physical, isWriter));
+    }
+
+    private static class PhysicalConnection {
+        final Connection connection;
+        final StatementCache statements;
+        volatile long lastReturned = System.currentTimeMillis();
+
+        PhysicalConnection(Connection connection, StatementCache statements) {
+            this.connection = connection;
+            this.statements = statements;
+        }
+    }
+
+    // Hands the physical connection to callers; close() returns it to the pool.
+    private class PooledConnectionHandler implements InvocationHandler {
+        private final PhysicalConnection physical;
+        private final boolean isWriter;
+        private boolean released;
+
+        PooledConnectionHandler(PhysicalConnection physical, boolean isWriter) {
+            this.physical = physical;
+            this.isWriter = isWriter;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!released) {
+                        released = true;
+                        release(physical, isWriter);
+                    }
+                    return null;
+                case "isClosed":
+                    return released || physical.connection.isClosed();
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(physical.connection)) {
+                        return physical.connection;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return (isWriter ? "PooledWriter[" : "PooledReader[") + physical.connection + "]";
+                default:
+                    break;
+            }
+            if (released) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if (method.getName().equals("prepareStatement")) {
+                Class<?>[] types = method.getParameterTypes();
+                if (types.length == 1) {
+                    return physical.statements.prepare((String) args[0], null, (Connection) proxy);
+                }
+                if (types.length == 2 && types[1] == int.class) {
+                    return physical.statements.prepare((String) args[0], (Integer) args[1], (Connection) proxy);
+                }
+            }
+            try {
+                return method.invoke(physical.connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    public static class Stats {
+        private final int openReaders;
+        private final int idleReaders;
+        private final int maxReaders;
+        private final boolean writerBusy;
+        private final int writerQueueLength;
+        private final long readerAcquisitions;
+        private final long writerAcquisitions;
+        private final long readerWaitNanos;
+        private final long writerWaitNanos;
+        private final long timeouts;
+        private final long connectionsCreated;
+        private final long connectionsDiscarded;
+        private final long statementCacheHits;
+        private final long statementCacheMisses;
+        private final long statementCacheEvictions;
+
+        Stats(int openReaders, int idleReaders, int maxReaders, boolean writerBusy, int writerQueueLength,
+              long readerAcquisitions, long writerAcquisitions, long readerWaitNanos, long writerWaitNanos,
+              long timeouts, long connectionsCreated, long connectionsDiscarded,
+              long statementCacheHits, long statementCacheMisses, long statementCacheEvictions) {
+            this.openReaders = openReaders;
+            this.idleReaders = idleReaders;
+            this.maxReaders = maxReaders;
+            this.writerBusy = writerBusy;
+            this.writerQueueLength = writerQueueLength;
+            this.readerAcquisitions = readerAcquisitions;
+            this.writerAcquisitions = writerAcquisitions;
+            this.readerWaitNanos = readerWaitNanos;
+            this.writerWaitNanos = writerWaitNanos;
+            this.timeouts = timeouts;
+            this.connectionsCreated = connectionsCreated;
+            this.connectionsDiscarded = connectionsDiscarded;
+            this.statementCacheHits = statementCacheHits;
+            this.statementCacheMisses = statementCacheMisses;
+            this.statementCacheEvictions = statementCacheEvictions;
+        }
+
+        public int getOpenReaders() {
+            return openReaders;
+        }
+
+        public int getIdleReaders() {
+            return idleReaders;
+        }
+
+        public int getMaxReaders() {
+            return maxReaders;
+        }
+
+        public boolean isWriterBusy() {
+            return writerBusy;
+        }
+
+        public int getWriterQueueLength() {
+            return writerQueueLength;
+        }
+
+        public long getReaderAcquisitions() {
+            return readerAcquisitions;
+        }
+
+        public long getWriterAcquisitions() {
+            return writerAcquisitions;
+        }
+
+        public long getReaderWaitNanos() {
+            return readerWaitNanos;
+        }
+
+        public long getWriterWaitNanos() {
+            return writerWaitNanos;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public long getConnectionsCreated() {
+            return connectionsCreated;
+        }
+
+        public long getConnectionsDiscarded() {
+            return connectionsDiscarded;
+        }
+
+        public long getStatementCacheHits() {
+            return statementCacheHits;
+        }
+
+        public long getStatementCacheMisses() {
+            return statementCacheMisses;
+        }
+
+        public long getStatementCacheEvictions() {
+            return statementCacheEvictions;
+        }
+
+        public double getStatementCacheHitRatio() {
+            long lookups = statementCacheHits + statementCacheMisses;
+            return lookups == 0 ? 0 : (double) statementCacheHits / lookups;
+        }
+
+        public double getAverageReaderWaitMillis() {
+            return readerAcquisitions == 0 ? 0 : readerWaitNanos / 1_000_000.0 / readerAcquisitions;
+        }
+
+        public double getAverageWriterWaitMillis() {
+            return writerAcquisitions == 0 ? 0 : writerWaitNanos / 1_000_000.0 / writerAcquisitions;
+        }
+
+        @Override
+        public String toString() {
+            return "PoolStats{" +
+                    "readers=" + openReaders + "/" + maxReaders +
+                    ", idle=" + idleReaders +
+                    ", writerBusy=" + writerBusy +
+                    ", writerQueue=" + writerQueueLength +
+                    ", readAcquires=" + readerAcquisitions +
+                    ", writeAcquires=" + writerAcquisitions +
+                    ", avgReadWaitMs=" + String.format("%.3f", getAverageReaderWaitMillis()) +
+                    ", avgWriteWaitMs=" + String.format("%.3f", getAverageWriterWaitMillis()) +
+                    ", timeouts=" + timeouts +
+                    ", created=" + connectionsCreated +
+                    ", discarded=" + connectionsDiscarded +
+                    ", stmtHits=" + statementCacheHits +
+                    ", stmtMisses=" + statementCacheMisses +
+                    ", stmtEvictions=" + statementCacheEvictions +
+                    '}';
+        }
+    }
+}
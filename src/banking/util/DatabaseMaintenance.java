@@ -0,0 +1,310 @@
+package banking.util;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Background upkeep for the database file: WAL checkpoints, planner statistics,
+// incremental vacuum and expiry of old idempotency keys. Every task only borrows the writer if it is free
+// within a few milliseconds, so tellers never queue behind maintenance.
+public class DatabaseMaintenance {
+    private static final long WRITER_WAIT_MILLIS = 50;
+
+    private static final long CHECKPOINT_INTERVAL_SECONDS = 30;
+    private static final long PASSIVE_CHECKPOINT_BYTES = 4L * 1024 * 1024;
+    private static final long RESTART_CHECKPOINT_BYTES = 64L * 1024 * 1024;
+
+    private static final long OPTIMIZE_INTERVAL_MINUTES = 60;
+    private static final long ANALYZE_INTERVAL_MINUTES = 24 * 60;
+    private static final int ANALYSIS_LIMIT = 1000;
+
+    private static final long VACUUM_INTERVAL_MINUTES = 10;
+    private static final int VACUUM_PAGES_PER_STEP = 256;
+    private static final long VACUUM_PAUSE_MILLIS = 20;
+
+    private static final long IDEMPOTENCY_PURGE_INTERVAL_MINUTES = 60;
+
+    private final StorageProfile profile;
+    private final Map<String, TaskStats> stats = new LinkedHashMap<>();
+    private ScheduledExecutorService executor;
+
+    public DatabaseMaintenance(StorageProfile profile) {
+        this.profile = profile;
+        for (String task : new String[]{"checkpoint", "optimize", "analyze", "incremental_vacuum", "idempotency_purge"}) {
+            stats.put(task, new TaskStats(task));
+        }
+    }
+
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "db-maintenance");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> runSafely(this::checkpoint),
+                CHECKPOINT_INTERVAL_SECONDS, CHECKPOINT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        executor.scheduleWithFixedDelay(() -> runSafely(this::optimize),
+                OPTIMIZE_INTERVAL_MINUTES, OPTIMIZE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        executor.scheduleWithFixedDelay(() -> runSafely(this::analyze),
+                ANALYZE_INTERVAL_MINUTES, ANALYZE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        executor.scheduleWithFixedDelay(() -> runSafely(this::incrementalVacuum),
+                VACUUM_INTERVAL_MINUTES, VACUUM_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        executor.scheduleWithFixedDelay(() -> runSafely(this::purgeIdempotencyKeys),
+                IDEMPOTENCY_PURGE_INTERVAL_MINUTES, IDEMPOTENCY_PURGE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        System.out.println("Database maintenance started");
+    }
+
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+        for (String line : getReport()) {
+            System.out.println(line);
+        }
+    }
+
+    // PASSIVE copies what it can without waiting on anyone. Once the WAL is
+    // large we RESTART so the next writer starts from the top of the file.
+    // With WAL archiving on, every cycle archives the WAL and then checkpoints it.
+    public void checkpoint() throws SQLException {
+        TaskStats task = stats.get("checkpoint");
+        File wal = new File(profile.getPath() + "-wal");
+        long walBefore = wal.length();
+
+        BackupManager backups = DatabaseUtil.getBackupManager();
+        if (backups.isArchivingEnabled()) {
+            long start = System.nanoTime();
+            backups.archiveAndCheckpoint();
+            task.record(System.nanoTime() - start, Math.max(0, walBefore - wal.length()), "archive");
+            return;
+        }
+        if (walBefore < PASSIVE_CHECKPOINT_BYTES) {
+            return;
+        }
+
+        String mode = walBefore >= RESTART_CHECKPOINT_BYTES ? "RESTART" : "PASSIVE";
+        long start = System.nanoTime();
+        try (Connection conn = tryWriter(task)) {
+            if (conn == null) {
+                return;
+            }
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("PRAGMA wal_checkpoint(" + mode + ")")) {
+                if (rs.next() && rs.getInt(1) != 0) {
+                    System.out.println("WAL checkpoint (" + mode + ") could not complete, readers still active");
+                }
+            }
+        }
+        task.record(System.nanoTime() - start, Math.max(0, walBefore - wal.length()), mode);
+    }
+
+    // PRAGMA optimize only re-analyzes tables whose statistics look stale, so it is cheap to run often
+    public void optimize() throws SQLException {
+        TaskStats task = stats.get("optimize");
+        long start = System.nanoTime();
+        try (Connection conn = tryWriter(task)) {
+            if (conn == null) {
+                return;
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA optimize");
+            }
+        }
+        task.record(System.nanoTime() - start, 0, null);
+    }
+
+    // analysis_limit samples each index instead of reading it fully, bounding how long ANALYZE holds the writer
+    public void analyze() throws SQLException {
+        TaskStats task = stats.get("analyze");
+        long start = System.nanoTime();
+        try (Connection conn = tryWriter(task)) {
+            if (conn == null) {
+                return;
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("PRAGMA analysis_limit = " + ANALYSIS_LIMIT);
+                stmt.execute("ANALYZE");
+            }
+        }
+        task.record(System.nanoTime() - start, 0, null);
+    }
+
+    // Frees pages in small steps, giving the writer back between steps
+    public void incrementalVacuum() throws SQLException {
+        TaskStats task = stats.get("incremental_vacuum");
+        int pageSize;
+        long freePages;
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             Statement stmt = conn.createStatement()) {
+            if (queryLong(stmt, "PRAGMA auto_vacuum") != 2) {
+                task.note("auto_vacuum is not INCREMENTAL; run VACUUM once offline to enable it");
+                return;
+            }
+            pageSize = (int) queryLong(stmt, "PRAGMA page_size");
+            freePages = queryLong(stmt, "PRAGMA freelist_count");
+        }
+        if (freePages == 0) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        long reclaimedPages = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            long remaining;
+            try (Connection conn = tryWriter(task)) {
+                if (conn == null) {
+                    break;
+                }
+                // The driver only steps a pragma once per execute and incremental_vacuum
+                // frees one page per step, so free a page at a time inside one transaction
+                conn.setAutoCommit(false);
+                try (Statement stmt = conn.createStatement()) {
+                    long before = queryLong(stmt, "PRAGMA freelist_count");
+                    try (Statement vacuum = conn.createStatement()) {
+                        for (int i = 0; i < VACUUM_PAGES_PER_STEP && i < before; i++) {
+                            vacuum.execute("PRAGMA incremental_vacuum(1)");
+                        }
+                    }
+                    conn.commit();
+                    remaining = queryLong(stmt, "PRAGMA freelist_count");
+                    reclaimedPages += before - remaining;
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+            if (remaining == 0) {
+                break;
+            }
+            try {
+                Thread.sleep(VACUUM_PAUSE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        task.record(System.nanoTime() - start, reclaimedPages * pageSize, null);
+    }
+
+    // Keys past the retention period can no longer be replayed; the created_at index keeps this a range delete
+    public void purgeIdempotencyKeys() throws SQLException {
+        TaskStats task = stats.get("idempotency_purge");
+        long retentionHours = profile.getIdempotencyRetentionHours();
+        if (retentionHours == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        int removed;
+        try (Connection conn = tryWriter(task)) {
+            if (conn == null) {
+                return;
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM idempotency_keys WHERE created_at < ?")) {
+                pstmt.setLong(1, System.currentTimeMillis() - TimeUnit.HOURS.toMillis(retentionHours));
+                removed = pstmt.executeUpdate();
+            }
+        }
+        task.record(System.nanoTime() - start, 0, removed + " keys");
+    }
+
+    public List<String> getReport() {
+        List<String> lines = new ArrayList<>();
+        for (TaskStats task : stats.values()) {
+            lines.add(task.toString());
+        }
+        return lines;
+    }
+
+    private Connection tryWriter(TaskStats task) {
+        try {
+            return DatabaseUtil.getWriteConnection(WRITER_WAIT_MILLIS);
+        } catch (SQLException e) {
+            task.skip();
+            return null;
+        }
+    }
+
+    private static long queryLong(Statement stmt, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static void runSafely(MaintenanceTask task) {
+        try {
+            task.run();
+        } catch (SQLException | RuntimeException e) {
+            System.err.println("Database maintenance error: " + e.getMessage());
+        }
+    }
+
+    private interface MaintenanceTask {
+        void run() throws SQLException;
+    }
+
+    private static class TaskStats {
+        private final String name;
+        private long runs;
+        private long skipped;
+        private long lastMillis;
+        private long totalMillis;
+        private long lastReclaimedBytes;
+        private long totalReclaimedBytes;
+        private String note;
+
+        TaskStats(String name) {
+            this.name = name;
+        }
+
+        synchronized void record(long elapsedNanos, long reclaimedBytes, String detail) {
+            runs++;
+            lastMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            totalMillis += lastMillis;
+            lastReclaimedBytes = reclaimedBytes;
+            totalReclaimedBytes += reclaimedBytes;
+            System.out.println("Maintenance " + name + (detail != null ? " (" + detail + ")" : "") +
+                    " took " + lastMillis + " ms, reclaimed " + reclaimedBytes / 1024 + " KB");
+        }
+
+        synchronized void skip() {
+            skipped++;
+        }
+
+        synchronized void note(String message) {
+            if (!message.equals(note)) {
+                System.out.println("Maintenance " + name + ": " + message);
+            }
+            note = message;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "Maintenance " + name + ": runs=" + runs +
+                    ", skipped=" + skipped +
+                    ", lastMs=" + lastMillis +
+                    ", totalMs=" + totalMillis +
+                    ", lastReclaimedKB=" + lastReclaimedBytes / 1024 +
+                    ", totalReclaimedKB=" + totalReclaimedBytes / 1024;
+        }
+    }
+}
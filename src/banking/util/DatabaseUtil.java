@@ -3,92 +3,160 @@ package banking.util;
 import java.sql.*;
 
 public class DatabaseUtil {
-    private static final String URL = "jdbc:sqlite:banking_system.db";
+    private static final long VALIDATION_INTERVAL_MILLIS = 30_000;
 
-    // Get database connection - create NEW connection each time
-    public static Connection getConnection() throws SQLException {
+    private static StorageProfile profile;
+    private static ConnectionPool pool;
+    private static DatabaseMaintenance maintenance;
+    private static BackupManager backupManager;
+    private static RetryPolicy retryPolicy;
+
+    static {
         try {
-            // Explicitly load the SQLite JDBC driver
+            // Explicitly load the SQLite JDBC driver once
             Class.forName("org.sqlite.JDBC");
-
-            // Return a NEW connection every time
-            return DriverManager.getConnection(URL);
-
         } catch (ClassNotFoundException e) {
             System.err.println("SQLite JDBC Driver not found! Make sure sqlite-jdbc jar is in classpath.");
             e.printStackTrace();
-            throw new SQLException("SQLite JDBC Driver not found", e);
         }
     }
 
-    // Initialize database tables
+    private static synchronized ConnectionPool getPool() {
+        if (pool == null) {
+            pool = new ConnectionPool(getProfile(), VALIDATION_INTERVAL_MILLIS);
+        }
+        return pool;
+    }
+
+    public static synchronized StorageProfile getProfile() {
+        if (profile == null) {
+            profile = StorageProfile.load();
+        }
+        return profile;
+    }
+
+    // Use a specific profile (e.g. an in-memory one for tests); must be called before the first connection
+    public static synchronized void configure(StorageProfile storageProfile) {
+        if (pool != null) {
+            throw new IllegalStateException("Database already in use - configure the storage profile before connecting");
+        }
+        profile = storageProfile;
+    }
+
+    // Borrow a pooled read-only connection; closing it returns it to the pool
+    public static Connection getReadConnection() throws SQLException {
+        return getPool().getReadConnection();
+    }
+
+    // Borrow the single writer connection; closing it releases it for the next writer
+    public static Connection getWriteConnection() throws SQLException {
+        return getPool().getWriteConnection();
+    }
+
+    // Borrow the writer only if it frees up within the given time (background jobs)
+    public static Connection getWriteConnection(long timeoutMillis) throws SQLException {
+        return getPool().getWriteConnection(timeoutMillis);
+    }
+
+    // Kept for callers that do not say whether they write - hands out the writer
+    public static Connection getConnection() throws SQLException {
+        return getWriteConnection();
+    }
+
+    public static boolean holdsWriter() {
+        return getPool().holdsWriter();
+    }
+
+    public static synchronized RetryPolicy getRetryPolicy() {
+        if (retryPolicy == null) {
+            retryPolicy = RetryPolicy.fromProfile(getProfile());
+        }
+        return retryPolicy;
+    }
+
+    // Run a write, retrying with backoff while another process holds the database lock
+    public static <T> T withRetry(String operation, SqlOperation<T> work) throws SQLException {
+        return getRetryPolicy().execute(operation, work);
+    }
+
+    public static ConnectionPool.Stats getPoolStats() {
+        return getPool().getStats();
+    }
+
+    // Initialize database tables and apply pending schema migrations
     public static void initializeDatabase() {
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-
-            // Create Users table
-            stmt.execute("CREATE TABLE IF NOT EXISTS users (" +
-                    "user_id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "username TEXT UNIQUE NOT NULL," +
-                    "password TEXT NOT NULL," +
-                    "role TEXT NOT NULL," +
-                    "customer_id INTEGER)");
-
-            // Create Customers table
-            stmt.execute("CREATE TABLE IF NOT EXISTS customers (" +
-                    "customer_id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "first_name TEXT NOT NULL," +
-                    "surname TEXT NOT NULL," +
-                    "address TEXT," +
-                    "phone_number TEXT," +
-                    "email TEXT UNIQUE)");
-
-            // Create Accounts table
-            stmt.execute("CREATE TABLE IF NOT EXISTS accounts (" +
-                    "account_number TEXT PRIMARY KEY," +
-                    "customer_id INTEGER NOT NULL," +
-                    "account_type TEXT NOT NULL," +
-                    "balance REAL DEFAULT 0," +
-                    "branch TEXT," +
-                    "date_opened TEXT," +
-                    "is_active INTEGER DEFAULT 1," +
-                    "company_name TEXT," +
-                    "company_address TEXT," +
-                    "FOREIGN KEY(customer_id) REFERENCES customers(customer_id))");
-
-            // Create Transactions table
-            stmt.execute("CREATE TABLE IF NOT EXISTS transactions (" +
-                    "transaction_id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                    "account_number TEXT NOT NULL," +
-                    "transaction_type TEXT NOT NULL," +
-                    "amount REAL NOT NULL," +
-                    "balance_after REAL NOT NULL," +
-                    "description TEXT," +
-                    "timestamp TEXT NOT NULL," +
-                    "FOREIGN KEY(account_number) REFERENCES accounts(account_number))");
+        try {
+            // Another workstation may hold the lock while we switch journal mode or migrate
+            withRetry("initializeDatabase", () -> {
+                try (Connection conn = getWriteConnection();
+                     Statement stmt = conn.createStatement()) {
+
+                    logEffectiveSettings(stmt);
+
+                    // Bring the schema up to date
+                    new SchemaMigrator(SchemaMigrations.all()).migrate();
+                }
+                return null;
+            });
 
             System.out.println("Database initialized successfully!");
 
             // Insert default admin user if not exists
             insertDefaultAdmin();
 
+            startMaintenance();
+
         } catch (SQLException e) {
             System.err.println("Database initialization error: " + e.getMessage());
             e.printStackTrace();
         }
     }
 
+    private static synchronized void startMaintenance() {
+        if (maintenance == null && getProfile().isMaintenanceEnabled()) {
+            maintenance = new DatabaseMaintenance(getProfile());
+            maintenance.start();
+        }
+    }
+
+    public static synchronized DatabaseMaintenance getMaintenance() {
+        return maintenance;
+    }
+
+    public static synchronized BackupManager getBackupManager() {
+        if (backupManager == null) {
+            backupManager = new BackupManager(getProfile());
+        }
+        return backupManager;
+    }
+
+    private static void logEffectiveSettings(Statement stmt) throws SQLException {
+        StringBuilder settings = new StringBuilder();
+        for (String pragma : new String[]{"journal_mode", "synchronous", "cache_size", "mmap_size", "temp_store", "busy_timeout", "auto_vacuum", "wal_autocheckpoint"}) {
+            try (ResultSet rs = stmt.executeQuery("PRAGMA " + pragma)) {
+                if (rs.next()) {
+                    settings.append(settings.length() == 0 ? "" : ", ").append(pragma).append('=').append(rs.getString(1));
+                }
+            }
+        }
+        System.out.println("Storage profile loaded from " + getProfile().getSource() + ": " + getProfile());
+        System.out.println("SQLite settings in effect: " + settings);
+    }
+
     private static void insertDefaultAdmin() {
         String checkSql = "SELECT COUNT(*) FROM users WHERE username = ?";
         String insertSql = "INSERT INTO users (username, password, role, customer_id) VALUES (?, ?, ?, NULL)";
 
-        try (Connection conn = getConnection();
+        try (Connection conn = getWriteConnection();
              PreparedStatement checkStmt = conn.prepareStatement(checkSql)) {
 
             checkStmt.setString(1, "admin");
-            ResultSet rs = checkStmt.executeQuery();
+            boolean missing;
+            try (ResultSet rs = checkStmt.executeQuery()) {
+                missing = rs.next() && rs.getInt(1) == 0;
+            }
 
-            if (rs.next() && rs.getInt(1) == 0) {
+            if (missing) {
                 try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
                     insertStmt.setString(1, "admin");
                     insertStmt.setString(2, "admin123");
@@ -103,9 +171,27 @@ public class DatabaseUtil {
         }
     }
 
-    // Close connection - no longer needed since we create new connections
-    public static void closeConnection() {
-        // No-op since connections are managed with try-with-resources
+    // Close all pooled connections on application shutdown
+    public static synchronized void closeConnection() {
+        if (maintenance != null) {
+            maintenance.stop();
+            maintenance = null;
+        }
+        if (pool != null && getBackupManager().isArchivingEnabled()) {
+            // Closing the last connection checkpoints the WAL, so archive it first
+            try {
+                getBackupManager().archiveAndCheckpoint();
+            } catch (SQLException e) {
+                System.err.println("Error archiving WAL on shutdown: " + e.getMessage());
+            }
+        }
+        if (pool != null) {
+            System.out.println("Connection pool statistics: " + pool.getStats());
+            System.out.println("Write contention: " + getRetryPolicy());
+            System.out.println("Account lock contention: " + AccountLockManager.shared());
+            pool.close();
+            pool = null;
+        }
         System.out.println("Database connections closed.");
     }
 }
\ No newline at end of file
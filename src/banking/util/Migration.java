@@ -0,0 +1,155 @@
+package banking.util;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// One versioned schema change. The checksum covers the SQL, so editing a
+// migration that has already been applied somewhere is detected at startup.
+public abstract class Migration {
+    private final int version;
+    private final String description;
+
+    protected Migration(int version, String description) {
+        if (version < 1) {
+            throw new IllegalArgumentException("Migration versions start at 1");
+        }
+        this.version = version;
+        this.description = description;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getChecksum() {
+        CRC32 crc = new CRC32();
+        crc.update(checksumSource().getBytes(StandardCharsets.UTF_8));
+        return String.format("%08x", crc.getValue());
+    }
+
+    // Transactional migrations run inside the migrator's transaction together
+    // with the schema_version row. Others commit their own work in steps.
+    public boolean isTransactional() {
+        return true;
+    }
+
+    protected abstract String checksumSource();
+
+    protected abstract void migrate(Connection conn) throws SQLException;
+
+    // Plain DDL/DML applied atomically
+    public static Migration sql(int version, String description, String... statements) {
+        return new SqlMigration(version, description, Arrays.asList(statements));
+    }
+
+    // Large data change applied in short transactions. The chunk statement takes
+    // the chunk size as its only parameter and must only touch rows it has not
+    // processed yet, so it can be repeated until it changes nothing and resumed after a crash.
+    public static Migration chunked(int version, String description, String chunkStatement, int chunkSize) {
+        return new ChunkedMigration(version, description, Collections.emptyList(), chunkStatement, chunkSize);
+    }
+
+    public static Migration chunked(int version, String description, List<String> setupStatements, String chunkStatement, int chunkSize) {
+        return new ChunkedMigration(version, description, setupStatements, chunkStatement, chunkSize);
+    }
+
+    @Override
+    public String toString() {
+        return "V" + version + " " + description;
+    }
+
+    private static class SqlMigration extends Migration {
+        private final List<String> statements;
+
+        SqlMigration(int version, String description, List<String> statements) {
+            super(version, description);
+            this.statements = statements;
+        }
+
+        @Override
+        protected String checksumSource() {
+            return String.join(";\n", statements);
+        }
+
+        @Override
+        protected void migrate(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : statements) {
+                    stmt.execute(sql);
+                }
+            }
+        }
+    }
+
+    private static class ChunkedMigration extends Migration {
+        private final List<String> setupStatements;
+        private final String chunkStatement;
+        private final int chunkSize;
+
+        ChunkedMigration(int version, String description, List<String> setupStatements, String chunkStatement, int chunkSize) {
+            super(version, description);
+            if (chunkSize < 1) {
+                throw new IllegalArgumentException("Chunk size must be positive");
+            }
+            this.setupStatements = setupStatements;
+            this.chunkStatement = chunkStatement;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public boolean isTransactional() {
+            return false;
+        }
+
+        @Override
+        protected String checksumSource() {
+            // The chunk size is a tuning knob, not part of the change itself
+            return String.join(";\n", setupStatements) + "\n--chunk\n" + chunkStatement;
+        }
+
+        @Override
+        protected void migrate(Connection conn) throws SQLException {
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : setupStatements) {
+                    stmt.execute(sql);
+                }
+            }
+
+            long total = 0;
+            int chunks = 0;
+            try (PreparedStatement pstmt = conn.prepareStatement(chunkStatement)) {
+                while (true) {
+                    conn.setAutoCommit(false);
+                    int changed;
+                    try {
+                        pstmt.setInt(1, chunkSize);
+                        changed = pstmt.executeUpdate();
+                        conn.commit();
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        throw e;
+                    } finally {
+                        conn.setAutoCommit(true);
+                    }
+                    if (changed <= 0) {
+                        break;
+                    }
+                    total += changed;
+                    chunks++;
+                }
+            }
+            System.out.println("Migration " + this + ": " + total + " rows in " + chunks + " chunks");
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package banking.util;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Retries work that failed because another process held the database lock
+// (SQLITE_BUSY / SQLITE_LOCKED). busy_timeout already makes SQLite wait inside
+// each statement; this adds jittered exponential backoff on top, bounded by an
+// attempt count and a total time budget per operation.
+public class RetryPolicy {
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final long budgetMillis;
+
+    private final AtomicLong busyErrors = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+    private final AtomicLong backoffMillis = new AtomicLong();
+
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, long budgetMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt is required");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.budgetMillis = budgetMillis;
+    }
+
+    public static RetryPolicy fromProfile(StorageProfile profile) {
+        return new RetryPolicy(profile.getRetryMaxAttempts(), profile.getRetryBaseDelay(),
+                profile.getRetryMaxDelay(), profile.getRetryBudget());
+    }
+
+    // Work nested inside a transaction the caller already holds is not retried
+    // here: the whole transaction has to be rolled back and re-run by its owner.
+    public <T> T execute(String operation, SqlOperation<T> work) throws SQLException {
+        if (DatabaseUtil.holdsWriter()) {
+            return work.run();
+        }
+
+        long deadline = System.currentTimeMillis() + budgetMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = work.run();
+                if (attempt > 1) {
+                    recovered.incrementAndGet();
+                }
+                return result;
+            } catch (SQLException e) {
+                if (!isBusy(e)) {
+                    throw e;
+                }
+                busyErrors.incrementAndGet();
+
+                long delay = backoff(attempt);
+                if (attempt >= maxAttempts || System.currentTimeMillis() + delay > deadline) {
+                    exhausted.incrementAndGet();
+                    throw new SQLException(operation + " gave up after " + attempt +
+                            " attempts, database still locked by another writer", e.getSQLState(), e.getErrorCode(), e);
+                }
+                retries.incrementAndGet();
+                backoffMillis.addAndGet(delay);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // "Full jitter": a random wait up to the exponential cap, so competing
+    // workstations spread out instead of retrying in lockstep
+    private long backoff(int attempt) {
+        long cap = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        return cap <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    public static boolean isBusy(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException) {
+                int primary = ((SQLException) t).getErrorCode() & 0xFF;   // strip extended result code bits
+                if (primary == SQLITE_BUSY || primary == SQLITE_LOCKED) {
+                    return true;
+                }
+            }
+            String message = t.getMessage();
+            if (message != null && (message.contains("SQLITE_BUSY") || message.contains("SQLITE_LOCKED"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getBusyErrors() {
+        return busyErrors.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getRecovered() {
+        return recovered.get();
+    }
+
+    public long getExhausted() {
+        return exhausted.get();
+    }
+
+    @Override
+    public String toString() {
+        return "RetryStats{" +
+                "busyErrors=" + busyErrors.get() +
+                ", retries=" + retries.get() +
+                ", recovered=" + recovered.get() +
+                ", exhausted=" + exhausted.get() +
+                ", backoffMs=" + backoffMillis.get() +
+                '}';
+    }
+}
@@ -0,0 +1,579 @@
+package banking.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Every schema change, in order. Never edit a migration that has shipped - add a new one.
+public final class SchemaMigrations {
+
+    private SchemaMigrations() {
+    }
+
+    public static List<Migration> all() {
+        return Arrays.asList(
+                Migration.sql(1, "Baseline tables",
+                        "CREATE TABLE IF NOT EXISTS users (" +
+                                "user_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                "username TEXT UNIQUE NOT NULL," +
+                                "password TEXT NOT NULL," +
+                                "role TEXT NOT NULL," +
+                                "customer_id INTEGER)",
+                        "CREATE TABLE IF NOT EXISTS customers (" +
+                                "customer_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                "first_name TEXT NOT NULL," +
+                                "surname TEXT NOT NULL," +
+                                "address TEXT," +
+                                "phone_number TEXT," +
+                                "email TEXT UNIQUE)",
+                        "CREATE TABLE IF NOT EXISTS accounts (" +
+                                "account_number TEXT PRIMARY KEY," +
+                                "customer_id INTEGER NOT NULL," +
+                                "account_type TEXT NOT NULL," +
+                                "balance REAL DEFAULT 0," +
+                                "branch TEXT," +
+                                "date_opened TEXT," +
+                                "is_active INTEGER DEFAULT 1," +
+                                "company_name TEXT," +
+                                "company_address TEXT," +
+                                "FOREIGN KEY(customer_id) REFERENCES customers(customer_id))",
+                        "CREATE TABLE IF NOT EXISTS transactions (" +
+                                "transaction_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                "account_number TEXT NOT NULL," +
+                                "transaction_type TEXT NOT NULL," +
+                                "amount REAL NOT NULL," +
+                                "balance_after REAL NOT NULL," +
+                                "description TEXT," +
+                                "timestamp TEXT NOT NULL," +
+                                "FOREIGN KEY(account_number) REFERENCES accounts(account_number))"),
+
+                // Account history and per-customer account lists were full table scans
+                Migration.sql(2, "Indexes for account history and customer accounts",
+                        "CREATE INDEX IF NOT EXISTS idx_transactions_account_time ON transactions(account_number, timestamp)",
+                        "CREATE INDEX IF NOT EXISTS idx_accounts_customer_opened ON accounts(customer_id, date_opened)"),
+
+                // Keyset pagination seeks; the rowid primary keys are the implicit tie-breaker in each index
+                Migration.sql(3, "Indexes for keyset pagination",
+                        "CREATE INDEX IF NOT EXISTS idx_transactions_time ON transactions(timestamp)",
+                        "CREATE INDEX IF NOT EXISTS idx_accounts_opened_number ON accounts(date_opened, account_number)",
+                        "CREATE INDEX IF NOT EXISTS idx_customers_surname ON customers(surname)"),
+
+                // Row version for optimistic compare-and-set updates from several JVMs
+                Migration.sql(4, "Account row version",
+                        "ALTER TABLE accounts ADD COLUMN version INTEGER NOT NULL DEFAULT 0"),
+
+                // Transfers post both legs in one transaction; the ledger rows point back at the transfer
+                Migration.sql(5, "Transfers",
+                        "CREATE TABLE IF NOT EXISTS transfers (" +
+                                "transfer_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                "from_account TEXT NOT NULL," +
+                                "to_account TEXT NOT NULL," +
+                                "amount REAL NOT NULL," +
+                                "description TEXT," +
+                                "timestamp TEXT NOT NULL," +
+                                "FOREIGN KEY(from_account) REFERENCES accounts(account_number)," +
+                                "FOREIGN KEY(to_account) REFERENCES accounts(account_number))",
+                        "ALTER TABLE transactions ADD COLUMN transfer_id INTEGER REFERENCES transfers(transfer_id)",
+                        "CREATE INDEX IF NOT EXISTS idx_transactions_transfer ON transactions(transfer_id) WHERE transfer_id IS NOT NULL"),
+
+                // Results of completed client requests, keyed by the client's idempotency key
+                Migration.sql(6, "Idempotency keys",
+                        "CREATE TABLE IF NOT EXISTS idempotency_keys (" +
+                                "idempotency_key TEXT PRIMARY KEY," +
+                                "request TEXT NOT NULL," +
+                                "result TEXT NOT NULL," +
+                                "created_at INTEGER NOT NULL) WITHOUT ROWID",
+                        "CREATE INDEX IF NOT EXISTS idx_idempotency_created ON idempotency_keys(created_at)"),
+
+                // Month-end interest: one run per period, a log row per committed chunk, and a
+                // per-account marker so no account is paid twice for the same period
+                Migration.sql(7, "Month-end interest runs",
+                        "ALTER TABLE accounts ADD COLUMN last_interest_period TEXT",
+                        "CREATE TABLE IF NOT EXISTS interest_runs (" +
+                                "run_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                "period TEXT NOT NULL UNIQUE," +
+                                "status TEXT NOT NULL," +
+                                "started_at INTEGER NOT NULL," +
+                                "heartbeat_at INTEGER NOT NULL," +
+                                "finished_at INTEGER," +
+                                "resume_after TEXT," +
+                                "accounts_credited INTEGER NOT NULL DEFAULT 0," +
+                                "total_interest REAL NOT NULL DEFAULT 0)",
+                        "CREATE TABLE IF NOT EXISTS interest_run_chunks (" +
+                                "run_id INTEGER NOT NULL REFERENCES interest_runs(run_id)," +
+                                "chunk_no INTEGER NOT NULL," +
+                                "first_account TEXT NOT NULL," +
+                                "last_account TEXT NOT NULL," +
+                                "accounts INTEGER NOT NULL," +
+                                "credited INTEGER NOT NULL," +
+                                "failed INTEGER NOT NULL," +
+                                "interest REAL NOT NULL," +
+                                "elapsed_ms INTEGER NOT NULL," +
+                                "finished_at INTEGER NOT NULL," +
+                                "PRIMARY KEY (run_id, chunk_no)) WITHOUT ROWID"),
+
+                // Daily accrual: balance-days per account and month, rolled forward by each posting.
+                // Existing balances are taken as held since the start of last month, the
+                // earliest period that can still be due.
+                Migration.sql(8, "Interest accruals",
+                        "ALTER TABLE accounts ADD COLUMN accrued_through INTEGER",
+                        "UPDATE accounts SET accrued_through = CAST(julianday('now', 'localtime', 'start of month', '-1 month') - 2440587.5 AS INTEGER)",
+                        "CREATE TABLE IF NOT EXISTS interest_accruals (" +
+                                "account_number TEXT NOT NULL REFERENCES accounts(account_number)," +
+                                "period TEXT NOT NULL," +
+                                "balance_days REAL NOT NULL," +
+                                "PRIMARY KEY (account_number, period)) WITHOUT ROWID"),
+
+                // Interest rates and monthly fees as data (see ProductRule), seeded with the
+                // rates that used to be compiled in. Fees are logged next to interest.
+                Migration.sql(9, "Product rules",
+                        "CREATE TABLE IF NOT EXISTS product_rules (" +
+                                "rule_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                "account_type TEXT NOT NULL," +
+                                "kind TEXT NOT NULL," +
+                                "min_balance REAL NOT NULL DEFAULT 0," +
+                                "value REAL NOT NULL," +
+                                "valid_from TEXT," +
+                                "valid_to TEXT," +
+                                "updated_at INTEGER NOT NULL)",
+                        "INSERT INTO product_rules (account_type, kind, min_balance, value, updated_at) VALUES " +
+                                "('Savings Account', 'RATE', 0, 0.0005, CAST(strftime('%s', 'now') AS INTEGER) * 1000), " +
+                                "('Investment Account', 'RATE', 0, 0.05, CAST(strftime('%s', 'now') AS INTEGER) * 1000)",
+                        "ALTER TABLE interest_run_chunks ADD COLUMN fees REAL NOT NULL DEFAULT 0",
+                        "ALTER TABLE interest_runs ADD COLUMN total_fees REAL NOT NULL DEFAULT 0"),
+
+                // Money as whole thebe (see Money). A REAL column would turn the integers back
+                // into floating point, so each table with an amount is rebuilt with INTEGER
+                // columns, rounding the old values once. AUTOINCREMENT counters carry over so
+                // ids are never reused. Stored idempotency requests and balances are rewritten to
+                // thebe so a retried request still matches its first result. The ledger is
+                // converted separately by V11 and V12.
+                Migration.sql(10, "Money in thebe",
+                        "CREATE TABLE accounts_new (" +
+                                "account_number TEXT PRIMARY KEY," +
+                                "customer_id INTEGER NOT NULL," +
+                                "account_type TEXT NOT NULL," +
+                                "balance INTEGER NOT NULL DEFAULT 0," +
+                                "branch TEXT," +
+                                "date_opened TEXT," +
+                                "is_active INTEGER DEFAULT 1," +
+                                "company_name TEXT," +
+                                "company_address TEXT," +
+                                "version INTEGER NOT NULL DEFAULT 0," +
+                                "last_interest_period TEXT," +
+                                "accrued_through INTEGER," +
+                                "FOREIGN KEY(customer_id) REFERENCES customers(customer_id))",
+                        "INSERT INTO accounts_new SELECT account_number, customer_id, account_type, " +
+                                "CAST(ROUND(COALESCE(balance, 0) * 100) AS INTEGER), branch, date_opened, is_active, " +
+                                "company_name, company_address, version, last_interest_period, accrued_through FROM accounts",
+
+                        "CREATE TABLE transfers_new (" +
+                                "transfer_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                "from_account TEXT NOT NULL," +
+                                "to_account TEXT NOT NULL," +
+                                "amount INTEGER NOT NULL," +
+                                "description TEXT," +
+                                "timestamp TEXT NOT NULL," +
+                                "FOREIGN KEY(from_account) REFERENCES accounts(account_number)," +
+                                "FOREIGN KEY(to_account) REFERENCES accounts(account_number))",
+                        "INSERT INTO transfers_new SELECT transfer_id, from_account, to_account, " +
+                                "CAST(ROUND(amount * 100) AS INTEGER), description, timestamp FROM transfers",
+
+                        "CREATE TABLE interest_accruals_new (" +
+                                "account_number TEXT NOT NULL REFERENCES accounts(account_number)," +
+                                "period TEXT NOT NULL," +
+                                "balance_days INTEGER NOT NULL," +
+                                "PRIMARY KEY (account_number, period)) WITHOUT ROWID",
+                        "INSERT INTO interest_accruals_new SELECT account_number, period, " +
+                                "CAST(ROUND(balance_days * 100) AS INTEGER) FROM interest_accruals",
+
+                        "CREATE TABLE interest_runs_new (" +
+                                "run_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                "period TEXT NOT NULL UNIQUE," +
+                                "status TEXT NOT NULL," +
+                                "started_at INTEGER NOT NULL," +
+                                "heartbeat_at INTEGER NOT NULL," +
+                                "finished_at INTEGER," +
+                                "resume_after TEXT," +
+                                "accounts_credited INTEGER NOT NULL DEFAULT 0," +
+                                "total_interest INTEGER NOT NULL DEFAULT 0," +
+                                "total_fees INTEGER NOT NULL DEFAULT 0)",
+                        "INSERT INTO interest_runs_new SELECT run_id, period, status, started_at, heartbeat_at, finished_at, " +
+                                "resume_after, accounts_credited, CAST(ROUND(total_interest * 100) AS INTEGER), " +
+                                "CAST(ROUND(total_fees * 100) AS INTEGER) FROM interest_runs",
+
+                        "CREATE TABLE interest_run_chunks_new (" +
+                                "run_id INTEGER NOT NULL REFERENCES interest_runs(run_id)," +
+                                "chunk_no INTEGER NOT NULL," +
+                                "first_account TEXT NOT NULL," +
+                                "last_account TEXT NOT NULL," +
+                                "accounts INTEGER NOT NULL," +
+                                "credited INTEGER NOT NULL," +
+                                "failed INTEGER NOT NULL," +
+                                "interest INTEGER NOT NULL," +
+                                "fees INTEGER NOT NULL DEFAULT 0," +
+                                "elapsed_ms INTEGER NOT NULL," +
+                                "finished_at INTEGER NOT NULL," +
+                                "PRIMARY KEY (run_id, chunk_no)) WITHOUT ROWID",
+                        "INSERT INTO interest_run_chunks_new SELECT run_id, chunk_no, first_account, last_account, accounts, " +
+                                "credited, failed, CAST(ROUND(interest * 100) AS INTEGER), CAST(ROUND(fees * 100) AS INTEGER), " +
+                                "elapsed_ms, finished_at FROM interest_run_chunks",
+
+                        // A rule's value becomes a fixed-point rate or a fee in thebe
+                        "CREATE TABLE product_rules_new (" +
+                                "rule_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                "account_type TEXT NOT NULL," +
+                                "kind TEXT NOT NULL," +
+                                "min_balance INTEGER NOT NULL DEFAULT 0," +
+                                "rate REAL NOT NULL DEFAULT 0," +
+                                "fee INTEGER NOT NULL DEFAULT 0," +
+                                "valid_from TEXT," +
+                                "valid_to TEXT," +
+                                "updated_at INTEGER NOT NULL)",
+                        "INSERT INTO product_rules_new SELECT rule_id, account_type, kind, CAST(ROUND(min_balance * 100) AS INTEGER), " +
+                                "CASE WHEN kind = 'RATE' THEN value ELSE 0 END, " +
+                                "CASE WHEN kind = 'FEE' THEN CAST(ROUND(value * 100) AS INTEGER) ELSE 0 END, " +
+                                "valid_from, valid_to, updated_at FROM product_rules",
+
+                        // Carry the AUTOINCREMENT counters over, so ids of rows deleted in the past are
+                        // never handed out again
+                        "INSERT INTO sqlite_sequence (name, seq) SELECT name || '_new', seq FROM sqlite_sequence " +
+                                "WHERE name IN ('transfers', 'interest_runs', 'product_rules') " +
+                                "AND name || '_new' NOT IN (SELECT name FROM sqlite_sequence)",
+                        "UPDATE sqlite_sequence SET seq = COALESCE((SELECT MAX(o.seq) FROM sqlite_sequence o " +
+                                "WHERE o.name || '_new' = sqlite_sequence.name), seq) " +
+                                "WHERE name IN ('transfers_new', 'interest_runs_new', 'product_rules_new')",
+
+                        "DROP TABLE accounts",
+                        "ALTER TABLE accounts_new RENAME TO accounts",
+                        "CREATE INDEX idx_accounts_customer_opened ON accounts(customer_id, date_opened)",
+                        "CREATE INDEX idx_accounts_opened_number ON accounts(date_opened, account_number)",
+                        "DROP TABLE transfers",
+                        "ALTER TABLE transfers_new RENAME TO transfers",
+                        "DROP TABLE interest_accruals",
+                        "ALTER TABLE interest_accruals_new RENAME TO interest_accruals",
+                        "DROP TABLE interest_runs",
+                        "ALTER TABLE interest_runs_new RENAME TO interest_runs",
+                        "DROP TABLE interest_run_chunks",
+                        "ALTER TABLE interest_run_chunks_new RENAME TO interest_run_chunks",
+                        "DROP TABLE product_rules",
+                        "ALTER TABLE product_rules_new RENAME TO product_rules",
+
+                        // Requests read OPERATION|account|amount; deposit and withdrawal results are balances
+                        "UPDATE idempotency_keys SET " +
+                                "request = substr(request, 1, instr(request, '|') + instr(substr(request, instr(request, '|') + 1), '|')) || " +
+                                "CAST(ROUND(CAST(substr(request, instr(request, '|') + instr(substr(request, instr(request, '|') + 1), '|') + 1) AS REAL) * 100) AS INTEGER), " +
+                                "result = CASE WHEN request LIKE 'TRANSFER|%' THEN result " +
+                                "ELSE CAST(ROUND(CAST(result AS REAL) * 100) AS INTEGER) END"),
+
+                // The ledger is the big table, so its amounts are converted into a copy in short
+                // transactions; a crash resumes after the highest id already copied. V12 swaps the copy in.
+                Migration.chunked(11, "Ledger money in thebe",
+                        Arrays.asList(
+                                "CREATE TABLE IF NOT EXISTS transactions_new (" +
+                                        "transaction_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                        "account_number TEXT NOT NULL," +
+                                        "transaction_type TEXT NOT NULL," +
+                                        "amount INTEGER NOT NULL," +
+                                        "balance_after INTEGER NOT NULL," +
+                                        "description TEXT," +
+                                        "timestamp TEXT NOT NULL," +
+                                        "transfer_id INTEGER REFERENCES transfers(transfer_id)," +
+                                        "FOREIGN KEY(account_number) REFERENCES accounts(account_number))"),
+                        "INSERT INTO transactions_new SELECT transaction_id, account_number, transaction_type, " +
+                                "CAST(ROUND(amount * 100) AS INTEGER), CAST(ROUND(balance_after * 100) AS INTEGER), " +
+                                "description, timestamp, transfer_id " +
+                                "FROM transactions WHERE transaction_id > (SELECT COALESCE(MAX(transaction_id), 0) FROM transactions_new) " +
+                                "ORDER BY transaction_id LIMIT ?",
+                        5000),
+
+                Migration.sql(12, "Swap in thebe transactions",
+                        // Rows other workstations posted after V11's last chunk
+                        "INSERT INTO transactions_new SELECT transaction_id, account_number, transaction_type, " +
+                                "CAST(ROUND(amount * 100) AS INTEGER), CAST(ROUND(balance_after * 100) AS INTEGER), " +
+                                "description, timestamp, transfer_id " +
+                                "FROM transactions WHERE transaction_id > (SELECT COALESCE(MAX(transaction_id), 0) FROM transactions_new) " +
+                                "ORDER BY transaction_id",
+                        "INSERT INTO sqlite_sequence (name, seq) SELECT name || '_new', seq FROM sqlite_sequence " +
+                                "WHERE name = 'transactions' AND name || '_new' NOT IN (SELECT name FROM sqlite_sequence)",
+                        "UPDATE sqlite_sequence SET seq = COALESCE((SELECT MAX(o.seq) FROM sqlite_sequence o " +
+                                "WHERE o.name || '_new' = sqlite_sequence.name), seq) " +
+                                "WHERE name = 'transactions_new'",
+                        "DROP TABLE transactions",
+                        "ALTER TABLE transactions_new RENAME TO transactions",
+                        "CREATE INDEX idx_transactions_account_time ON transactions(account_number, timestamp)",
+                        "CREATE INDEX idx_transactions_time ON transactions(timestamp)",
+                        "CREATE INDEX idx_transactions_transfer ON transactions(transfer_id) WHERE transfer_id IS NOT NULL"),
+
+                // High-water mark of the account number allocator (see AccountNumberAllocator)
+                Migration.sql(13, "Account number blocks",
+                        "CREATE TABLE IF NOT EXISTS id_blocks (" +
+                                "name TEXT PRIMARY KEY," +
+                                "next_value INTEGER NOT NULL) WITHOUT ROWID",
+                        "INSERT INTO id_blocks (name, next_value) VALUES ('account_number', 1000000000)"),
+
+                // Accounts get an INTEGER rowid key (their old rowid), and the ledger, transfers
+                // and accruals point at it instead of repeating the account number. The number
+                // stays on accounts as a unique column. Rows whose account is missing have no key
+                // to take, so they stop the migration rather than being dropped. The ledger is
+                // re-keyed separately by V15 and V16.
+                Migration.sql(14, "Integer account keys",
+                        "CREATE TABLE accounts_new (" +
+                                "account_id INTEGER PRIMARY KEY," +
+                                "account_number TEXT NOT NULL UNIQUE," +
+                                "customer_id INTEGER NOT NULL," +
+                                "account_type TEXT NOT NULL," +
+                                "balance INTEGER NOT NULL DEFAULT 0," +
+                                "branch TEXT," +
+                                "date_opened TEXT," +
+                                "is_active INTEGER DEFAULT 1," +
+                                "company_name TEXT," +
+                                "company_address TEXT," +
+                                "version INTEGER NOT NULL DEFAULT 0," +
+                                "last_interest_period TEXT," +
+                                "accrued_through INTEGER," +
+                                "FOREIGN KEY(customer_id) REFERENCES customers(customer_id))",
+                        "INSERT INTO accounts_new SELECT rowid, account_number, customer_id, account_type, balance, branch, " +
+                                "date_opened, is_active, company_name, company_address, version, last_interest_period, " +
+                                "accrued_through FROM accounts ORDER BY rowid",
+
+                        "CREATE TABLE transfers_new (" +
+                                "transfer_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                "from_account_id INTEGER NOT NULL," +
+                                "to_account_id INTEGER NOT NULL," +
+                                "amount INTEGER NOT NULL," +
+                                "description TEXT," +
+                                "timestamp TEXT NOT NULL," +
+                                "FOREIGN KEY(from_account_id) REFERENCES accounts(account_id)," +
+                                "FOREIGN KEY(to_account_id) REFERENCES accounts(account_id))",
+                        "INSERT INTO transfers_new SELECT t.transfer_id, " +
+                                "(SELECT a.account_id FROM accounts_new a WHERE a.account_number = t.from_account), " +
+                                "(SELECT a.account_id FROM accounts_new a WHERE a.account_number = t.to_account), " +
+                                "t.amount, t.description, t.timestamp FROM transfers t ORDER BY t.transfer_id",
+
+                        "CREATE TABLE interest_accruals_new (" +
+                                "account_id INTEGER NOT NULL REFERENCES accounts(account_id)," +
+                                "period TEXT NOT NULL," +
+                                "balance_days INTEGER NOT NULL," +
+                                "PRIMARY KEY (account_id, period)) WITHOUT ROWID",
+                        "INSERT INTO interest_accruals_new SELECT " +
+                                "(SELECT a.account_id FROM accounts_new a WHERE a.account_number = i.account_number), " +
+                                "i.period, i.balance_days FROM interest_accruals i",
+
+                        "INSERT INTO sqlite_sequence (name, seq) SELECT name || '_new', seq FROM sqlite_sequence " +
+                                "WHERE name = 'transfers' AND name || '_new' NOT IN (SELECT name FROM sqlite_sequence)",
+                        "UPDATE sqlite_sequence SET seq = COALESCE((SELECT MAX(o.seq) FROM sqlite_sequence o " +
+                                "WHERE o.name || '_new' = sqlite_sequence.name), seq) " +
+                                "WHERE name = 'transfers_new'",
+
+                        "DROP TABLE accounts",
+                        "ALTER TABLE accounts_new RENAME TO accounts",
+                        "CREATE INDEX idx_accounts_customer_opened ON accounts(customer_id, date_opened)",
+                        "CREATE INDEX idx_accounts_opened_number ON accounts(date_opened, account_number)",
+                        "DROP TABLE transfers",
+                        "ALTER TABLE transfers_new RENAME TO transfers",
+                        "DROP TABLE interest_accruals",
+                        "ALTER TABLE interest_accruals_new RENAME TO interest_accruals"),
+
+                // The ledger is re-keyed into a copy in short transactions; a crash resumes after
+                // the highest id already copied. The account number's unique index on accounts is
+                // the number-to-id map, so each row costs one index probe rather than a subquery.
+                // A row whose account is missing gets a NULL key and stops the chunk. V16 swaps
+                // the copy in.
+                Migration.chunked(15, "Integer account keys for transactions",
+                        Arrays.asList(
+                                "CREATE TABLE IF NOT EXISTS transactions_new (" +
+                                        "transaction_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                        "account_id INTEGER NOT NULL," +
+                                        "transaction_type TEXT NOT NULL," +
+                                        "amount INTEGER NOT NULL," +
+                                        "balance_after INTEGER NOT NULL," +
+                                        "description TEXT," +
+                                        "timestamp TEXT NOT NULL," +
+                                        "transfer_id INTEGER REFERENCES transfers(transfer_id)," +
+                                        "FOREIGN KEY(account_id) REFERENCES accounts(account_id))"),
+                        "INSERT INTO transactions_new SELECT t.transaction_id, a.account_id, " +
+                                "t.transaction_type, t.amount, t.balance_after, t.description, t.timestamp, t.transfer_id " +
+                                "FROM transactions t LEFT JOIN accounts a ON a.account_number = t.account_number " +
+                                "WHERE t.transaction_id > (SELECT COALESCE(MAX(transaction_id), 0) FROM transactions_new) " +
+                                "ORDER BY t.transaction_id LIMIT ?",
+                        5000),
+
+                Migration.sql(16, "Swap in account-keyed transactions",
+                        // Rows other workstations posted after V15's last chunk
+                        "INSERT INTO transactions_new SELECT t.transaction_id, a.account_id, " +
+                                "t.transaction_type, t.amount, t.balance_after, t.description, t.timestamp, t.transfer_id " +
+                                "FROM transactions t LEFT JOIN accounts a ON a.account_number = t.account_number " +
+                                "WHERE t.transaction_id > (SELECT COALESCE(MAX(transaction_id), 0) FROM transactions_new) " +
+                                "ORDER BY t.transaction_id",
+                        "INSERT INTO sqlite_sequence (name, seq) SELECT name || '_new', seq FROM sqlite_sequence " +
+                                "WHERE name = 'transactions' AND name || '_new' NOT IN (SELECT name FROM sqlite_sequence)",
+                        "UPDATE sqlite_sequence SET seq = COALESCE((SELECT MAX(o.seq) FROM sqlite_sequence o " +
+                                "WHERE o.name || '_new' = sqlite_sequence.name), seq) " +
+                                "WHERE name = 'transactions_new'",
+                        "DROP TABLE transactions",
+                        "ALTER TABLE transactions_new RENAME TO transactions",
+                        "CREATE INDEX idx_transactions_account_time ON transactions(account_id, timestamp)",
+                        "CREATE INDEX idx_transactions_time ON transactions(timestamp)",
+                        "CREATE INDEX idx_transactions_transfer ON transactions(transfer_id) WHERE transfer_id IS NOT NULL"),
+
+                // Times become INTEGER epoch milliseconds. The old text is a LocalDateTime in
+                // the system zone, which is what the 'utc' modifier converts from; whole seconds
+                // and the millisecond digits are converted separately so that sub-millisecond
+                // digits are dropped exactly as Instant.toEpochMilli drops them.
+                Migration.sql(17, "Epoch times for accounts and transfers",
+                        "CREATE TABLE accounts_new (" +
+                                "account_id INTEGER PRIMARY KEY," +
+                                "account_number TEXT NOT NULL UNIQUE," +
+                                "customer_id INTEGER NOT NULL," +
+                                "account_type TEXT NOT NULL," +
+                                "balance INTEGER NOT NULL DEFAULT 0," +
+                                "branch TEXT," +
+                                "date_opened INTEGER," +
+                                "is_active INTEGER DEFAULT 1," +
+                                "company_name TEXT," +
+                                "company_address TEXT," +
+                                "version INTEGER NOT NULL DEFAULT 0," +
+                                "last_interest_period TEXT," +
+                                "accrued_through INTEGER," +
+                                "FOREIGN KEY(customer_id) REFERENCES customers(customer_id))",
+                        "INSERT INTO accounts_new SELECT account_id, account_number, customer_id, account_type, balance, branch, " +
+                                "CAST(strftime('%s', substr(date_opened, 1, 19), 'utc') AS INTEGER) * 1000 + CAST(substr(date_opened, 21, 3) AS INTEGER), " +
+                                "is_active, company_name, company_address, version, last_interest_period, accrued_through " +
+                                "FROM accounts ORDER BY account_id",
+
+                        "CREATE TABLE transfers_new (" +
+                                "transfer_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                "from_account_id INTEGER NOT NULL," +
+                                "to_account_id INTEGER NOT NULL," +
+                                "amount INTEGER NOT NULL," +
+                                "description TEXT," +
+                                "timestamp INTEGER NOT NULL," +
+                                "FOREIGN KEY(from_account_id) REFERENCES accounts(account_id)," +
+                                "FOREIGN KEY(to_account_id) REFERENCES accounts(account_id))",
+                        "INSERT INTO transfers_new SELECT transfer_id, from_account_id, to_account_id, amount, description, " +
+                                "CAST(strftime('%s', substr(timestamp, 1, 19), 'utc') AS INTEGER) * 1000 + CAST(substr(timestamp, 21, 3) AS INTEGER) FROM transfers ORDER BY transfer_id",
+
+                        "INSERT INTO sqlite_sequence (name, seq) SELECT name || '_new', seq FROM sqlite_sequence " +
+                                "WHERE name = 'transfers' AND name || '_new' NOT IN (SELECT name FROM sqlite_sequence)",
+                        "UPDATE sqlite_sequence SET seq = COALESCE((SELECT MAX(o.seq) FROM sqlite_sequence o " +
+                                "WHERE o.name || '_new' = sqlite_sequence.name), seq) " +
+                                "WHERE name = 'transfers_new'",
+
+                        "DROP TABLE accounts",
+                        "ALTER TABLE accounts_new RENAME TO accounts",
+                        "CREATE INDEX idx_accounts_customer_opened ON accounts(customer_id, date_opened)",
+                        "CREATE INDEX idx_accounts_opened_number ON accounts(date_opened, account_number)",
+                        "DROP TABLE transfers",
+                        "ALTER TABLE transfers_new RENAME TO transfers"),
+
+                // The ledger is the big table, so it is copied in short transactions; a crash
+                // resumes after the highest id already copied. V19 swaps the copy in.
+                Migration.chunked(18, "Epoch times for transactions",
+                        Arrays.asList(
+                                "CREATE TABLE IF NOT EXISTS transactions_new (" +
+                                        "transaction_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                        "account_id INTEGER NOT NULL," +
+                                        "transaction_type TEXT NOT NULL," +
+                                        "amount INTEGER NOT NULL," +
+                                        "balance_after INTEGER NOT NULL," +
+                                        "description TEXT," +
+                                        "timestamp INTEGER NOT NULL," +
+                                        "transfer_id INTEGER REFERENCES transfers(transfer_id)," +
+                                        "FOREIGN KEY(account_id) REFERENCES accounts(account_id))"),
+                        "INSERT INTO transactions_new SELECT transaction_id, account_id, transaction_type, amount, balance_after, " +
+                                "description, CAST(strftime('%s', substr(timestamp, 1, 19), 'utc') AS INTEGER) * 1000 + CAST(substr(timestamp, 21, 3) AS INTEGER), transfer_id " +
+                                "FROM transactions WHERE transaction_id > (SELECT COALESCE(MAX(transaction_id), 0) FROM transactions_new) " +
+                                "ORDER BY transaction_id LIMIT ?",
+                        5000),
+
+                Migration.sql(19, "Swap in epoch-time transactions",
+                        // Rows other workstations posted after V18's last chunk
+                        "INSERT INTO transactions_new SELECT transaction_id, account_id, transaction_type, amount, balance_after, " +
+                                "description, CAST(strftime('%s', substr(timestamp, 1, 19), 'utc') AS INTEGER) * 1000 + CAST(substr(timestamp, 21, 3) AS INTEGER), transfer_id " +
+                                "FROM transactions WHERE transaction_id > (SELECT COALESCE(MAX(transaction_id), 0) FROM transactions_new) " +
+                                "ORDER BY transaction_id",
+                        "INSERT INTO sqlite_sequence (name, seq) SELECT name || '_new', seq FROM sqlite_sequence " +
+                                "WHERE name = 'transactions' AND name || '_new' NOT IN (SELECT name FROM sqlite_sequence)",
+                        "UPDATE sqlite_sequence SET seq = COALESCE((SELECT MAX(o.seq) FROM sqlite_sequence o " +
+                                "WHERE o.name || '_new' = sqlite_sequence.name), seq) " +
+                                "WHERE name = 'transactions_new'",
+                        "DROP TABLE transactions",
+                        "ALTER TABLE transactions_new RENAME TO transactions",
+                        "CREATE INDEX idx_transactions_account_time ON transactions(account_id, timestamp)",
+                        "CREATE INDEX idx_transactions_time ON transactions(timestamp)",
+                        "CREATE INDEX idx_transactions_transfer ON transactions(transfer_id) WHERE transfer_id IS NOT NULL"),
+
+                // Ledger descriptions the bank repeats are stored once and referenced by id.
+                // Transfer legs name the other account, so their wording stays inline.
+                Migration.sql(20, "Transaction description dictionary",
+                        "CREATE TABLE transaction_descriptions (" +
+                                "description_id INTEGER PRIMARY KEY," +
+                                "text TEXT NOT NULL UNIQUE)",
+                        "INSERT INTO transaction_descriptions (text) VALUES " +
+                                "('Deposit'), ('Withdrawal'), ('Initial deposit'), ('Monthly interest payment')",
+                        "INSERT INTO transaction_descriptions (text) SELECT description FROM transactions " +
+                                "WHERE transfer_id IS NULL AND description IS NOT NULL GROUP BY description HAVING COUNT(*) > 1 " +
+                                "ON CONFLICT(text) DO NOTHING"),
+
+                // Types become their TransactionType codes and descriptions dictionary ids,
+                // copied in chunks like V18; V22 swaps the copy in
+                Migration.chunked(21, "Encoded transaction types and descriptions",
+                        Arrays.asList(
+                                "CREATE TABLE IF NOT EXISTS transactions_new (" +
+                                        "transaction_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+                                        "account_id INTEGER NOT NULL," +
+                                        "type_code INTEGER NOT NULL," +
+                                        "amount INTEGER NOT NULL," +
+                                        "balance_after INTEGER NOT NULL," +
+                                        "description_id INTEGER REFERENCES transaction_descriptions(description_id)," +
+                                        "description TEXT," +
+                                        "timestamp INTEGER NOT NULL," +
+                                        "transfer_id INTEGER REFERENCES transfers(transfer_id)," +
+                                        "FOREIGN KEY(account_id) REFERENCES accounts(account_id))"),
+                        "INSERT INTO transactions_new SELECT t.transaction_id, t.account_id, " +
+                                "CASE t.transaction_type WHEN 'DEPOSIT' THEN 1 WHEN 'WITHDRAWAL' THEN 2 WHEN 'INTEREST' THEN 3 " +
+                                "WHEN 'FEE' THEN 4 WHEN 'TRANSFER_IN' THEN 5 WHEN 'TRANSFER_OUT' THEN 6 END, " +
+                                "t.amount, t.balance_after, d.description_id, CASE WHEN d.description_id IS NULL THEN t.description END, " +
+                                "t.timestamp, t.transfer_id " +
+                                "FROM transactions t LEFT JOIN transaction_descriptions d ON d.text = t.description " +
+                                "WHERE t.transaction_id > (SELECT COALESCE(MAX(transaction_id), 0) FROM transactions_new) " +
+                                "ORDER BY t.transaction_id LIMIT ?",
+                        5000),
+
+                Migration.sql(22, "Swap in encoded transactions",
+                        // Rows other workstations posted after V21's last chunk
+                        "INSERT INTO transactions_new SELECT t.transaction_id, t.account_id, " +
+                                "CASE t.transaction_type WHEN 'DEPOSIT' THEN 1 WHEN 'WITHDRAWAL' THEN 2 WHEN 'INTEREST' THEN 3 " +
+                                "WHEN 'FEE' THEN 4 WHEN 'TRANSFER_IN' THEN 5 WHEN 'TRANSFER_OUT' THEN 6 END, " +
+                                "t.amount, t.balance_after, d.description_id, CASE WHEN d.description_id IS NULL THEN t.description END, " +
+                                "t.timestamp, t.transfer_id " +
+                                "FROM transactions t LEFT JOIN transaction_descriptions d ON d.text = t.description " +
+                                "WHERE t.transaction_id > (SELECT COALESCE(MAX(transaction_id), 0) FROM transactions_new) " +
+                                "ORDER BY t.transaction_id",
+                        "INSERT INTO sqlite_sequence (name, seq) SELECT name || '_new', seq FROM sqlite_sequence " +
+                                "WHERE name = 'transactions' AND name || '_new' NOT IN (SELECT name FROM sqlite_sequence)",
+                        "UPDATE sqlite_sequence SET seq = COALESCE((SELECT MAX(o.seq) FROM sqlite_sequence o " +
+                                "WHERE o.name || '_new' = sqlite_sequence.name), seq) " +
+                                "WHERE name = 'transactions_new'",
+                        "DROP TABLE transactions",
+                        "ALTER TABLE transactions_new RENAME TO transactions",
+                        "CREATE INDEX idx_transactions_account_time ON transactions(account_id, timestamp)",
+                        "CREATE INDEX idx_transactions_time ON transactions(timestamp)",
+                        "CREATE INDEX idx_transactions_transfer ON transactions(transfer_id) WHERE transfer_id IS NOT NULL"),
+
+                // A counter every rule write bumps in the same transaction, which is how a cached
+                // rule set learns it is stale (see ProductRuleEngine). updated_at comes from the
+                // writing workstation's clock, so a change from a clock running behind could
+                // leave MAX(updated_at) where it was.
+                Migration.sql(23, "Product rules version",
+                        "CREATE TABLE product_rules_version (version INTEGER NOT NULL)",
+                        "INSERT INTO product_rules_version (version) VALUES (1)",
+                        "CREATE TRIGGER product_rules_inserted AFTER INSERT ON product_rules " +
+                                "BEGIN UPDATE product_rules_version SET version = version + 1; END",
+                        "CREATE TRIGGER product_rules_updated AFTER UPDATE ON product_rules " +
+                                "BEGIN UPDATE product_rules_version SET version = version + 1; END",
+                        "CREATE TRIGGER product_rules_deleted AFTER DELETE ON product_rules " +
+                                "BEGIN UPDATE product_rules_version SET version = version + 1; END")
+        );
+    }
+}
@@ -0,0 +1,159 @@
+package banking.util;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Applies pending migrations in version order and records each one in schema_version.
+public class SchemaMigrator {
+    private final List<Migration> migrations;
+
+    public SchemaMigrator(List<Migration> migrations) {
+        this.migrations = new ArrayList<>(migrations);
+        this.migrations.sort((m1, m2) -> Integer.compare(m1.getVersion(), m2.getVersion()));
+        for (int i = 1; i < this.migrations.size(); i++) {
+            if (this.migrations.get(i).getVersion() == this.migrations.get(i - 1).getVersion()) {
+                throw new IllegalArgumentException("Duplicate migration version " + this.migrations.get(i).getVersion());
+            }
+        }
+    }
+
+    // Returns the number of migrations applied by this call
+    public int migrate() throws SQLException {
+        int applied = 0;
+
+        try (Connection conn = DatabaseUtil.getWriteConnection()) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (" +
+                        "version INTEGER PRIMARY KEY," +
+                        "description TEXT NOT NULL," +
+                        "checksum TEXT NOT NULL," +
+                        "applied_at TEXT NOT NULL," +
+                        "execution_ms INTEGER NOT NULL)");
+            }
+
+            Map<Integer, String> checksums = loadAppliedChecksums(conn);
+            verifyChecksums(checksums);
+
+            for (Migration migration : migrations) {
+                if (checksums.containsKey(migration.getVersion())) {
+                    continue;
+                }
+                if (apply(conn, migration)) {
+                    applied++;
+                }
+            }
+
+            int latest = migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).getVersion();
+            for (int version : checksums.keySet()) {
+                if (version > latest) {
+                    System.err.println("Warning: database has schema version " + version +
+                            " which is newer than this application (" + latest + ")");
+                }
+            }
+        }
+
+        return applied;
+    }
+
+    public int getCurrentVersion() throws SQLException {
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private Map<Integer, String> loadAppliedChecksums(Connection conn) throws SQLException {
+        Map<Integer, String> checksums = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version, checksum FROM schema_version")) {
+            while (rs.next()) {
+                checksums.put(rs.getInt("version"), rs.getString("checksum"));
+            }
+        }
+        return checksums;
+    }
+
+    private void verifyChecksums(Map<Integer, String> checksums) throws SQLException {
+        for (Migration migration : migrations) {
+            String recorded = checksums.get(migration.getVersion());
+            if (recorded != null && !recorded.equals(migration.getChecksum())) {
+                throw new SQLException("Migration " + migration + " was changed after it was applied " +
+                        "(database checksum " + recorded + ", code checksum " + migration.getChecksum() + ")");
+            }
+        }
+    }
+
+    // Another instance may have applied the same migration since we looked, so
+    // check again once the write transaction holds the database lock.
+    private boolean apply(Connection conn, Migration migration) throws SQLException {
+        long start = System.currentTimeMillis();
+
+        if (migration.isTransactional()) {
+            conn.setAutoCommit(false);
+            try {
+                if (isApplied(conn, migration)) {
+                    conn.rollback();
+                    return false;
+                }
+                migration.migrate(conn);
+                record(conn, migration, System.currentTimeMillis() - start);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw new SQLException("Migration " + migration + " failed: " + e.getMessage(), e);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } else {
+            if (isApplied(conn, migration)) {
+                return false;
+            }
+            try {
+                migration.migrate(conn);
+            } catch (SQLException e) {
+                throw new SQLException("Migration " + migration + " failed: " + e.getMessage(), e);
+            }
+            conn.setAutoCommit(false);
+            try {
+                if (!isApplied(conn, migration)) {
+                    record(conn, migration, System.currentTimeMillis() - start);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        System.out.println("Applied migration " + migration + " in " + (System.currentTimeMillis() - start) + " ms");
+        return true;
+    }
+
+    private boolean isApplied(Connection conn, Migration migration) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM schema_version WHERE version = ?")) {
+            pstmt.setInt(1, migration.getVersion());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private void record(Connection conn, Migration migration, long elapsedMillis) throws SQLException {
+        String sql = "INSERT INTO schema_version (version, description, checksum, applied_at, execution_ms) VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, migration.getVersion());
+            pstmt.setString(2, migration.getDescription());
+            pstmt.setString(3, migration.getChecksum());
+            pstmt.setString(4, LocalDateTime.now().toString());
+            pstmt.setLong(5, elapsedMillis);
+            pstmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package banking.util;
+
+import java.sql.SQLException;
+
+// A unit of database work that can be re-run from the start, e.g. by RetryPolicy
+@FunctionalInterface
+public interface SqlOperation<T> {
+    T run() throws SQLException;
+}
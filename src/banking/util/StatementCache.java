@@ -0,0 +1,211 @@
+package banking.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Compiled statements for one physical connection, kept in LRU order.
+// Closing a statement handed out by the cache resets it and returns it here
+// instead of finalizing it, so hot DAO statements are only parsed once.
+class StatementCache {
+    private final Connection connection;
+    private final int maxSize;
+    private final Counters counters;
+    private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(Connection connection, int maxSize, Counters counters) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.counters = counters;
+    }
+
+    // autoGeneratedKeys is null for the plain prepareStatement(String) overload
+    synchronized PreparedStatement prepare(String sql, Integer autoGeneratedKeys, Connection owner) throws SQLException {
+        if (maxSize <= 0) {
+            counters.misses.incrementAndGet();
+            return compile(sql, autoGeneratedKeys);
+        }
+
+        String key = autoGeneratedKeys == null ? sql : autoGeneratedKeys + ":" + sql;
+        CachedStatement cached = statements.get(key);
+        if (cached != null && !cached.inUse) {
+            counters.hits.incrementAndGet();
+        } else {
+            // A statement already checked out (nested use on a re-entrant writer) is not
+            // shared; the second caller gets a private statement that is closed normally.
+            counters.misses.incrementAndGet();
+            if (cached != null) {
+                return compile(sql, autoGeneratedKeys);
+            }
+            cached = new CachedStatement(key, compile(sql, autoGeneratedKeys));
+            statements.put(key, cached);
+            evictOverflow();
+        }
+        cached.inUse = true;
+        return cached.proxy(owner);
+    }
+
+    synchronized void closeAll() {
+        for (CachedStatement cached : statements.values()) {
+            closeQuietly(cached.statement);
+        }
+        statements.clear();
+    }
+
+    private PreparedStatement compile(String sql, Integer autoGeneratedKeys) throws SQLException {
+        return autoGeneratedKeys == null
+                ? connection.prepareStatement(sql)
+                : connection.prepareStatement(sql, autoGeneratedKeys);
+    }
+
+    private void evictOverflow() {
+        Iterator<CachedStatement> it = statements.values().iterator();
+        while (statements.size() > maxSize && it.hasNext()) {
+            CachedStatement eldest = it.next();
+            if (!eldest.inUse) {
+                it.remove();
+                closeQuietly(eldest.statement);
+                counters.evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private synchronized void checkIn(CachedStatement cached) {
+        cached.inUse = false;
+        try {
+            cached.statement.clearParameters();
+            cached.statement.clearBatch();
+        } catch (SQLException e) {
+            statements.remove(cached.key);
+            closeQuietly(cached.statement);
+            return;
+        }
+        evictOverflow();
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing cached statement: " + e.getMessage());
+        }
+    }
+
+    static class Counters {
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+        final AtomicLong evictions = new AtomicLong();
+    }
+
+    private class CachedStatement {
+        final String key;
+        final PreparedStatement statement;
+        boolean inUse;
+
+        CachedStatement(String key, PreparedStatement statement) {
+            this.key = key;
+            this.statement = statement;
+        }
+
+        PreparedStatement proxy(Connection owner) {
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    StatementCache.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    new Handler(this, owner));
+        }
+    }
+
+    // Tracks the result sets a borrower opens: an unfinished SQLite statement keeps
+    // its read snapshot alive, so they must be closed before the statement is reused.
+    private class Handler implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Connection owner;
+        private final List<ResultSet> openResults = new ArrayList<>(1);
+        private ResultSet pendingResult;
+        private boolean closed;
+
+        Handler(CachedStatement cached, Connection owner) {
+            this.cached = cached;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        for (ResultSet rs : openResults) {
+                            try {
+                                rs.close();
+                            } catch (SQLException e) {
+                                System.err.println("Error closing result set: " + e.getMessage());
+                            }
+                        }
+                        openResults.clear();
+                        checkIn(cached);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "getConnection":
+                    return owner;
+                case "getResultSet":
+                    if (pendingResult != null) {
+                        ResultSet rs = pendingResult;
+                        pendingResult = null;
+                        return rs;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached[" + cached.statement + "]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Statement has already been closed");
+            }
+            Object result;
+            try {
+                result = method.invoke(cached.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (method.getName().equals("execute") && Boolean.TRUE.equals(result)) {
+                // Keep hold of the rows execute() produced so they are reset on close
+                pendingResult = cached.statement.getResultSet();
+                track(pendingResult);
+            } else if (result instanceof ResultSet) {
+                pendingResult = null;
+                track((ResultSet) result);
+            }
+            return result;
+        }
+
+        private void track(ResultSet result) {
+            openResults.removeIf(rs -> {
+                try {
+                    return rs.isClosed();
+                } catch (SQLException e) {
+                    return true;
+                }
+            });
+            openResults.add(result);
+        }
+    }
+}
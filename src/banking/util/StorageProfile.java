@@ -0,0 +1,305 @@
+package banking.util;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+// SQLite storage settings. Defaults can be overridden by a banking-db.properties
+// file (working directory first, then the classpath) and then by -Dbanking.db.* system properties.
+public class StorageProfile {
+    public static final String CONFIG_FILE = "banking-db.properties";
+    private static final String PREFIX = "banking.db.";
+
+    private static final List<String> JOURNAL_MODES = Arrays.asList("DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF");
+    private static final List<String> SYNC_LEVELS = Arrays.asList("OFF", "NORMAL", "FULL", "EXTRA");
+    private static final List<String> TEMP_STORES = Arrays.asList("DEFAULT", "FILE", "MEMORY");
+
+    private final String path;
+    private final boolean inMemory;
+    private final String journalMode;
+    private final String synchronous;
+    private final int cacheSize;
+    private final long mmapSize;
+    private final String tempStore;
+    private final int busyTimeout;
+    private final int poolSize;
+    private final long acquireTimeout;
+    private final int statementCacheSize;
+    private final int walAutoCheckpoint;
+    private final long journalSizeLimit;
+    private final boolean maintenanceEnabled;
+    private final String archiveDir;
+    private final int retryMaxAttempts;
+    private final long retryBaseDelay;
+    private final long retryMaxDelay;
+    private final long retryBudget;
+    private final long idempotencyRetentionHours;
+    private final int accountNumberBlock;
+    private final boolean accountCheckDigit;
+    private final String source;
+
+    private StorageProfile(Properties props, String source) {
+        this.path = props.getProperty(PREFIX + "path", "banking_system.db").trim();
+        this.inMemory = Boolean.parseBoolean(props.getProperty(PREFIX + "inMemory", "false").trim());
+        this.journalMode = choice(props, "journalMode", "WAL", JOURNAL_MODES);
+        this.synchronous = choice(props, "synchronous", "NORMAL", SYNC_LEVELS);
+        this.cacheSize = (int) number(props, "cacheSize", -16000);       // negative = KiB, so 16 MB
+        this.mmapSize = number(props, "mmapSize", 268435456L);            // 256 MB
+        this.tempStore = choice(props, "tempStore", "MEMORY", TEMP_STORES);
+        this.busyTimeout = (int) number(props, "busyTimeout", 5000);
+        this.poolSize = (int) number(props, "poolSize", 8);
+        this.acquireTimeout = number(props, "acquireTimeout", 10_000);
+        this.statementCacheSize = (int) number(props, "statementCacheSize", 64);
+        this.walAutoCheckpoint = (int) number(props, "walAutoCheckpoint", 1000);
+        this.journalSizeLimit = number(props, "journalSizeLimit", 67108864L);   // 64 MB
+        this.maintenanceEnabled = Boolean.parseBoolean(props.getProperty(PREFIX + "maintenance", "true").trim());
+        String archive = props.getProperty(PREFIX + "archiveDir", "").trim();
+        this.archiveDir = archive.isEmpty() ? null : archive;
+        this.retryMaxAttempts = (int) number(props, "retry.maxAttempts", 6);
+        this.retryBaseDelay = number(props, "retry.baseDelay", 10);
+        this.retryMaxDelay = number(props, "retry.maxDelay", 500);
+        this.retryBudget = number(props, "retry.budget", 3000);
+        this.idempotencyRetentionHours = number(props, "idempotency.retentionHours", 168);   // one week
+        this.accountNumberBlock = (int) number(props, "accountNumbers.blockSize", 100);
+        this.accountCheckDigit = Boolean.parseBoolean(props.getProperty(PREFIX + "accountNumbers.checkDigit", "false").trim());
+        this.source = source;
+
+        if (poolSize < 1) {
+            throw new IllegalArgumentException(PREFIX + "poolSize must be at least 1");
+        }
+        if (retryMaxAttempts < 1) {
+            throw new IllegalArgumentException(PREFIX + "retry.maxAttempts must be at least 1");
+        }
+        if (accountNumberBlock < 1) {
+            throw new IllegalArgumentException(PREFIX + "accountNumbers.blockSize must be at least 1");
+        }
+        if (busyTimeout < 0 || mmapSize < 0 || acquireTimeout < 0 || statementCacheSize < 0
+                || retryBaseDelay < 0 || retryMaxDelay < 0 || retryBudget < 0 || idempotencyRetentionHours < 0) {
+            throw new IllegalArgumentException("Storage profile timeouts and sizes cannot be negative");
+        }
+    }
+
+    // Load the profile: built-in defaults, then the properties file, then system properties
+    public static StorageProfile load() {
+        Properties props = new Properties();
+        String source = "defaults";
+
+        String configured = System.getProperty(PREFIX + "config");
+        Path file = Paths.get(configured != null ? configured : CONFIG_FILE);
+        try {
+            if (Files.isRegularFile(file)) {
+                try (InputStream in = new FileInputStream(file.toFile())) {
+                    props.load(in);
+                }
+                source = file.toAbsolutePath().toString();
+            } else {
+                try (InputStream in = StorageProfile.class.getClassLoader().getResourceAsStream(CONFIG_FILE)) {
+                    if (in != null) {
+                        props.load(in);
+                        source = "classpath:" + CONFIG_FILE;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading storage profile " + file + ": " + e.getMessage());
+        }
+
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(PREFIX)) {
+                props.setProperty(name, System.getProperty(name));
+            }
+        }
+        return new StorageProfile(props, source);
+    }
+
+    public static StorageProfile fromProperties(Properties props) {
+        return new StorageProfile(props, "properties");
+    }
+
+    public String getJdbcUrl() {
+        if (inMemory) {
+            // Shared cache keeps one in-memory database alive across the pool's connections
+            return "jdbc:sqlite:file:" + path + "?mode=memory&cache=shared";
+        }
+        return "jdbc:sqlite:" + path;
+    }
+
+    // Per-connection PRAGMAs. The journal mode is persistent in the file, so only the writer sets it.
+    // auto_vacuum only takes effect on a brand-new database, where it lets the
+    // maintenance daemon hand free pages back with incremental_vacuum.
+    public void apply(Connection conn, boolean writer) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + busyTimeout);
+            if (writer && !inMemory) {
+                stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+                stmt.execute("PRAGMA journal_mode = " + journalMode);
+                stmt.execute("PRAGMA wal_autocheckpoint = " + getWalAutoCheckpoint());
+                stmt.execute("PRAGMA journal_size_limit = " + journalSizeLimit);
+            }
+            stmt.execute("PRAGMA synchronous = " + synchronous);
+            stmt.execute("PRAGMA cache_size = " + cacheSize);
+            stmt.execute("PRAGMA temp_store = " + tempStore);
+            if (!inMemory) {
+                stmt.execute("PRAGMA mmap_size = " + mmapSize);
+            }
+        }
+    }
+
+    private static String choice(Properties props, String key, String defaultValue, List<String> allowed) {
+        String value = props.getProperty(PREFIX + key, defaultValue).trim().toUpperCase();
+        if (!allowed.contains(value)) {
+            throw new IllegalArgumentException("Invalid " + PREFIX + key + " '" + value + "', expected one of " + allowed);
+        }
+        return value;
+    }
+
+    private static long number(Properties props, String key, long defaultValue) {
+        String value = props.getProperty(PREFIX + key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + PREFIX + key + " '" + value + "', expected a number");
+        }
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public boolean isInMemory() {
+        return inMemory;
+    }
+
+    public String getJournalMode() {
+        return journalMode;
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    public String getTempStore() {
+        return tempStore;
+    }
+
+    public int getBusyTimeout() {
+        return busyTimeout;
+    }
+
+    // In-memory databases use the writer for reads too: shared-cache table locks
+    // would otherwise make readers and the writer block each other.
+    public int getPoolSize() {
+        return inMemory ? 0 : poolSize;
+    }
+
+    public long getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    // Prepared statements kept per pooled connection; 0 disables the cache
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    // Pages in the WAL before a committing writer checkpoints inline; 0 leaves it to the maintenance daemon.
+    // WAL archiving needs every frame to be copied before it is checkpointed, so it always uses 0.
+    public int getWalAutoCheckpoint() {
+        return isArchivingEnabled() ? 0 : walAutoCheckpoint;
+    }
+
+    public long getJournalSizeLimit() {
+        return journalSizeLimit;
+    }
+
+    public boolean isMaintenanceEnabled() {
+        return maintenanceEnabled && !inMemory;
+    }
+
+    public String getArchiveDir() {
+        return archiveDir;
+    }
+
+    public boolean isArchivingEnabled() {
+        return archiveDir != null && !inMemory && "WAL".equals(journalMode);
+    }
+
+    public int getRetryMaxAttempts() {
+        return retryMaxAttempts;
+    }
+
+    public long getRetryBaseDelay() {
+        return retryBaseDelay;
+    }
+
+    public long getRetryMaxDelay() {
+        return retryMaxDelay;
+    }
+
+    // Total time one operation may spend retrying, on top of busy_timeout inside each attempt
+    public long getRetryBudget() {
+        return retryBudget;
+    }
+
+    // How long completed idempotency keys stay replayable; 0 keeps them forever
+    public long getIdempotencyRetentionHours() {
+        return idempotencyRetentionHours;
+    }
+
+    // Account numbers each process reserves at a time; unused ones are skipped after a restart
+    public int getAccountNumberBlock() {
+        return accountNumberBlock;
+    }
+
+    // New account numbers get an eleventh, Luhn check digit
+    public boolean isAccountCheckDigit() {
+        return accountCheckDigit;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return "StorageProfile{" +
+                "path='" + path + '\'' +
+                ", inMemory=" + inMemory +
+                ", journal_mode=" + (inMemory ? "MEMORY" : journalMode) +
+                ", synchronous=" + synchronous +
+                ", cache_size=" + cacheSize +
+                ", mmap_size=" + (inMemory ? 0 : mmapSize) +
+                ", temp_store=" + tempStore +
+                ", busy_timeout=" + busyTimeout +
+                ", readers=" + getPoolSize() +
+                ", acquire_timeout=" + acquireTimeout +
+                ", statement_cache=" + statementCacheSize +
+                ", wal_autocheckpoint=" + getWalAutoCheckpoint() +
+                ", journal_size_limit=" + journalSizeLimit +
+                ", maintenance=" + isMaintenanceEnabled() +
+                ", archive_dir=" + (isArchivingEnabled() ? archiveDir : "off") +
+                ", retry=" + retryMaxAttempts + "x/" + retryBaseDelay + "-" + retryMaxDelay + "ms/budget " + retryBudget + "ms" +
+                ", idempotency_retention=" + idempotencyRetentionHours + "h" +
+                ", account_numbers=" + accountNumberBlock + "/block" + (accountCheckDigit ? "+check digit" : "") +
+                '}';
+    }
+}
@@ -4,6 +4,7 @@ import banking.controller.AccountController;
 import banking.controller.CustomerController;
 import banking.model.Account;
 import banking.model.Customer;
+import banking.model.Money;
 import javafx.collections.FXCollections;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -61,17 +62,17 @@ public class AccountManagementView {
         });
         customerCol.setPrefWidth(200);
 
-        TableColumn<Account, Double> balanceCol = new TableColumn<>("Balance");
+        TableColumn<Account, Long> balanceCol = new TableColumn<>("Balance");
         balanceCol.setCellValueFactory(new PropertyValueFactory<>("balance"));
         balanceCol.setPrefWidth(120);
-        balanceCol.setCellFactory(col -> new TableCell<Account, Double>() {
+        balanceCol.setCellFactory(col -> new TableCell<Account, Long>() {
             @Override
-            protected void updateItem(Double balance, boolean empty) {
+            protected void updateItem(Long balance, boolean empty) {
                 super.updateItem(balance, empty);
                 if (empty || balance == null) {
                     setText(null);
                 } else {
-                    setText("BWP " + String.format("%.2f", balance));
+                    setText("BWP " + Money.format(balance));
                 }
             }
         });
@@ -208,7 +209,7 @@ public class AccountManagementView {
                     Customer customer = customerCombo.getValue();
                     String accountType = accountTypeCombo.getValue();
                     String branch = branchField.getText();
-                    double initialDeposit = Double.parseDouble(initialDepositField.getText());
+                    long initialDeposit = Money.parse(initialDepositField.getText());
                     String companyName = companyNameField.getText();
                     String companyAddress = companyAddressField.getText();
 
@@ -248,13 +249,12 @@ public class AccountManagementView {
 
         dialog.showAndWait().ifPresent(amount -> {
             try {
-                double depositAmount = Double.parseDouble(amount);
-                if (accountController.deposit(account.getAccountNumber(), depositAmount)) {
-                    Alert success = new Alert(Alert.AlertType.INFORMATION);
-                    success.setContentText("Deposit successful!");
-                    success.showAndWait();
-                    loadAccounts();
-                }
+                long depositAmount = Money.parse(amount);
+                accountController.deposit(account.getAccountNumber(), depositAmount);
+                Alert success = new Alert(Alert.AlertType.INFORMATION);
+                success.setContentText("Deposit successful!");
+                success.showAndWait();
+                loadAccounts();
             } catch (Exception e) {
                 Alert error = new Alert(Alert.AlertType.ERROR);
                 error.setContentText("Error: " + e.getMessage());
@@ -271,13 +271,12 @@ public class AccountManagementView {
 
         dialog.showAndWait().ifPresent(amount -> {
             try {
-                double withdrawAmount = Double.parseDouble(amount);
-                if (accountController.withdraw(account.getAccountNumber(), withdrawAmount)) {
-                    Alert success = new Alert(Alert.AlertType.INFORMATION);
-                    success.setContentText("Withdrawal successful!");
-                    success.showAndWait();
-                    loadAccounts();
-                }
+                long withdrawAmount = Money.parse(amount);
+                accountController.withdraw(account.getAccountNumber(), withdrawAmount);
+                Alert success = new Alert(Alert.AlertType.INFORMATION);
+                success.setContentText("Withdrawal successful!");
+                success.showAndWait();
+                loadAccounts();
             } catch (Exception e) {
                 Alert error = new Alert(Alert.AlertType.ERROR);
                 error.setContentText("Error: " + e.getMessage());
@@ -6,6 +6,7 @@ import banking.controller.CustomerController;
 import banking.dao.CustomerDAO;
 import banking.model.Account;
 import banking.model.Customer;
+import banking.model.Money;
 import banking.model.Transaction;
 import banking.model.User;
 import javafx.collections.FXCollections;
@@ -128,13 +129,13 @@ public class CustomerDashboardView {
         // Account Summary Cards
         List<Account> accounts = accountController.getCustomerAccounts(customer.getCustomerId());
 
-        double totalBalance = accounts.stream().mapToDouble(Account::getBalance).sum();
+        long totalBalance = accounts.stream().mapToLong(Account::getBalance).sum();
 
         HBox summaryBox = new HBox(20);
         summaryBox.setAlignment(Pos.CENTER);
 
         VBox accountsCard = createSummaryCard("Total Accounts", String.valueOf(accounts.size()), "#3498db");
-        VBox balanceCard = createSummaryCard("Total Balance", "BWP " + String.format("%.2f", totalBalance), "#2ecc71");
+        VBox balanceCard = createSummaryCard("Total Balance", "BWP " + Money.format(totalBalance), "#2ecc71");
 
         summaryBox.getChildren().addAll(accountsCard, balanceCard);
 
@@ -188,7 +189,7 @@ public class CustomerDashboardView {
         Region spacer = new Region();
         HBox.setHgrow(spacer, Priority.ALWAYS);
 
-        Label balanceLabel = new Label("BWP " + String.format("%.2f", account.getBalance()));
+        Label balanceLabel = new Label("BWP " + Money.format(account.getBalance()));
         balanceLabel.setFont(Font.font("Arial", FontWeight.BOLD, 20));
         balanceLabel.setStyle("-fx-text-fill: #2ecc71;");
 
@@ -233,17 +234,17 @@ public class CustomerDashboardView {
         branchCol.setCellValueFactory(new PropertyValueFactory<>("branch"));
         branchCol.setPrefWidth(150);
 
-        TableColumn<Account, Double> balanceCol = new TableColumn<>("Balance");
+        TableColumn<Account, Long> balanceCol = new TableColumn<>("Balance");
         balanceCol.setCellValueFactory(new PropertyValueFactory<>("balance"));
         balanceCol.setPrefWidth(150);
-        balanceCol.setCellFactory(col -> new TableCell<Account, Double>() {
+        balanceCol.setCellFactory(col -> new TableCell<Account, Long>() {
             @Override
-            protected void updateItem(Double balance, boolean empty) {
+            protected void updateItem(Long balance, boolean empty) {
                 super.updateItem(balance, empty);
                 if (empty || balance == null) {
                     setText(null);
                 } else {
-                    setText("BWP " + String.format("%.2f", balance));
+                    setText("BWP " + Money.format(balance));
                 }
             }
         });
@@ -319,7 +320,7 @@ public class CustomerDashboardView {
                 if (empty || account == null) {
                     setText(null);
                 } else {
-                    setText(account.getAccountNumber() + " - BWP " + String.format("%.2f", account.getBalance()));
+                    setText(account.getAccountNumber() + " - BWP " + Money.format(account.getBalance()));
                 }
             }
         });
@@ -330,7 +331,7 @@ public class CustomerDashboardView {
                 if (empty || account == null) {
                     setText(null);
                 } else {
-                    setText(account.getAccountNumber() + " - BWP " + String.format("%.2f", account.getBalance()));
+                    setText(account.getAccountNumber() + " - BWP " + Money.format(account.getBalance()));
                 }
             }
         });
@@ -399,7 +400,7 @@ public class CustomerDashboardView {
                     return;
                 }
 
-                double amount = Double.parseDouble(amountStr);
+                long amount = Money.parse(amountStr);
 
                 if (amount <= 0) {
                     errorLabel.setText("Amount must be greater than 0");
@@ -413,25 +414,24 @@ public class CustomerDashboardView {
                     return;
                 }
 
-                // Perform transfer
-                if (accountController.withdraw(fromAccount.getAccountNumber(), amount)) {
-                    if (accountController.deposit(toAccount.getAccountNumber(), amount)) {
-                        Alert success = new Alert(Alert.AlertType.INFORMATION);
-                        success.setTitle("Success");
-                        success.setHeaderText("Transfer Successful!");
-                        success.setContentText(String.format("BWP %.2f transferred from %s to %s",
-                                amount, fromAccount.getAccountNumber(), toAccount.getAccountNumber()));
-                        success.showAndWait();
-
-                        // Clear form
-                        fromAccountCombo.setValue(null);
-                        toAccountCombo.setValue(null);
-                        amountField.clear();
-                        descriptionArea.clear();
-
-                        showTransfer(); // Refresh
-                    }
-                }
+                // Perform transfer: debit and credit commit together
+                accountController.transfer(fromAccount.getAccountNumber(), toAccount.getAccountNumber(),
+                        amount, descriptionArea.getText());
+
+                Alert success = new Alert(Alert.AlertType.INFORMATION);
+                success.setTitle("Success");
+                success.setHeaderText("Transfer Successful!");
+                success.setContentText(String.format("BWP %s transferred from %s to %s",
+                        Money.format(amount), fromAccount.getAccountNumber(), toAccount.getAccountNumber()));
+                success.showAndWait();
+
+                // Clear form
+                fromAccountCombo.setValue(null);
+                toAccountCombo.setValue(null);
+                amountField.clear();
+                descriptionArea.clear();
+
+                showTransfer(); // Refresh
 
             } catch (NumberFormatException ex) {
                 errorLabel.setText("Invalid amount");
@@ -532,19 +532,18 @@ public class CustomerDashboardView {
         Optional<String> result = dialog.showAndWait();
         result.ifPresent(amount -> {
             try {
-                double depositAmount = Double.parseDouble(amount);
+                long depositAmount = Money.parse(amount);
                 if (depositAmount <= 0) {
                     Alert error = new Alert(Alert.AlertType.ERROR);
                     error.setContentText("Amount must be greater than 0");
                     error.showAndWait();
                     return;
                 }
-                if (accountController.deposit(account.getAccountNumber(), depositAmount)) {
-                    Alert success = new Alert(Alert.AlertType.INFORMATION);
-                    success.setContentText("Deposit successful!");
-                    success.showAndWait();
-                    showHome(); // Refresh
-                }
+                accountController.deposit(account.getAccountNumber(), depositAmount);
+                Alert success = new Alert(Alert.AlertType.INFORMATION);
+                success.setContentText("Deposit successful!");
+                success.showAndWait();
+                showHome(); // Refresh
             } catch (NumberFormatException e) {
                 Alert error = new Alert(Alert.AlertType.ERROR);
                 error.setContentText("Invalid amount");
@@ -566,7 +565,7 @@ public class CustomerDashboardView {
         Optional<String> result = dialog.showAndWait();
         result.ifPresent(amount -> {
             try {
-                double withdrawAmount = Double.parseDouble(amount);
+                long withdrawAmount = Money.parse(amount);
                 if (withdrawAmount <= 0) {
                     Alert error = new Alert(Alert.AlertType.ERROR);
                     error.setContentText("Amount must be greater than 0");
@@ -579,12 +578,11 @@ public class CustomerDashboardView {
                     error.showAndWait();
                     return;
                 }
-                if (accountController.withdraw(account.getAccountNumber(), withdrawAmount)) {
-                    Alert success = new Alert(Alert.AlertType.INFORMATION);
-                    success.setContentText("Withdrawal successful!");
-                    success.showAndWait();
-                    showHome(); // Refresh
-                }
+                accountController.withdraw(account.getAccountNumber(), withdrawAmount);
+                Alert success = new Alert(Alert.AlertType.INFORMATION);
+                success.setContentText("Withdrawal successful!");
+                success.showAndWait();
+                showHome(); // Refresh
             } catch (NumberFormatException e) {
                 Alert error = new Alert(Alert.AlertType.ERROR);
                 error.setContentText("Invalid amount");
@@ -4,6 +4,7 @@ import banking.controller.AccountController;
 import banking.controller.CustomerController;
 import banking.model.Account;
 import banking.model.Customer;
+import banking.model.Money;
 import javafx.collections.FXCollections;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -197,7 +198,7 @@ public class CustomerManagementView {
                 typeLabel.setFont(Font.font("Arial", FontWeight.BOLD, 14));
 
                 Label numberLabel = new Label("Account #: " + account.getAccountNumber());
-                Label balanceLabel = new Label("Balance: BWP " + String.format("%.2f", account.getBalance()));
+                Label balanceLabel = new Label("Balance: BWP " + Money.format(account.getBalance()));
                 Label branchLabel = new Label("Branch: " + account.getBranch());
 
                 accountBox.getChildren().addAll(typeLabel, numberLabel, balanceLabel, branchLabel);
@@ -3,7 +3,11 @@ package banking.view;
 import banking.controller.AuthController;
 import banking.controller.CustomerController;
 import banking.controller.AccountController;
+import banking.controller.InterestEngine;
+import banking.model.InterestRunResult;
+import banking.model.Money;
 import banking.model.User;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -12,8 +16,12 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.stage.Modality;
 import javafx.stage.Stage;
 
+import java.time.YearMonth;
+import java.util.function.Consumer;
+
 public class DashboardView {
     private Stage stage;
     private AuthController authController;
@@ -172,29 +180,104 @@ public class DashboardView {
         transactionView.show();
     }
 
+    // The run for the month just ended: a dry run first, so the confirmation can show what is still due,
+    // then the real run. Both run off the FX thread behind a progress window with a
+    // Cancel button; a cancelled run is resumed by pressing the button again.
     private void payInterestToAll() {
-        Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
-        alert.setTitle("Pay Interest");
-        alert.setHeaderText("Pay interest to all eligible accounts?");
-        alert.setContentText("This will calculate and pay monthly interest to all Savings and Investment accounts.");
-
-        alert.showAndWait().ifPresent(response -> {
-            if (response == ButtonType.OK) {
-                try {
-                    accountController.payInterestToAllAccounts();
-                    Alert success = new Alert(Alert.AlertType.INFORMATION);
-                    success.setTitle("Success");
-                    success.setHeaderText(null);
-                    success.setContentText("Interest paid to all eligible accounts successfully!");
-                    success.showAndWait();
-                } catch (Exception e) {
-                    Alert error = new Alert(Alert.AlertType.ERROR);
-                    error.setTitle("Error");
-                    error.setHeaderText(null);
-                    error.setContentText("Error paying interest: " + e.getMessage());
-                    error.showAndWait();
+        YearMonth period = YearMonth.now().minusMonths(1);
+        runInterest(period, true, preview -> {
+            if (preview.isCancelled()) {
+                return;
+            }
+            if (preview.getCredited() == 0) {
+                Alert info = new Alert(Alert.AlertType.INFORMATION);
+                info.setTitle("Pay Interest");
+                info.setHeaderText(null);
+                info.setContentText("No accounts are due interest for " + period + ".");
+                info.showAndWait();
+                return;
+            }
+
+            Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+            alert.setTitle("Pay Interest");
+            alert.setHeaderText("Pay interest to all eligible accounts?");
+            alert.setContentText(String.format("BWP %s of interest and BWP %s of fees for %s will be posted to %d accounts.",
+                    Money.format(preview.getTotalInterest()), Money.format(preview.getTotalFees()), period, preview.getCredited()));
+
+            alert.showAndWait().ifPresent(response -> {
+                if (response == ButtonType.OK) {
+                    runInterest(period, false, result -> {
+                        Alert done = new Alert(result.getFailed() > 0 ? Alert.AlertType.WARNING : Alert.AlertType.INFORMATION);
+                        done.setTitle(result.isCancelled() ? "Cancelled" : "Success");
+                        done.setHeaderText(null);
+                        String message = String.format("Interest of BWP %s and fees of BWP %s posted to %d accounts in %.1f s.",
+                                Money.format(result.getTotalInterest()), Money.format(result.getTotalFees()), result.getCredited(), result.getElapsedMillis() / 1000.0);
+                        if (result.isCancelled()) {
+                            message = "Run cancelled. " + message;
+                        }
+                        if (result.getFailed() > 0) {
+                            message += "\n" + result.getFailed() + " accounts could not be paid; see the log.";
+                        }
+                        done.setContentText(message);
+                        done.showAndWait();
+                    });
                 }
+            });
+        });
+    }
+
+    private void runInterest(YearMonth period, boolean dryRun, Consumer<InterestRunResult> onDone) {
+        InterestEngine engine = accountController.newInterestEngine(period);
+
+        Label statusLabel = new Label(dryRun ? "Calculating interest..." : "Paying interest...");
+        ProgressBar progressBar = new ProgressBar(0);
+        progressBar.setPrefWidth(380);
+        Button cancelButton = new Button("Cancel");
+        cancelButton.setOnAction(e -> {
+            engine.cancel();
+            cancelButton.setDisable(true);
+        });
+
+        VBox box = new VBox(10, statusLabel, progressBar, cancelButton);
+        box.setPadding(new Insets(20));
+        box.setAlignment(Pos.CENTER);
+
+        Stage progressStage = new Stage();
+        progressStage.initOwner(stage);
+        progressStage.initModality(Modality.WINDOW_MODAL);
+        progressStage.setTitle(dryRun ? "Calculating Interest" : "Paying Interest");
+        progressStage.setScene(new Scene(box));
+        progressStage.setOnCloseRequest(e -> engine.cancel());
+
+        Task<InterestRunResult> task = new Task<InterestRunResult>() {
+            @Override
+            protected InterestRunResult call() {
+                return engine.run(dryRun, progress -> {
+                    updateProgress(progress.getProcessed(), Math.max(1, progress.getTotalAccounts()));
+                    updateMessage(String.format("%d of %d accounts, BWP %s, %.0f accounts/s",
+                            progress.getProcessed(), progress.getTotalAccounts(),
+                            Money.format(progress.getTotalInterest()), progress.getAccountsPerSecond()));
+                });
             }
+        };
+        progressBar.progressProperty().bind(task.progressProperty());
+        task.messageProperty().addListener((obs, old, message) -> statusLabel.setText(message));
+        task.setOnSucceeded(e -> {
+            progressStage.close();
+            onDone.accept(task.getValue());
+        });
+        task.setOnFailed(e -> {
+            progressStage.close();
+            Alert error = new Alert(Alert.AlertType.ERROR);
+            error.setTitle("Error");
+            error.setHeaderText(null);
+            error.setContentText("Error paying interest: " + task.getException().getMessage());
+            error.showAndWait();
         });
+
+        Thread worker = new Thread(task, "interest-run");
+        worker.setDaemon(true);
+        worker.start();
+        progressStage.show();
     }
 }
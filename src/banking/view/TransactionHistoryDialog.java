@@ -1,7 +1,10 @@
 package banking.view;
 
 import banking.controller.AccountController;
+import banking.dao.Page;
+import banking.dao.PageRequest;
 import banking.model.Account;
+import banking.model.Money;
 import banking.model.Transaction;
 import javafx.collections.FXCollections;
 import javafx.geometry.Insets;
@@ -13,11 +16,13 @@ import javafx.scene.text.FontWeight;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
 
 public class TransactionHistoryDialog extends Dialog<Void> {
+    private static final int PAGE_SIZE = 100;
+
     private Account account;
     private AccountController accountController;
+    private PageRequest nextPage;
 
     public TransactionHistoryDialog(Account account, AccountController accountController) {
         this.account = account;
@@ -34,7 +39,7 @@ public class TransactionHistoryDialog extends Dialog<Void> {
         Label accountInfoLabel = new Label("Customer: " + account.getCustomer().getFullName());
         accountInfoLabel.setFont(Font.font("Arial", 14));
 
-        Label balanceLabel = new Label("Current Balance: BWP " + String.format("%.2f", account.getBalance()));
+        Label balanceLabel = new Label("Current Balance: BWP " + Money.format(account.getBalance()));
         balanceLabel.setFont(Font.font("Arial", FontWeight.BOLD, 16));
 
         TableView<Transaction> transactionTable = new TableView<>();
@@ -57,9 +62,12 @@ public class TransactionHistoryDialog extends Dialog<Void> {
                     setText(type);
                     switch (type) {
                         case "DEPOSIT":
+                        case "TRANSFER_IN":
                             setStyle("-fx-text-fill: #2ecc71; -fx-font-weight: bold;");
                             break;
                         case "WITHDRAWAL":
+                        case "FEE":
+                        case "TRANSFER_OUT":
                             setStyle("-fx-text-fill: #e74c3c; -fx-font-weight: bold;");
                             break;
                         case "INTEREST":
@@ -72,32 +80,32 @@ public class TransactionHistoryDialog extends Dialog<Void> {
             }
         });
 
-        TableColumn<Transaction, Double> amountCol = new TableColumn<>("Amount");
+        TableColumn<Transaction, Long> amountCol = new TableColumn<>("Amount");
         amountCol.setCellValueFactory(new PropertyValueFactory<>("amount"));
         amountCol.setPrefWidth(120);
-        amountCol.setCellFactory(col -> new TableCell<Transaction, Double>() {
+        amountCol.setCellFactory(col -> new TableCell<Transaction, Long>() {
             @Override
-            protected void updateItem(Double amount, boolean empty) {
+            protected void updateItem(Long amount, boolean empty) {
                 super.updateItem(amount, empty);
                 if (empty || amount == null) {
                     setText(null);
                 } else {
-                    setText("BWP " + String.format("%.2f", amount));
+                    setText("BWP " + Money.format(amount));
                 }
             }
         });
 
-        TableColumn<Transaction, Double> balanceCol = new TableColumn<>("Balance After");
+        TableColumn<Transaction, Long> balanceCol = new TableColumn<>("Balance After");
         balanceCol.setCellValueFactory(new PropertyValueFactory<>("balanceAfter"));
         balanceCol.setPrefWidth(130);
-        balanceCol.setCellFactory(col -> new TableCell<Transaction, Double>() {
+        balanceCol.setCellFactory(col -> new TableCell<Transaction, Long>() {
             @Override
-            protected void updateItem(Double balance, boolean empty) {
+            protected void updateItem(Long balance, boolean empty) {
                 super.updateItem(balance, empty);
                 if (empty || balance == null) {
                     setText(null);
                 } else {
-                    setText("BWP " + String.format("%.2f", balance));
+                    setText("BWP " + Money.format(balance));
                 }
             }
         });
@@ -124,17 +132,32 @@ public class TransactionHistoryDialog extends Dialog<Void> {
 
         transactionTable.getColumns().addAll(idCol, typeCol, amountCol, balanceCol, dateCol, descCol);
 
-        List<Transaction> transactions = accountController.getAccountTransactions(account.getAccountNumber());
-        transactionTable.setItems(FXCollections.observableArrayList(transactions));
+        // Newest first, one page at a time; large accounts have far too much history to load at once
+        transactionTable.setItems(FXCollections.observableArrayList());
+        Button loadMoreButton = new Button("Load More");
+        loadMoreButton.setOnAction(e -> loadPage(transactionTable, loadMoreButton));
+
+        nextPage = PageRequest.first(PAGE_SIZE, PageRequest.Direction.DESCENDING);
+        loadPage(transactionTable, loadMoreButton);
 
-        if (transactions.isEmpty()) {
+        if (transactionTable.getItems().isEmpty()) {
             Label noTransactionsLabel = new Label("No transactions found for this account");
             content.getChildren().addAll(accountInfoLabel, balanceLabel, new Separator(), noTransactionsLabel);
         } else {
-            content.getChildren().addAll(accountInfoLabel, balanceLabel, new Separator(), transactionTable);
+            content.getChildren().addAll(accountInfoLabel, balanceLabel, new Separator(), transactionTable, loadMoreButton);
         }
 
         getDialogPane().setContent(content);
         getDialogPane().getButtonTypes().add(ButtonType.CLOSE);
     }
-}
\ No newline at end of file
+
+    private void loadPage(TableView<Transaction> transactionTable, Button loadMoreButton) {
+        if (nextPage == null) {
+            return;
+        }
+        Page<Transaction> page = accountController.getAccountTransactionsPage(account.getAccountNumber(), nextPage);
+        transactionTable.getItems().addAll(page.getItems());
+        nextPage = page.getNext();
+        loadMoreButton.setDisable(nextPage == null);
+    }
+}
@@ -2,6 +2,7 @@ package banking.view;
 
 import banking.controller.AccountController;
 import banking.model.Account;
+import banking.model.Money;
 import banking.model.Transaction;
 import javafx.collections.FXCollections;
 import javafx.geometry.Insets;
@@ -82,9 +83,12 @@ public class TransactionView {
                     setText(type);
                     switch (type) {
                         case "DEPOSIT":
+                        case "TRANSFER_IN":
                             setStyle("-fx-text-fill: #2ecc71; -fx-font-weight: bold;");
                             break;
                         case "WITHDRAWAL":
+                        case "FEE":
+                        case "TRANSFER_OUT":
                             setStyle("-fx-text-fill: #e74c3c; -fx-font-weight: bold;");
                             break;
                         case "INTEREST":
@@ -97,32 +101,32 @@ public class TransactionView {
             }
         });
 
-        TableColumn<Transaction, Double> amountCol = new TableColumn<>("Amount");
+        TableColumn<Transaction, Long> amountCol = new TableColumn<>("Amount");
         amountCol.setCellValueFactory(new PropertyValueFactory<>("amount"));
         amountCol.setPrefWidth(120);
-        amountCol.setCellFactory(col -> new TableCell<Transaction, Double>() {
+        amountCol.setCellFactory(col -> new TableCell<Transaction, Long>() {
             @Override
-            protected void updateItem(Double amount, boolean empty) {
+            protected void updateItem(Long amount, boolean empty) {
                 super.updateItem(amount, empty);
                 if (empty || amount == null) {
                     setText(null);
                 } else {
-                    setText("BWP " + String.format("%.2f", amount));
+                    setText("BWP " + Money.format(amount));
                 }
             }
         });
 
-        TableColumn<Transaction, Double> balanceCol = new TableColumn<>("Balance After");
+        TableColumn<Transaction, Long> balanceCol = new TableColumn<>("Balance After");
         balanceCol.setCellValueFactory(new PropertyValueFactory<>("balanceAfter"));
         balanceCol.setPrefWidth(120);
-        balanceCol.setCellFactory(col -> new TableCell<Transaction, Double>() {
+        balanceCol.setCellFactory(col -> new TableCell<Transaction, Long>() {
             @Override
-            protected void updateItem(Double balance, boolean empty) {
+            protected void updateItem(Long balance, boolean empty) {
                 super.updateItem(balance, empty);
                 if (empty || balance == null) {
                     setText(null);
                 } else {
-                    setText("BWP " + String.format("%.2f", balance));
+                    setText("BWP " + Money.format(balance));
                 }
             }
         });
@@ -163,7 +167,7 @@ public class TransactionView {
             for (Account account : accounts) {
                 allTransactions.addAll(accountController.getAccountTransactions(account.getAccountNumber()));
             }
-            allTransactions.sort((t1, t2) -> t2.getTimestamp().compareTo(t1.getTimestamp()));
+            allTransactions.sort((t1, t2) -> Long.compare(t2.getTimestampMillis(), t1.getTimestampMillis()));
             transactionTable.setItems(FXCollections.observableArrayList(allTransactions));
         } else {
             String accountNumber = selectedFilter.split(" - ")[0];
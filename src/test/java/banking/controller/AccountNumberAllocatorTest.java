@@ -0,0 +1,113 @@
+package banking.controller;
+
+import banking.dao.AccountDAO;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AccountNumberAllocatorTest {
+
+    // Hands out consecutive blocks from firstNumber and reports the given numbers as already taken
+    private static class BlockDAO extends AccountDAO {
+        private final List<Integer> reserved = new ArrayList<>();
+        private final Set<String> taken;
+        private long nextBlock;
+
+        BlockDAO(long firstNumber, String... taken) {
+            this.nextBlock = firstNumber;
+            this.taken = new HashSet<>(Arrays.asList(taken));
+        }
+
+        @Override
+        public Long reserveAccountNumbers(int count) {
+            reserved.add(count);
+            long first = nextBlock;
+            nextBlock += count;
+            return first;
+        }
+
+        @Override
+        public Set<String> getAccountNumbersBetween(String first, String last) {
+            Set<String> inBlock = new HashSet<>();
+            for (String number : taken) {
+                if (number.compareTo(first) >= 0 && number.compareTo(last) <= 0) {
+                    inBlock.add(number);
+                }
+            }
+            return inBlock;
+        }
+    }
+
+    @Test
+    public void computesLuhnCheckDigits() {
+        assertEquals(3, AccountNumberAllocator.checkDigit(7992739871L));
+        assertEquals(0, AccountNumberAllocator.checkDigit(0L));
+        assertEquals(8, AccountNumberAllocator.checkDigit(1L));
+    }
+
+    @Test
+    public void acceptsTenDigitsOrAValidCheckDigit() {
+        assertTrue(AccountNumberAllocator.isWellFormed("7992739871"));
+        assertTrue(AccountNumberAllocator.isWellFormed("79927398713"));
+        assertFalse(AccountNumberAllocator.isWellFormed("79927398710"));
+        assertFalse(AccountNumberAllocator.isWellFormed("79927389713"));
+        assertFalse(AccountNumberAllocator.isWellFormed("799273987"));
+        assertFalse(AccountNumberAllocator.isWellFormed("799273987134"));
+        assertFalse(AccountNumberAllocator.isWellFormed("79927a9871"));
+        assertFalse(AccountNumberAllocator.isWellFormed(null));
+    }
+
+    @Test
+    public void handsOutBlocksAndSkipsTakenNumbers() {
+        BlockDAO dao = new BlockDAO(1_000_000_000L, "1000000001");
+        AccountNumberAllocator allocator = new AccountNumberAllocator(dao, 3, false);
+
+        assertEquals(Arrays.asList("1000000000", "1000000002", "1000000003", "1000000004", "1000000005"), allocator.next(5));
+        assertEquals("1000000006", allocator.next());
+        assertEquals("1000000007", allocator.next());
+        assertEquals("1000000008", allocator.next());
+        assertEquals(Arrays.asList(5, 3, 3), dao.reserved);
+    }
+
+    @Test
+    public void appendsValidCheckDigits() {
+        AccountNumberAllocator allocator = new AccountNumberAllocator(new BlockDAO(7_992_739_871L), 10, true);
+        List<String> numbers = allocator.next(25);
+
+        assertEquals("79927398713", numbers.get(0));
+        assertEquals(25, new HashSet<>(numbers).size());
+        for (String number : numbers) {
+            assertEquals(11, number.length());
+            assertTrue(number, AccountNumberAllocator.isWellFormed(number));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void refusesBlocksPastTheLastNumber() {
+        new AccountNumberAllocator(new BlockDAO(9_999_999_998L), 3, false).next();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failsWhenNoBlockCanBeReserved() {
+        AccountDAO failing = new AccountDAO() {
+            @Override
+            public Long reserveAccountNumbers(int count) {
+                return null;
+            }
+        };
+        new AccountNumberAllocator(failing, 3, false).next();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesEmptyBlocks() {
+        new AccountNumberAllocator(new BlockDAO(1), 0, false);
+    }
+}
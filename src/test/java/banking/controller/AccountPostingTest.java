@@ -0,0 +1,156 @@
+package banking.controller;
+
+import banking.dao.AccountDAO;
+import banking.dao.TransactionDAO;
+import banking.model.Account;
+import banking.model.ChequeAccount;
+import banking.model.Customer;
+import banking.model.SavingsAccount;
+import banking.model.Transaction;
+import banking.util.TestDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static banking.util.TestDatabase.queryLong;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Deposits and withdrawals are one conditional UPDATE plus a ledger row; a refused
+// posting must leave both the balance and the ledger alone
+public class AccountPostingTest {
+    private AccountController controller;
+    private Customer customer;
+
+    @Before
+    public void openDatabase() throws SQLException {
+        TestDatabase.openMigrated();
+        TestDatabase.execute("INSERT INTO customers (customer_id, first_name, surname, email) VALUES (1, 'Kabo', 'Molefe', 'kabo@example.com')");
+        customer = new Customer(1, "Kabo", "Molefe", null, null, "kabo@example.com");
+        controller = new AccountController();
+    }
+
+    @After
+    public void closeDatabase() {
+        TestDatabase.close();
+    }
+
+    private Account open(Account account, long balance) {
+        if (balance > 0) {
+            account.deposit(balance);
+        }
+        assertTrue(new AccountDAO().createAccount(account));
+        return account;
+    }
+
+    private Account cheque(String number, long balance) {
+        return open(new ChequeAccount(number, "Main", customer, "Molefe Ltd", "Plot 1"), balance);
+    }
+
+    private Account savings(String number, long balance) {
+        return open(new SavingsAccount(number, "Main", customer), balance);
+    }
+
+    private static long balance(Account account) throws SQLException {
+        return queryLong("SELECT balance FROM accounts WHERE account_id = " + account.getAccountId());
+    }
+
+    private static long ledgerRows(Account account) throws SQLException {
+        return queryLong("SELECT COUNT(*) FROM transactions WHERE account_id = " + account.getAccountId());
+    }
+
+    private static long version(Account account) throws SQLException {
+        return queryLong("SELECT version FROM accounts WHERE account_id = " + account.getAccountId());
+    }
+
+    // Runs a posting that must be refused and checks nothing was written
+    private void assertRefused(Runnable posting, Class<? extends RuntimeException> expected, Account account) throws SQLException {
+        long before = balance(account);
+        try {
+            posting.run();
+            fail("Posting was accepted");
+        } catch (RuntimeException e) {
+            assertEquals(e.toString(), expected, e.getClass());
+        }
+        assertEquals(before, balance(account));
+        assertEquals(0, ledgerRows(account));
+        assertEquals(0, version(account));
+    }
+
+    @Test
+    public void withdrawalDebitsTheBalanceAndWritesOneLedgerRow() throws SQLException {
+        Account account = cheque("2000000001", 10_000);
+
+        assertEquals(7_500, controller.postWithdrawal("2000000001", 2_500));
+
+        assertEquals(7_500, balance(account));
+        assertEquals(1, version(account));
+        List<Transaction> ledger = new TransactionDAO().getTransactionsByAccountNumber("2000000001");
+        assertEquals(1, ledger.size());
+        assertEquals(Transaction.TransactionType.WITHDRAWAL, ledger.get(0).getType());
+        assertEquals(2_500, ledger.get(0).getAmount());
+        assertEquals(7_500, ledger.get(0).getBalanceAfter());
+        assertEquals("Withdrawal", ledger.get(0).getDescription());
+    }
+
+    @Test
+    public void withdrawalMayEmptyTheAccount() throws SQLException {
+        Account account = cheque("2000000001", 10_000);
+
+        assertEquals(0, controller.postWithdrawal("2000000001", 10_000));
+        assertEquals(0, balance(account));
+    }
+
+    @Test
+    public void withdrawalBeyondTheBalanceIsRefused() throws SQLException {
+        Account account = cheque("2000000001", 10_000);
+
+        assertRefused(() -> controller.postWithdrawal("2000000001", 10_001), IllegalArgumentException.class, account);
+    }
+
+    @Test
+    public void savingsAccountsRefuseWithdrawals() throws SQLException {
+        Account account = savings("2000000002", 10_000);
+
+        assertRefused(() -> controller.postWithdrawal("2000000002", 100), UnsupportedOperationException.class, account);
+        assertRefused(() -> controller.withdraw("2000000002", 100), UnsupportedOperationException.class, account);
+    }
+
+    @Test
+    public void inactiveAccountsRefuseEveryPosting() throws SQLException {
+        Account account = new ChequeAccount("2000000003", "Main", customer, "Molefe Ltd", "Plot 1");
+        account.deposit(10_000);
+        account.setActive(false);
+        open(account, 0);
+
+        assertRefused(() -> controller.postWithdrawal("2000000003", 100), IllegalStateException.class, account);
+        assertRefused(() -> controller.postDeposit("2000000003", 100), IllegalStateException.class, account);
+    }
+
+    @Test
+    public void refusesBadRequestsBeforePosting() throws SQLException {
+        Account account = cheque("2000000001", 10_000);
+
+        assertRefused(() -> controller.postWithdrawal("2000000001", 0), IllegalArgumentException.class, account);
+        assertRefused(() -> controller.postDeposit("2000000001", -5), IllegalArgumentException.class, account);
+        assertRefused(() -> controller.postDeposit("12345", 100), IllegalArgumentException.class, account);
+        assertRefused(() -> controller.postDeposit("2999999999", 100), IllegalArgumentException.class, account);
+    }
+
+    @Test
+    public void depositCreditsAnyActiveAccount() throws SQLException {
+        Account account = savings("2000000002", 10_000);
+
+        assertEquals(10_500, controller.postDeposit("2000000002", 500));
+        controller.deposit("2000000002", 250);
+
+        assertEquals(10_750, balance(account));
+        assertEquals(2, ledgerRows(account));
+        assertEquals(10_750, queryLong("SELECT balance_after FROM transactions WHERE account_id = " + account.getAccountId() +
+                " ORDER BY transaction_id DESC LIMIT 1"));
+    }
+}
@@ -0,0 +1,193 @@
+package banking.controller;
+
+import banking.dao.AccountDAO;
+import banking.dao.TransferDAO;
+import banking.model.Account;
+import banking.model.BatchTransferResult;
+import banking.model.ChequeAccount;
+import banking.model.Customer;
+import banking.model.PaymentLine;
+import banking.model.SavingsAccount;
+import banking.util.TestDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static banking.util.TestDatabase.queryLong;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BatchTransferTest {
+    private AccountController controller;
+    private Account source;
+    private Account cheque;
+    private Account savings;
+
+    @Before
+    public void openDatabase() throws SQLException {
+        TestDatabase.openMigrated();
+        TestDatabase.execute("INSERT INTO customers (customer_id, first_name, surname, email) VALUES (1, 'Kabo', 'Molefe', 'kabo@example.com')");
+        Customer customer = new Customer(1, "Kabo", "Molefe", null, null, "kabo@example.com");
+        controller = new AccountController();
+        source = open(new ChequeAccount("5000000001", "Main", customer, "Molefe Ltd", "Plot 1"), 100_000, true);
+        cheque = open(new ChequeAccount("5000000002", "Main", customer, "Molefe Ltd", "Plot 1"), 0, true);
+        savings = open(new SavingsAccount("5000000003", "Main", customer), 0, true);
+        open(new ChequeAccount("5000000004", "Main", customer, "Molefe Ltd", "Plot 1"), 0, false);
+    }
+
+    @After
+    public void closeDatabase() {
+        TestDatabase.close();
+    }
+
+    private static Account open(Account account, long balance, boolean active) {
+        if (balance > 0) {
+            account.deposit(balance);
+        }
+        account.setActive(active);
+        assertTrue(new AccountDAO().createAccount(account));
+        return account;
+    }
+
+    private static long balance(Account account) throws SQLException {
+        return queryLong("SELECT balance FROM accounts WHERE account_id = " + account.getAccountId());
+    }
+
+    private static long posted(List<PaymentLine> lines) {
+        long total = 0;
+        for (PaymentLine line : lines) {
+            if (line.getStatus() == PaymentLine.Status.POSTED) {
+                total += line.getAmount();
+            }
+        }
+        return total;
+    }
+
+    private void assertRefused(List<PaymentLine> lines) throws SQLException {
+        try {
+            controller.batchTransfer("5000000001", lines);
+            fail("Batch was accepted");
+        } catch (IllegalArgumentException expected) {
+            // refused before posting
+        }
+        assertEquals(100_000, balance(source));
+        assertEquals(0, queryLong("SELECT COUNT(*) FROM transfers"));
+        assertEquals(0, queryLong("SELECT COUNT(*) FROM transactions"));
+    }
+
+    @Test
+    public void postsTheGoodLinesAndRejectsTheRest() throws SQLException {
+        List<PaymentLine> lines = Arrays.asList(
+                new PaymentLine("5000000002", 1_000, "Salary"),
+                new PaymentLine("5000000004", 500, "Inactive"),
+                new PaymentLine("5000000003", 2_000, "Salary"),
+                new PaymentLine("5000000001", 100, "Self"),
+                new PaymentLine("5000000002", 0, "Nothing"),
+                new PaymentLine("12345", 100, "Malformed"),
+                new PaymentLine("5000000009", 100, "Missing"));
+
+        BatchTransferResult result = controller.batchTransfer("5000000001", lines);
+
+        assertEquals(2, result.getPostedCount());
+        assertEquals(5, result.getRejectedCount());
+        assertEquals(PaymentLine.Status.POSTED, lines.get(0).getStatus());
+        assertEquals(PaymentLine.Status.POSTED, lines.get(2).getStatus());
+        assertEquals("Account is not active", lines.get(1).getMessage());
+        assertEquals("Cannot transfer to the same account", lines.get(3).getMessage());
+        assertEquals("Transfer amount must be positive", lines.get(4).getMessage());
+        assertEquals("Invalid account number", lines.get(5).getMessage());
+        assertEquals("Account not found", lines.get(6).getMessage());
+
+        assertEquals(3_000, result.getTotalPosted());
+        assertEquals(97_000, result.getSourceBalanceAfter());
+        assertEquals(97_000, balance(source));
+        assertEquals(1_000, balance(cheque));
+        assertEquals(2_000, balance(savings));
+        assertEquals(1_000, lines.get(0).getBalanceAfter());
+        assertEquals(2, queryLong("SELECT COUNT(*) FROM transfers"));
+        assertEquals(4, queryLong("SELECT COUNT(*) FROM transactions"));
+    }
+
+    @Test
+    public void refusesABatchTheSourceCannotCover() throws SQLException {
+        assertRefused(Arrays.asList(
+                new PaymentLine("5000000002", 60_000, "Salary"),
+                new PaymentLine("5000000003", 40_001, "Salary")));
+    }
+
+    @Test
+    public void refusesABatchWhoseTotalOverflows() throws SQLException {
+        assertRefused(Arrays.asList(
+                new PaymentLine("5000000002", Long.MAX_VALUE, "Salary"),
+                new PaymentLine("5000000003", 1, "Salary")));
+    }
+
+    // 1201 lines run as chunks of 500, 500 and 201
+    @Test
+    public void postsAcrossChunkBoundaries() throws SQLException {
+        List<PaymentLine> lines = new ArrayList<>();
+        for (int i = 0; i < 1201; i++) {
+            lines.add(new PaymentLine(i % 2 == 0 ? "5000000002" : "5000000003", 10, "Line " + i));
+        }
+
+        BatchTransferResult result = controller.batchTransfer("5000000001", lines);
+
+        assertEquals(1201, result.getPostedCount());
+        assertEquals(100_000 - 12_010, result.getSourceBalanceAfter());
+        assertEquals(100_000 - 12_010, balance(source));
+        assertEquals(6_010, balance(cheque));
+        assertEquals(6_000, balance(savings));
+        // Running balances carry on from one chunk into the next
+        assertEquals(5_010, lines.get(1000).getBalanceAfter());
+        assertEquals(5_020, lines.get(1002).getBalanceAfter());
+        assertEquals(6_010, lines.get(1200).getBalanceAfter());
+        assertEquals(1201, queryLong("SELECT COUNT(*) FROM transfers"));
+        assertEquals(1201, queryLong("SELECT COUNT(DISTINCT balance_after) FROM transactions WHERE account_id = " + source.getAccountId()));
+        assertEquals(100_000 - 12_010, queryLong("SELECT MIN(balance_after) FROM transactions WHERE account_id = " + source.getAccountId()));
+    }
+
+    // Chunks that commit stay posted when a later one is refused, and the reported
+    // balance and per-line results add up to what actually left the source
+    @Test
+    public void keepsTheTotalConsistentAfterAPartialFailure() throws SQLException {
+        List<PaymentLine> lines = Arrays.asList(
+                new PaymentLine("5000000002", 40_000, "Chunk 1"),
+                new PaymentLine("5000000003", 40_000, "Chunk 1"),
+                new PaymentLine("5000000002", 30_000, "Chunk 2"),
+                new PaymentLine("5000000003", 1, "Chunk 2"),
+                new PaymentLine("5000000002", 5_000, "Chunk 3"),
+                new PaymentLine("5000000004", 5_000, "Chunk 3"));
+
+        Long balance = new TransferDAO().postBatch("5000000001", lines, 2);
+
+        assertEquals(15_000, (long) balance);
+        assertEquals(15_000, balance(source));
+        assertEquals(100_000 - balance, posted(lines));
+        assertEquals(45_000, balance(cheque));
+        assertEquals(40_000, balance(savings));
+        assertEquals("Insufficient funds in source account", lines.get(2).getMessage());
+        assertEquals("Insufficient funds in source account", lines.get(3).getMessage());
+        assertEquals("Account not found or not active", lines.get(5).getMessage());
+        assertEquals(3, queryLong("SELECT COUNT(*) FROM transfers"));
+        assertEquals(85_000, queryLong("SELECT SUM(amount) FROM transactions WHERE account_id = " + source.getAccountId()));
+    }
+
+    @Test
+    public void reportsNoBalanceWhenNoChunkCommits() throws SQLException {
+        List<PaymentLine> lines = Arrays.asList(
+                new PaymentLine("5000000002", 60_000, "Salary"),
+                new PaymentLine("5000000003", 40_001, "Salary"));
+
+        assertNull(new TransferDAO().postBatch("5000000001", lines, 2));
+        assertEquals(100_000, balance(source));
+        assertEquals(0, posted(lines));
+        assertEquals(0, queryLong("SELECT COUNT(*) FROM transfers"));
+    }
+}
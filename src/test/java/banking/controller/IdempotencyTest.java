@@ -0,0 +1,156 @@
+package banking.controller;
+
+import banking.dao.AccountDAO;
+import banking.dao.IdempotencyDAO;
+import banking.model.Account;
+import banking.model.ChequeAccount;
+import banking.model.Customer;
+import banking.model.Transfer;
+import banking.util.DatabaseUtil;
+import banking.util.TestDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import static banking.util.TestDatabase.queryLong;
+import static banking.util.TestDatabase.queryString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IdempotencyTest {
+    private AccountController controller;
+    private Account account;
+    private Account other;
+
+    @Before
+    public void openDatabase() throws SQLException {
+        TestDatabase.openMigrated();
+        TestDatabase.execute("INSERT INTO customers (customer_id, first_name, surname, email) VALUES (1, 'Kabo', 'Molefe', 'kabo@example.com')");
+        Customer customer = new Customer(1, "Kabo", "Molefe", null, null, "kabo@example.com");
+        controller = new AccountController();
+        account = open(new ChequeAccount("4000000001", "Main", customer, "Molefe Ltd", "Plot 1"));
+        other = open(new ChequeAccount("4000000002", "Main", customer, "Molefe Ltd", "Plot 1"));
+    }
+
+    @After
+    public void closeDatabase() {
+        TestDatabase.close();
+    }
+
+    private static Account open(Account account) {
+        account.deposit(10_000);
+        assertTrue(new AccountDAO().createAccount(account));
+        return account;
+    }
+
+    private static long balance(Account account) throws SQLException {
+        return queryLong("SELECT balance FROM accounts WHERE account_id = " + account.getAccountId());
+    }
+
+    private static long ledgerRows() throws SQLException {
+        return queryLong("SELECT COUNT(*) FROM transactions");
+    }
+
+    private static void assertConflict(Runnable posting) {
+        try {
+            posting.run();
+            fail("Key was reused for a different request");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("different request"));
+        }
+    }
+
+    @Test
+    public void repeatedDepositReturnsTheFirstResult() throws SQLException {
+        assertEquals(10_500, controller.postDeposit("4000000001", 500, "deposit-replay"));
+        assertEquals(10_500, controller.postDeposit("4000000001", 500, "deposit-replay"));
+
+        assertEquals(10_500, balance(account));
+        assertEquals(1, ledgerRows());
+        assertEquals(1, queryLong("SELECT COUNT(*) FROM idempotency_keys WHERE idempotency_key = 'deposit-replay'"));
+    }
+
+    @Test
+    public void keyReusedForADifferentRequestIsRefused() throws SQLException {
+        controller.postDeposit("4000000001", 500, "deposit-conflict");
+
+        assertConflict(() -> controller.postDeposit("4000000001", 600, "deposit-conflict"));
+        assertConflict(() -> controller.postDeposit("4000000002", 500, "deposit-conflict"));
+        assertConflict(() -> controller.postWithdrawal("4000000001", 500, "deposit-conflict"));
+        assertEquals(10_500, balance(account));
+        assertEquals(10_000, balance(other));
+        assertEquals(1, ledgerRows());
+    }
+
+    @Test
+    public void repeatedTransferReturnsTheSameTransfer() throws SQLException {
+        Transfer first = controller.transfer("4000000001", "4000000002", 1_000, "Rent", "transfer-replay");
+        Transfer again = controller.transfer("4000000001", "4000000002", 1_000, "Rent", "transfer-replay");
+
+        assertEquals(first.getTransferId(), again.getTransferId());
+        assertEquals(9_000, balance(account));
+        assertEquals(11_000, balance(other));
+        assertEquals(1, queryLong("SELECT COUNT(*) FROM transfers"));
+        assertEquals(2, ledgerRows());
+        assertConflict(() -> controller.transfer("4000000002", "4000000001", 1_000, "Rent", "transfer-replay"));
+    }
+
+    // A key recorded by another workstation is only in the database, not in this process's cache
+    @Test
+    public void replaysAKeyFoundInTheDatabase() throws SQLException {
+        TestDatabase.execute("INSERT INTO idempotency_keys (idempotency_key, request, result, created_at) VALUES " +
+                "('deposit-elsewhere', '" + IdempotencyDAO.describe("DEPOSIT", "4000000001", 500) + "', '12345', " +
+                System.currentTimeMillis() + ")");
+
+        assertEquals(12_345, controller.postDeposit("4000000001", 500, "deposit-elsewhere"));
+        assertEquals(10_000, balance(account));
+        assertEquals(0, ledgerRows());
+    }
+
+    // Past the retention period a key is not replayed even if maintenance has not purged it yet
+    @Test
+    public void expiredKeyPostsAgain() throws SQLException {
+        long expired = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(
+                DatabaseUtil.getProfile().getIdempotencyRetentionHours() + 1);
+        TestDatabase.execute("INSERT INTO idempotency_keys (idempotency_key, request, result, created_at) VALUES " +
+                "('deposit-expired', '" + IdempotencyDAO.describe("DEPOSIT", "4000000001", 900) + "', '12345', " + expired + ")");
+
+        assertEquals(10_500, controller.postDeposit("4000000001", 500, "deposit-expired"));
+
+        assertEquals(1, ledgerRows());
+        assertEquals(IdempotencyDAO.describe("DEPOSIT", "4000000001", 500),
+                queryString("SELECT request FROM idempotency_keys WHERE idempotency_key = 'deposit-expired'"));
+        assertTrue(queryLong("SELECT created_at FROM idempotency_keys WHERE idempotency_key = 'deposit-expired'") > expired);
+    }
+
+    // The recent-key cache outlives a database; TestDatabase clears it with each new one
+    @Test
+    public void keyFromAnEarlierDatabaseIsNotReplayed() throws SQLException {
+        controller.postDeposit("4000000001", 500, "deposit-earlier-database");
+        openDatabase();
+
+        assertEquals(10_700, controller.postDeposit("4000000001", 700, "deposit-earlier-database"));
+        assertEquals(1, ledgerRows());
+    }
+
+    @Test
+    public void refusesMalformedKeys() throws SQLException {
+        StringBuilder tooLong = new StringBuilder();
+        for (int i = 0; i <= IdempotencyDAO.MAX_KEY_LENGTH; i++) {
+            tooLong.append('k');
+        }
+        for (String key : new String[]{"", "   ", tooLong.toString()}) {
+            try {
+                controller.postDeposit("4000000001", 500, key);
+                fail("Accepted key '" + key + "'");
+            } catch (IllegalArgumentException expected) {
+                // refused before posting
+            }
+        }
+        assertEquals(0, ledgerRows());
+    }
+}
@@ -0,0 +1,298 @@
+package banking.controller;
+
+import banking.dao.AccountDAO;
+import banking.dao.InterestRunDAO;
+import banking.dao.ProductRuleDAO;
+import banking.model.Account;
+import banking.model.ChequeAccount;
+import banking.model.Customer;
+import banking.model.InterestRunResult;
+import banking.model.InvestmentAccount;
+import banking.model.SavingsAccount;
+import banking.util.TestDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static banking.util.TestDatabase.queryLong;
+import static banking.util.TestDatabase.queryString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Pays last month, with every balance held since its first day, so each account's
+// interest is its balance times the seeded monthly rate: 500 on a 1_000_000 savings
+// balance, 5_000 on a 100_000 investment.
+public class InterestEngineTest {
+    private static final YearMonth PERIOD = YearMonth.now().minusMonths(1);
+    private static final long SAVINGS_BALANCE = 1_000_000;
+    private static final long SAVINGS_INTEREST = 500;
+    private static final long INVESTMENT_BALANCE = 100_000;
+    private static final long INVESTMENT_INTEREST = 5_000;
+
+    private Customer customer;
+
+    @Before
+    public void openDatabase() throws SQLException {
+        TestDatabase.openMigrated();
+        TestDatabase.execute("INSERT INTO customers (customer_id, first_name, surname, email) VALUES (1, 'Kabo', 'Molefe', 'kabo@example.com')");
+        customer = new Customer(1, "Kabo", "Molefe", null, null, "kabo@example.com");
+    }
+
+    @After
+    public void closeDatabase() {
+        TestDatabase.close();
+    }
+
+    // Six savings accounts, one investment, one cheque (no interest) and one inactive
+    private void openBook() throws SQLException {
+        for (int i = 1; i <= 6; i++) {
+            open(new SavingsAccount("600000000" + i, "Main", customer), SAVINGS_BALANCE, true);
+        }
+        open(new InvestmentAccount("6000000007", "Main", customer, INVESTMENT_BALANCE), 0, true);
+        open(new ChequeAccount("6000000008", "Main", customer, "Molefe Ltd", "Plot 1"), SAVINGS_BALANCE, true);
+        open(new SavingsAccount("6000000009", "Main", customer), SAVINGS_BALANCE, false);
+    }
+
+    private static void open(Account account, long balance, boolean active) throws SQLException {
+        if (balance > 0) {
+            account.deposit(balance);
+        }
+        account.setActive(active);
+        assertTrue(new AccountDAO().createAccount(account));
+        TestDatabase.execute("UPDATE accounts SET accrued_through = " + PERIOD.atDay(1).toEpochDay() +
+                " WHERE account_id = " + account.getAccountId());
+    }
+
+    private static InterestEngine engine(AccountDAO accountDAO, int chunkSize) {
+        return new InterestEngine(accountDAO, new InterestRunDAO(), new ProductRuleEngine(new ProductRuleDAO()),
+                PERIOD, 4, chunkSize);
+    }
+
+    private static long balance(String accountNumber) throws SQLException {
+        return queryLong("SELECT balance FROM accounts WHERE account_number = '" + accountNumber + "'");
+    }
+
+    private static long interestRows(String accountNumber) throws SQLException {
+        return queryLong("SELECT COUNT(*) FROM transactions t JOIN accounts a ON a.account_id = t.account_id " +
+                "WHERE t.type_code = 3 AND a.account_number = '" + accountNumber + "'");
+    }
+
+    private static String paidPeriod(String accountNumber) throws SQLException {
+        return queryString("SELECT last_interest_period FROM accounts WHERE account_number = '" + accountNumber + "'");
+    }
+
+    private static String runStatus() throws SQLException {
+        return queryString("SELECT status FROM interest_runs WHERE period = '" + PERIOD + "'");
+    }
+
+    private static void assertPaidOnce(String accountNumber, long expectedBalance) throws SQLException {
+        assertEquals(accountNumber, expectedBalance, balance(accountNumber));
+        assertEquals(accountNumber, 1, interestRows(accountNumber));
+        assertEquals(accountNumber, PERIOD.toString(), paidPeriod(accountNumber));
+    }
+
+    @Test
+    public void dryRunLeavesBalancesUnchanged() throws SQLException {
+        openBook();
+
+        InterestRunResult result = engine(new AccountDAO(), 2).run(true, null);
+
+        assertTrue(result.isDryRun());
+        assertTrue(result.isFinished());
+        assertEquals(7, result.getCredited());
+        assertEquals(6 * SAVINGS_INTEREST + INVESTMENT_INTEREST, result.getTotalInterest());
+        assertEquals(6 * SAVINGS_BALANCE + INVESTMENT_BALANCE + 2 * SAVINGS_BALANCE,
+                queryLong("SELECT SUM(balance) FROM accounts"));
+        assertEquals(0, queryLong("SELECT COUNT(*) FROM transactions"));
+        assertEquals(0, queryLong("SELECT COUNT(*) FROM interest_runs"));
+        assertEquals(0, queryLong("SELECT COUNT(*) FROM accounts WHERE last_interest_period IS NOT NULL"));
+    }
+
+    @Test
+    public void paysEachDueAccountExactlyOnce() throws SQLException {
+        openBook();
+
+        InterestRunResult result = engine(new AccountDAO(), 2).run(false, null);
+
+        assertFalse(result.isCancelled());
+        assertEquals(7, result.getCredited());
+        assertEquals(0, result.getFailed());
+        assertEquals(6 * SAVINGS_INTEREST + INVESTMENT_INTEREST, result.getTotalInterest());
+        for (int i = 1; i <= 6; i++) {
+            assertPaidOnce("600000000" + i, SAVINGS_BALANCE + SAVINGS_INTEREST);
+        }
+        assertPaidOnce("6000000007", INVESTMENT_BALANCE + INVESTMENT_INTEREST);
+        assertEquals(SAVINGS_BALANCE, balance("6000000008"));
+        assertEquals(0, interestRows("6000000008"));
+        assertEquals(SAVINGS_BALANCE, balance("6000000009"));
+        assertNull(paidPeriod("6000000009"));
+        assertEquals(SAVINGS_BALANCE + SAVINGS_INTEREST,
+                queryLong("SELECT balance_after FROM transactions WHERE type_code = 3 ORDER BY transaction_id LIMIT 1"));
+
+        assertEquals("COMPLETED", runStatus());
+        assertEquals(7, queryLong("SELECT accounts_credited FROM interest_runs"));
+        assertEquals(7, queryLong("SELECT SUM(credited) FROM interest_run_chunks"));
+
+        try {
+            engine(new AccountDAO(), 2).run(false, null);
+            fail("Paid the period twice");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("already been paid"));
+        }
+        assertEquals(7, queryLong("SELECT COUNT(*) FROM transactions"));
+    }
+
+    // A teller deposit lands after the engine read the account, so its version-checked
+    // update misses, and the account is reloaded and paid on its new balance
+    @Test
+    public void reloadsAnAccountChangedMidRun() throws SQLException {
+        openBook();
+        long conflictsBefore = AccountDAO.getVersionConflicts();
+
+        InterestRunResult result = engine(new TellerDAO("6000000003", 1, 50_000), 2).run(false, null);
+
+        assertEquals(7, result.getCredited());
+        assertEquals(0, result.getFailed());
+        assertTrue(AccountDAO.getVersionConflicts() > conflictsBefore);
+        assertPaidOnce("6000000003", SAVINGS_BALANCE + 50_000 + SAVINGS_INTEREST);
+        assertPaidOnce("6000000004", SAVINGS_BALANCE + SAVINGS_INTEREST);
+        assertEquals("COMPLETED", runStatus());
+    }
+
+    // An account that changes on every reload is given up on after the last conflict
+    // round; the run stops short, and resuming it pays only that account
+    @Test
+    public void stopsWhenAnAccountKeepsChanging() throws SQLException {
+        openBook();
+
+        InterestRunResult result = engine(new TellerDAO("6000000001", Integer.MAX_VALUE, 1_000), 2).run(false, null);
+
+        assertEquals(6, result.getCredited());
+        assertEquals(1, result.getFailed());
+        assertEquals("STOPPED", runStatus());
+        assertEquals(0, interestRows("6000000001"));
+        assertNull(paidPeriod("6000000001"));
+        assertPaidOnce("6000000002", SAVINGS_BALANCE + SAVINGS_INTEREST);
+        long changed = balance("6000000001");
+        assertTrue(changed > SAVINGS_BALANCE);
+
+        InterestRunResult resumed = engine(new AccountDAO(), 2).run(false, null);
+
+        assertEquals(1, resumed.getCredited());
+        assertEquals("COMPLETED", runStatus());
+        assertPaidOnce("6000000001", changed + SAVINGS_INTEREST);
+        assertEquals(7, queryLong("SELECT COUNT(*) FROM transactions WHERE type_code = 3"));
+    }
+
+    // Forty savings accounts, 6000000010 to 6000000049
+    private void openSavings() throws SQLException {
+        for (int i = 10; i < 50; i++) {
+            open(new SavingsAccount("60000000" + i, "Main", customer), SAVINGS_BALANCE, true);
+        }
+    }
+
+    // Cancels a run of chunks of two after its first chunk is written
+    private static InterestRunResult cancelAfterFirstChunk() {
+        InterestEngine engine = engine(new AccountDAO(), 2);
+        return engine.run(false, progress -> engine.cancel());
+    }
+
+    private static void assertEverySavingsAccountPaidOnce() throws SQLException {
+        for (int i = 10; i < 50; i++) {
+            assertPaidOnce("60000000" + i, SAVINGS_BALANCE + SAVINGS_INTEREST);
+        }
+        assertEquals(40, queryLong("SELECT COUNT(*) FROM transactions WHERE type_code = 3"));
+    }
+
+    @Test
+    public void cancelStopsBetweenChunks() throws SQLException {
+        openSavings();
+        InterestEngine engine = engine(new AccountDAO(), 2);
+
+        InterestRunResult result = engine.run(false, progress -> engine.cancel());
+
+        assertTrue(result.isCancelled());
+        assertTrue(engine.isCancelled());
+        assertTrue(String.valueOf(result.getCredited()), result.getCredited() >= 2 && result.getCredited() < 40);
+        assertEquals("STOPPED", runStatus());
+        assertEquals(result.getCredited(), queryLong("SELECT COUNT(*) FROM transactions WHERE type_code = 3"));
+        assertEquals(result.getCredited(), queryLong("SELECT COUNT(*) FROM accounts WHERE last_interest_period = '" + PERIOD + "'"));
+        assertEquals(result.getCredited() * (SAVINGS_BALANCE + SAVINGS_INTEREST) + (40 - result.getCredited()) * SAVINGS_BALANCE,
+                queryLong("SELECT SUM(balance) FROM accounts"));
+    }
+
+    @Test
+    public void resumesACancelledRunWithoutPayingTwice() throws SQLException {
+        openSavings();
+        long paidFirst = cancelAfterFirstChunk().getCredited();
+
+        InterestRunResult resumed = engine(new AccountDAO(), 2).run(false, null);
+
+        assertFalse(resumed.isCancelled());
+        assertEquals(40 - paidFirst, resumed.getCredited());
+        assertEquals("COMPLETED", runStatus());
+        assertEverySavingsAccountPaidOnce();
+        // The run's totals cover both attempts, and the second carried on the chunk numbering
+        assertEquals(40, queryLong("SELECT accounts_credited FROM interest_runs"));
+        assertEquals(40 * SAVINGS_INTEREST, queryLong("SELECT total_interest FROM interest_runs"));
+        assertEquals(queryLong("SELECT COUNT(*) FROM interest_run_chunks"),
+                queryLong("SELECT COUNT(DISTINCT chunk_no) FROM interest_run_chunks"));
+    }
+
+    // A workstation that died mid-run leaves it RUNNING, possibly with chunks written to
+    // the accounts but never logged. Its run is left alone while the lease is fresh, then
+    // taken over from the start, which skips the accounts already marked paid.
+    @Test
+    public void takesOverACrashedRunWithoutPayingTwice() throws SQLException {
+        openSavings();
+        long paidFirst = cancelAfterFirstChunk().getCredited();
+        TestDatabase.execute(
+                "DELETE FROM interest_run_chunks",
+                "UPDATE interest_runs SET status = 'RUNNING', resume_after = NULL, heartbeat_at = " + System.currentTimeMillis());
+
+        try {
+            engine(new AccountDAO(), 2).run(false, null);
+            fail("Took over a run whose lease has not expired");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("another workstation"));
+        }
+
+        TestDatabase.execute("UPDATE interest_runs SET heartbeat_at = 0");
+        InterestRunResult resumed = engine(new AccountDAO(), 2).run(false, null);
+
+        assertEquals(40 - paidFirst, resumed.getCredited());
+        assertEquals("COMPLETED", runStatus());
+        assertEverySavingsAccountPaidOnce();
+    }
+
+    // Posts a teller deposit to one account each time the engine is about to price it,
+    // up to the given number of times
+    private static class TellerDAO extends AccountDAO {
+        private final String accountNumber;
+        private final AtomicInteger deposits;
+        private final long amount;
+
+        TellerDAO(String accountNumber, int deposits, long amount) {
+            this.accountNumber = accountNumber;
+            this.deposits = new AtomicInteger(deposits);
+            this.amount = amount;
+        }
+
+        @Override
+        public Map<String, Long> getInterestBalanceDays(Collection<String> accountNumbers, YearMonth period) {
+            if (accountNumbers.contains(accountNumber) && deposits.getAndDecrement() > 0) {
+                new AccountController().postDeposit(accountNumber, amount);
+            }
+            return super.getInterestBalanceDays(accountNumbers, period);
+        }
+    }
+}
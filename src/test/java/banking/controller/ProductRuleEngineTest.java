@@ -0,0 +1,197 @@
+package banking.controller;
+
+import banking.dao.ProductRuleDAO;
+import banking.model.ChequeAccount;
+import banking.model.InvestmentAccount;
+import banking.model.ProductRule;
+import banking.model.SavingsAccount;
+import banking.util.TestDatabase;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ProductRuleEngineTest {
+    private static final YearMonth NOVEMBER = YearMonth.of(2026, 11);
+    private static final YearMonth DECEMBER = YearMonth.of(2026, 12);
+
+    // Serves a rule list under a version the test can change
+    private static class StubRuleDAO extends ProductRuleDAO {
+        private List<ProductRule> rules;
+        private Long version = 1L;
+        private int loads;
+
+        StubRuleDAO(ProductRule... rules) {
+            this.rules = numbered(rules);
+        }
+
+        @Override
+        public List<ProductRule> getAllRules() {
+            loads++;
+            return rules;
+        }
+
+        @Override
+        public Long getRulesVersion() {
+            return version;
+        }
+    }
+
+    private static List<ProductRule> numbered(ProductRule... rules) {
+        List<ProductRule> list = new ArrayList<>(Arrays.asList(rules));
+        for (int i = 0; i < list.size(); i++) {
+            list.get(i).setRuleId(i + 1);
+        }
+        return list;
+    }
+
+    private static ProductRule promotional(ProductRule rule, String from, String to) {
+        rule.setValidFrom(from);
+        rule.setValidTo(to);
+        return rule;
+    }
+
+    @Test
+    public void picksTheHighestBandAtOrBelowTheAverageBalance() {
+        ProductRules rules = ProductRules.compile(numbered(
+                ProductRule.rate(SavingsAccount.TYPE, 100_000, 0.001),
+                ProductRule.rate(SavingsAccount.TYPE, 0, 0.0005)), NOVEMBER);
+        SavingsAccount savings = new SavingsAccount();
+
+        // 30 days at BWP 2000 and at BWP 500
+        assertEquals(200, rules.interest(savings, 200_000L * 30, 30));
+        assertEquals(25, rules.interest(savings, 50_000L * 30, 30));
+        // Averages exactly on a floor take that band
+        assertEquals(100, rules.interest(savings, 100_000L * 30, 30));
+        assertEquals(0, rules.interest(savings, 0, 30));
+        assertEquals(0, rules.interest(savings, -5_000, 30));
+    }
+
+    @Test
+    public void roundsInterestOnceHalfEven() {
+        ProductRules rules = ProductRules.compile(numbered(ProductRule.rate(SavingsAccount.TYPE, 0, 0.5)), NOVEMBER);
+        SavingsAccount savings = new SavingsAccount();
+
+        // An average of 1001 thebe over 30 days earns 500.5, an average of 1003 earns 501.5
+        assertEquals(500, rules.interest(savings, 1001L * 30, 30));
+        assertEquals(502, rules.interest(savings, 1003L * 30, 30));
+    }
+
+    @Test
+    public void chargesFeesByProduct() {
+        ProductRules rules = ProductRules.compile(numbered(
+                ProductRule.fee("Cheque Account", 0, 2500),
+                ProductRule.fee("Cheque Account", 500_000, 0),
+                ProductRule.fee("Investment Account", 0, 1000)), NOVEMBER);
+
+        assertEquals(2500, rules.monthlyFee(new ChequeAccount(), 499_999L * 30, 30));
+        assertEquals(0, rules.monthlyFee(new ChequeAccount(), 500_000L * 30, 30));
+        assertEquals(1000, rules.monthlyFee(new InvestmentAccount(), 0, 30));
+        assertEquals(0, rules.monthlyFee(new SavingsAccount(), 0, 30));
+        assertEquals(0, rules.interest(new ChequeAccount(), 100_000L * 30, 30));
+    }
+
+    @Test
+    public void promotionalBandsReplaceStandardOnesInTheirPeriod() {
+        List<ProductRule> list = numbered(
+                ProductRule.rate(SavingsAccount.TYPE, 0, 0.0005),
+                ProductRule.rate(SavingsAccount.TYPE, 100_000, 0.001),
+                promotional(ProductRule.rate(SavingsAccount.TYPE, 0, 0.002), "2026-12", "2026-12"));
+        SavingsAccount savings = new SavingsAccount();
+
+        assertEquals(200, ProductRules.compile(list, NOVEMBER).interest(savings, 200_000L * 30, 30));
+        assertEquals(400, ProductRules.compile(list, DECEMBER).interest(savings, 200_000L * 30, 30));
+    }
+
+    @Test
+    public void laterRuleWinsOnASharedFloor() {
+        ProductRules rules = ProductRules.compile(numbered(
+                ProductRule.rate(SavingsAccount.TYPE, 0, 0.0005),
+                ProductRule.rate(SavingsAccount.TYPE, 0, 0.001)), NOVEMBER);
+
+        assertEquals(100, rules.interest(new SavingsAccount(), 100_000L * 30, 30));
+    }
+
+    @Test
+    public void compilesOncePerPeriodAndVersion() {
+        StubRuleDAO dao = new StubRuleDAO(ProductRule.rate(SavingsAccount.TYPE, 0, 0.0005));
+        ProductRuleEngine engine = new ProductRuleEngine(dao);
+
+        ProductRules november = engine.forPeriod(NOVEMBER);
+        assertSame(november, engine.forPeriod(NOVEMBER));
+        assertNotSame(november, engine.forPeriod(DECEMBER));
+        assertEquals(1, dao.loads);
+
+        // Same version: a forced check does not reload
+        engine.reload();
+        assertSame(november, engine.forPeriod(NOVEMBER));
+        assertEquals(1, dao.loads);
+    }
+
+    @Test
+    public void reloadsWhenTheVersionChanges() {
+        StubRuleDAO dao = new StubRuleDAO(ProductRule.rate(SavingsAccount.TYPE, 0, 0.0005));
+        ProductRuleEngine engine = new ProductRuleEngine(dao);
+        assertEquals(50, engine.forPeriod(NOVEMBER).interest(new SavingsAccount(), 100_000L * 30, 30));
+
+        dao.rules = numbered(ProductRule.rate(SavingsAccount.TYPE, 0, 0.001));
+        dao.version = 2L;
+        // Still within the check interval
+        assertEquals(50, engine.forPeriod(NOVEMBER).interest(new SavingsAccount(), 100_000L * 30, 30));
+
+        engine.reload();
+        assertEquals(100, engine.forPeriod(NOVEMBER).interest(new SavingsAccount(), 100_000L * 30, 30));
+        assertEquals(2, dao.loads);
+    }
+
+    @Test
+    public void keepsTheLoadedRulesWhenTheVersionCannotBeRead() {
+        StubRuleDAO dao = new StubRuleDAO(ProductRule.rate(SavingsAccount.TYPE, 0, 0.0005));
+        ProductRuleEngine engine = new ProductRuleEngine(dao);
+        ProductRules november = engine.forPeriod(NOVEMBER);
+
+        dao.version = null;
+        engine.reload();
+        assertSame(november, engine.forPeriod(NOVEMBER));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failsWhenRulesWereNeverLoaded() {
+        StubRuleDAO dao = new StubRuleDAO();
+        dao.version = null;
+        new ProductRuleEngine(dao).forPeriod(NOVEMBER);
+    }
+
+    // An edit from a workstation whose clock runs behind leaves updated_at older than the
+    // rules already loaded; the version still moves, so the change is picked up
+    @Test
+    public void picksUpARuleEditedWithAnOlderClock() throws SQLException {
+        TestDatabase.openMigrated();
+        try {
+            ProductRuleDAO dao = new ProductRuleDAO();
+            ProductRuleEngine engine = new ProductRuleEngine(dao);
+            assertEquals(50, engine.forPeriod(NOVEMBER).interest(new SavingsAccount(), 100_000L * 30, 30));
+            long before = dao.getRulesVersion();
+
+            TestDatabase.execute("UPDATE product_rules SET rate = 0.001, updated_at = 0 WHERE account_type = '" + SavingsAccount.TYPE + "'");
+            assertEquals(before + 1, (long) dao.getRulesVersion());
+            engine.reload();
+            assertEquals(100, engine.forPeriod(NOVEMBER).interest(new SavingsAccount(), 100_000L * 30, 30));
+
+            ProductRule rule = ProductRule.rate(new ChequeAccount().getAccountType(), 0, 0.0001);
+            assertTrue(dao.saveRule(rule));
+            assertTrue(dao.deleteRule(rule.getRuleId()));
+            assertEquals(before + 3, (long) dao.getRulesVersion());
+        } finally {
+            TestDatabase.close();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package banking.controller;
+
+import banking.dao.AccountDAO;
+import banking.model.Account;
+import banking.model.ChequeAccount;
+import banking.model.Customer;
+import banking.model.SavingsAccount;
+import banking.model.Transaction;
+import banking.model.Transfer;
+import banking.util.TestDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static banking.util.TestDatabase.queryLong;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Both balances, the transfer row and its two ledger legs commit together or not at all
+public class TransferTest {
+    private AccountController controller;
+    private Customer customer;
+    private Account source;
+    private Account destination;
+
+    @Before
+    public void openDatabase() throws SQLException {
+        TestDatabase.openMigrated();
+        TestDatabase.execute("INSERT INTO customers (customer_id, first_name, surname, email) VALUES (1, 'Kabo', 'Molefe', 'kabo@example.com')");
+        customer = new Customer(1, "Kabo", "Molefe", null, null, "kabo@example.com");
+        controller = new AccountController();
+        source = open(new ChequeAccount("3000000001", "Main", customer, "Molefe Ltd", "Plot 1"), 10_000, true);
+        destination = open(new SavingsAccount("3000000002", "Main", customer), 2_000, true);
+    }
+
+    @After
+    public void closeDatabase() {
+        TestDatabase.close();
+    }
+
+    private Account open(Account account, long balance, boolean active) {
+        if (balance > 0) {
+            account.deposit(balance);
+        }
+        account.setActive(active);
+        assertTrue(new AccountDAO().createAccount(account));
+        return account;
+    }
+
+    private static long balance(Account account) throws SQLException {
+        return queryLong("SELECT balance FROM accounts WHERE account_id = " + account.getAccountId());
+    }
+
+    // Runs a transfer that must be refused and checks that nothing at all was written
+    private void assertRefused(String from, String to, long amount, Class<? extends RuntimeException> expected) throws SQLException {
+        long sourceBalance = balance(source);
+        long destinationBalance = balance(destination);
+        try {
+            controller.transfer(from, to, amount, "Rent");
+            fail("Transfer was accepted");
+        } catch (RuntimeException e) {
+            assertEquals(e.toString(), expected, e.getClass());
+        }
+        assertEquals(sourceBalance, balance(source));
+        assertEquals(destinationBalance, balance(destination));
+        assertEquals(0, queryLong("SELECT COUNT(*) FROM transfers"));
+        assertEquals(0, queryLong("SELECT COUNT(*) FROM transactions"));
+    }
+
+    @Test
+    public void movesMoneyWithTwoLinkedLedgerRows() throws SQLException {
+        Transfer transfer = controller.transfer("3000000001", "3000000002", 2_500, "Rent");
+
+        assertEquals(7_500, balance(source));
+        assertEquals(4_500, balance(destination));
+        assertEquals(7_500, transfer.getFromBalanceAfter());
+        assertEquals(4_500, transfer.getToBalanceAfter());
+        assertEquals(1, queryLong("SELECT COUNT(*) FROM transfers"));
+        assertEquals(source.getAccountId(), queryLong("SELECT from_account_id FROM transfers WHERE transfer_id = " + transfer.getTransferId()));
+        assertEquals(destination.getAccountId(), queryLong("SELECT to_account_id FROM transfers WHERE transfer_id = " + transfer.getTransferId()));
+
+        List<Transaction> legs = controller.getTransferTransactions(transfer.getTransferId());
+        assertEquals(2, legs.size());
+        for (Transaction leg : legs) {
+            assertEquals(2_500, leg.getAmount());
+            if (leg.getType() == Transaction.TransactionType.TRANSFER_OUT) {
+                assertEquals(source.getAccountId(), leg.getAccountId());
+                assertEquals(7_500, leg.getBalanceAfter());
+            } else {
+                assertEquals(Transaction.TransactionType.TRANSFER_IN, leg.getType());
+                assertEquals(destination.getAccountId(), leg.getAccountId());
+                assertEquals(4_500, leg.getBalanceAfter());
+            }
+        }
+        assertEquals(0, queryLong("SELECT COUNT(*) FROM transactions WHERE transfer_id IS NOT " + transfer.getTransferId()));
+    }
+
+    @Test
+    public void refusesAnOverdraftWithoutWritingAnything() throws SQLException {
+        assertRefused("3000000001", "3000000002", 10_001, IllegalArgumentException.class);
+    }
+
+    // The debit succeeds inside the transaction before the credit fails; it must be rolled back
+    @Test
+    public void rollsBackTheDebitWhenTheCreditIsRefused() throws SQLException {
+        open(new ChequeAccount("3000000003", "Main", customer, "Molefe Ltd", "Plot 1"), 0, false);
+
+        assertRefused("3000000001", "3000000003", 1_000, IllegalStateException.class);
+        assertRefused("3000000001", "3000000009", 1_000, IllegalArgumentException.class);
+        assertEquals(0, queryLong("SELECT version FROM accounts WHERE account_id = " + source.getAccountId()));
+    }
+
+    @Test
+    public void refusesTransfersOutOfSavings() throws SQLException {
+        assertRefused("3000000002", "3000000001", 100, UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void refusesBadRequests() throws SQLException {
+        assertRefused("3000000001", "3000000001", 100, IllegalArgumentException.class);
+        assertRefused("3000000001", "3000000002", 0, IllegalArgumentException.class);
+        assertRefused("3000000001", "300000000", 100, IllegalArgumentException.class);
+        assertRefused(null, "3000000002", 100, IllegalArgumentException.class);
+    }
+}
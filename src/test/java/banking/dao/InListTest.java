@@ -0,0 +1,68 @@
+package banking.dao;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InListTest {
+
+    @Test
+    public void padsToTheSmallestFixedSize() {
+        List<List<String>> chunks = InList.chunks(Arrays.asList("a", "b", "c"));
+
+        assertEquals(1, chunks.size());
+        assertEquals(Arrays.asList("a", "b", "c", "c", "c", "c", "c", "c"), chunks.get(0));
+        assertEquals(64, InList.chunks(numbers(9)).get(0).size());
+        assertEquals(512, InList.chunks(numbers(65)).get(0).size());
+    }
+
+    @Test
+    public void dropsDuplicatesAndNullsKeepingOrder() {
+        List<List<Integer>> chunks = InList.chunks(Arrays.asList(3, null, 1, 3, 2, 1, null));
+
+        assertEquals(Arrays.asList(3, 1, 2, 2, 2, 2, 2, 2), chunks.get(0));
+    }
+
+    @Test
+    public void splitsLargeKeySetsIntoPaddedChunks() {
+        List<Integer> keys = numbers(1100);
+        List<List<Integer>> chunks = InList.chunks(keys);
+
+        assertEquals(3, chunks.size());
+        assertEquals(512, chunks.get(0).size());
+        assertEquals(512, chunks.get(1).size());
+        assertEquals(512, chunks.get(2).size());
+        LinkedHashSet<Integer> seen = new LinkedHashSet<>();
+        for (List<Integer> chunk : chunks) {
+            seen.addAll(chunk);
+        }
+        assertEquals(keys, new ArrayList<>(seen));
+    }
+
+    @Test
+    public void hasNoChunksForNoKeys() {
+        assertTrue(InList.chunks(Collections.<String>emptyList()).isEmpty());
+        assertTrue(InList.chunks(Collections.<String>singletonList(null)).isEmpty());
+    }
+
+    @Test
+    public void writesOnePlaceholderPerKey() {
+        assertEquals("?", InList.placeholders(1));
+        assertEquals("?, ?, ?", InList.placeholders(3));
+    }
+
+    private static List<Integer> numbers(int count) {
+        List<Integer> numbers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            numbers.add(i);
+        }
+        return numbers;
+    }
+}
@@ -0,0 +1,152 @@
+package banking.dao;
+
+import banking.model.Account;
+import banking.model.ChequeAccount;
+import banking.model.Customer;
+import banking.util.DatabaseUtil;
+import banking.util.TestDatabase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static banking.util.TestDatabase.queryLong;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Balance-days worked by hand over April 2024 (30 days). Postings are replayed on the
+// days they were made: each rolls the account forward to that day, then changes the
+// balance, as AccountDAO's postings do.
+public class InterestAccrualsTest {
+    private static final YearMonth APRIL = YearMonth.of(2024, 4);
+    private static final YearMonth MAY = YearMonth.of(2024, 5);
+
+    @Before
+    public void openDatabase() throws SQLException {
+        TestDatabase.openMigrated();
+        TestDatabase.execute("INSERT INTO customers (customer_id, first_name, surname, email) VALUES (1, 'Kabo', 'Molefe', 'kabo@example.com')");
+        Customer customer = new Customer(1, "Kabo", "Molefe", null, null, "kabo@example.com");
+        open(new ChequeAccount("7000000001", "Main", customer, "Molefe Ltd", "Plot 1"));
+        open(new ChequeAccount("7000000002", "Main", customer, "Molefe Ltd", "Plot 1"));
+    }
+
+    @After
+    public void closeDatabase() {
+        TestDatabase.close();
+    }
+
+    // 10_000 held from 1 April
+    private static void open(Account account) throws SQLException {
+        account.deposit(10_000);
+        assertTrue(new AccountDAO().createAccount(account));
+        TestDatabase.execute("UPDATE accounts SET accrued_through = " + day(APRIL, 1) + " WHERE account_id = " + account.getAccountId());
+    }
+
+    private static long day(YearMonth month, int dayOfMonth) {
+        return month.atDay(dayOfMonth).toEpochDay();
+    }
+
+    private static void post(String accountNumber, long day, long amount) throws SQLException {
+        try (Connection conn = DatabaseUtil.getWriteConnection()) {
+            InterestAccruals.roll(conn, accountNumber, day);
+        }
+        TestDatabase.execute("UPDATE accounts SET balance = balance + " + amount + " WHERE account_number = '" + accountNumber + "'");
+    }
+
+    private static long balanceDays(String accountNumber, YearMonth period, long today) throws SQLException {
+        try (Connection conn = DatabaseUtil.getReadConnection()) {
+            Map<String, Long> result = InterestAccruals.balanceDays(conn, Collections.singletonList(accountNumber), period, today);
+            return result.get(accountNumber);
+        }
+    }
+
+    private static long accrued(String accountNumber, YearMonth period) throws SQLException {
+        return queryLong("SELECT COALESCE(SUM(i.balance_days), 0) FROM interest_accruals i JOIN accounts a ON a.account_id = i.account_id " +
+                "WHERE a.account_number = '" + accountNumber + "' AND i.period = '" + period + "'");
+    }
+
+    // Deposit 5_000 on the 11th, withdraw 3_000 on the 21st:
+    // 10 days at 10_000 + 10 days at 15_000 + 10 days at 12_000 = 370_000, an average of 12_333
+    @Test
+    public void averagesMidMonthDepositsAndWithdrawals() throws SQLException {
+        post("7000000001", day(APRIL, 11), 5_000);
+        post("7000000001", day(APRIL, 21), -3_000);
+
+        assertEquals(250_000, accrued("7000000001", APRIL));
+        long balanceDays = balanceDays("7000000001", APRIL, day(MAY, 5));
+        assertEquals(370_000, balanceDays);
+        assertEquals(12_333, balanceDays / APRIL.lengthOfMonth());
+        // An untouched account is worth its balance for every day of the month
+        assertEquals(300_000, balanceDays("7000000002", APRIL, day(MAY, 5)));
+    }
+
+    // Mid-month, the open stretch only runs to the end of today
+    @Test
+    public void countsThePeriodSoFarUpToToday() throws SQLException {
+        post("7000000001", day(APRIL, 11), 5_000);
+
+        assertEquals(10 * 10_000 + 5 * 15_000, balanceDays("7000000001", APRIL, day(APRIL, 15)));
+        assertEquals(0, balanceDays("7000000001", MAY, day(APRIL, 15)));
+    }
+
+    // A withdrawal on 3 May closes April's last stretch (21st to 30th at 12_000) and
+    // starts May with the 1st and 2nd at 12_000, then 2_000 from the 3rd
+    @Test
+    public void splitsTheRollAtTheMonthBoundary() throws SQLException {
+        post("7000000001", day(APRIL, 11), 5_000);
+        post("7000000001", day(APRIL, 21), -3_000);
+        long openStretch = balanceDays("7000000001", APRIL, day(MAY, 2));
+
+        post("7000000001", day(MAY, 3), -10_000);
+
+        assertEquals(370_000, accrued("7000000001", APRIL));
+        assertEquals(openStretch, accrued("7000000001", APRIL));
+        assertEquals(24_000, accrued("7000000001", MAY));
+        assertEquals(day(MAY, 3), queryLong("SELECT accrued_through FROM accounts WHERE account_number = '7000000001'"));
+        // Through 10 May: 24_000 + 8 days at 2_000
+        assertEquals(40_000, balanceDays("7000000001", MAY, day(MAY, 10)));
+        assertEquals(370_000, balanceDays("7000000001", APRIL, day(MAY, 10)));
+    }
+
+    // Only the first posting of a day rolls; later ones that day add nothing
+    @Test
+    public void rollsOncePerDay() throws SQLException {
+        post("7000000001", day(APRIL, 11), 5_000);
+        post("7000000001", day(APRIL, 11), 5_000);
+
+        assertEquals(100_000, accrued("7000000001", APRIL));
+        assertEquals(10 * 10_000 + 20 * 20_000, balanceDays("7000000001", APRIL, day(MAY, 1)));
+    }
+
+    @Test
+    public void rollsManyAccountsAcrossTheBoundary() throws SQLException {
+        try (Connection conn = DatabaseUtil.getWriteConnection()) {
+            InterestAccruals.roll(conn, Arrays.asList("7000000001", "7000000002"), day(MAY, 6));
+        }
+
+        for (String accountNumber : new String[]{"7000000001", "7000000002"}) {
+            assertEquals(300_000, accrued(accountNumber, APRIL));
+            assertEquals(50_000, accrued(accountNumber, MAY));
+        }
+    }
+
+    // The real postings roll to today before changing the balance
+    @Test
+    public void postingRollsTheBalanceHeldUntilToday() throws SQLException {
+        long today = LocalDate.now().toEpochDay();
+        TestDatabase.execute("UPDATE accounts SET accrued_through = " + (today - 3) + " WHERE account_number = '7000000001'");
+
+        assertEquals(15_000, (long) new AccountDAO().postDeposit("7000000001", 5_000, "Deposit"));
+
+        assertEquals(30_000, queryLong("SELECT SUM(i.balance_days) FROM interest_accruals i JOIN accounts a ON a.account_id = i.account_id " +
+                "WHERE a.account_number = '7000000001'"));
+        assertEquals(today, queryLong("SELECT accrued_through FROM accounts WHERE account_number = '7000000001'"));
+    }
+}
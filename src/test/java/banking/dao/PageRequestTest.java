@@ -0,0 +1,132 @@
+package banking.dao;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PageRequestTest {
+    private static final int ROWS = 53;
+
+    private Connection conn;
+
+    @Before
+    public void createRows() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE rows (id INTEGER PRIMARY KEY, opened INTEGER NOT NULL)");
+            // Few distinct sort values, so most page boundaries fall inside a run of ties
+            for (int id = 1; id <= ROWS; id++) {
+                stmt.execute("INSERT INTO rows (id, opened) VALUES (" + id + ", " + (id * 7 % 5) + ")");
+            }
+        }
+    }
+
+    @After
+    public void close() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    public void buildsSeekAndOrderClauses() {
+        PageRequest first = PageRequest.first(20, PageRequest.Direction.ASCENDING);
+        PageRequest later = PageRequest.after(3L, 10, 20, PageRequest.Direction.DESCENDING);
+
+        assertTrue(first.isFirstPage());
+        assertEquals("", first.seekClause("opened", "id"));
+        assertEquals(" ORDER BY opened ASC, id ASC LIMIT ?", first.orderBy("opened", "id"));
+        assertFalse(later.isFirstPage());
+        assertEquals(" AND (opened, id) < (?, ?)", later.seekClause("opened", "id"));
+        assertEquals(" AND id < ?", later.seekClause("id", "id"));
+        assertEquals(" ORDER BY id DESC LIMIT ?", later.orderBy("id", "id"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesOversizedPages() {
+        PageRequest.first(PageRequest.MAX_SIZE + 1, PageRequest.Direction.ASCENDING);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesACursorWithoutAKey() {
+        PageRequest.after(1L, null, 10, PageRequest.Direction.ASCENDING);
+    }
+
+    @Test
+    public void walksEveryRowOnceInEitherDirection() throws SQLException {
+        for (PageRequest.Direction direction : PageRequest.Direction.values()) {
+            for (int size : new int[]{1, 4, 10, ROWS, ROWS + 1}) {
+                List<Integer> walked = new ArrayList<>();
+                int pages = 0;
+                PageRequest request = PageRequest.first(size, direction);
+                while (request != null) {
+                    Page<Integer> page = fetch(request, false);
+                    assertTrue(page.getItems().size() <= size);
+                    walked.addAll(page.getItems());
+                    pages++;
+                    request = page.getNext();
+                }
+                assertEquals(direction + " by " + size, expected(direction, false), walked);
+                assertEquals((ROWS + size - 1) / size, pages);
+            }
+        }
+    }
+
+    @Test
+    public void pagesByKeyAlone() throws SQLException {
+        List<Integer> walked = new ArrayList<>();
+        PageRequest request = PageRequest.first(7, PageRequest.Direction.DESCENDING);
+        while (request != null) {
+            Page<Integer> page = fetch(request, true);
+            walked.addAll(page.getItems());
+            request = page.getNext();
+        }
+        assertEquals(expected(PageRequest.Direction.DESCENDING, true), walked);
+    }
+
+    // Reads one page the way the DAOs do, keeping the raw cursor values of the last row
+    private Page<Integer> fetch(PageRequest request, boolean keyOnly) throws SQLException {
+        String sortColumn = keyOnly ? "id" : "opened";
+        String sql = "SELECT id, opened FROM rows WHERE 1 = 1" +
+                request.seekClause(sortColumn, "id") + request.orderBy(sortColumn, "id");
+        List<Integer> ids = new ArrayList<>();
+        Object lastSort = null;
+        Object lastKey = null;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            request.bind(pstmt, 1, keyOnly);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getInt("id"));
+                    if (ids.size() == request.getSize()) {
+                        lastSort = rs.getLong(sortColumn);
+                        lastKey = rs.getInt("id");
+                    }
+                }
+            }
+        }
+        return Page.of(ids, request, lastSort, lastKey);
+    }
+
+    private List<Integer> expected(PageRequest.Direction direction, boolean keyOnly) throws SQLException {
+        String dir = direction == PageRequest.Direction.ASCENDING ? " ASC" : " DESC";
+        String sql = "SELECT id FROM rows ORDER BY " + (keyOnly ? "" : "opened" + dir + ", ") + "id" + dir;
+        List<Integer> ids = new ArrayList<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,107 @@
+package banking.model;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class MoneyTest {
+
+    @Test
+    public void parsesPulaIntoThebe() {
+        assertEquals(125000, Money.parse("1250"));
+        assertEquals(125050, Money.parse("1250.5"));
+        assertEquals(125050, Money.parse("1,250.50"));
+        assertEquals(710, Money.parse(" 7.1 "));
+        assertEquals(300, Money.parse("+3"));
+        assertEquals(-5, Money.parse("-0.05"));
+        assertEquals(5, Money.parse(".05"));
+    }
+
+    @Test
+    public void rejectsMalformedAmounts() {
+        for (String text : new String[]{null, "", "  ", ".", "-", "abc", "12a", "1.2.3", "1.234", "1e3"}) {
+            try {
+                Money.parse(text);
+                fail("Parsed " + text);
+            } catch (NumberFormatException expected) {
+                // refused
+            }
+        }
+    }
+
+    @Test
+    public void formatsWithTwoDecimals() {
+        assertEquals("1250.50", Money.format(125050));
+        assertEquals("0.00", Money.format(0));
+        assertEquals("0.07", Money.format(7));
+        assertEquals("-0.05", Money.format(-5));
+        assertEquals("-1250.50", Money.format(-125050));
+        assertEquals(-125050, Money.parse(Money.format(-125050)));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void ofPulaRefusesToOverflow() {
+        Money.ofPula(Long.MAX_VALUE / 10);
+    }
+
+    @Test
+    public void dividesWithTheRequestedRounding() {
+        assertEquals(2, Money.divide(5, 2, RoundingMode.HALF_EVEN));
+        assertEquals(4, Money.divide(7, 2, RoundingMode.HALF_EVEN));
+        assertEquals(-2, Money.divide(-5, 2, RoundingMode.HALF_EVEN));
+        assertEquals(-4, Money.divide(7, -2, RoundingMode.HALF_EVEN));
+        assertEquals(3, Money.divide(5, 2, RoundingMode.HALF_UP));
+        assertEquals(-3, Money.divide(-5, 2, RoundingMode.HALF_UP));
+        assertEquals(2, Money.divide(5, 2, RoundingMode.HALF_DOWN));
+        assertEquals(1, Money.divide(2, 3, RoundingMode.HALF_DOWN));
+        assertEquals(2, Money.divide(5, 2, RoundingMode.FLOOR));
+        assertEquals(-3, Money.divide(-5, 2, RoundingMode.FLOOR));
+        assertEquals(-2, Money.divide(-5, 2, RoundingMode.CEILING));
+        assertEquals(1, Money.divide(1, 3, RoundingMode.UP));
+        assertEquals(0, Money.divide(2, 3, RoundingMode.DOWN));
+        assertEquals(2, Money.divide(4, 2, RoundingMode.UNNECESSARY));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void inexactDivisionFailsWhenRoundingIsUnnecessary() {
+        Money.divide(5, 2, RoundingMode.UNNECESSARY);
+    }
+
+    @Test
+    public void matchesBigDecimalForEveryRoundingMode() {
+        long[][] cases = {{125, 1, 10}, {-125, 1, 10}, {135, 1, 10}, {7, 3, 2}, {-7, 3, 2}, {1001, 500_000_000, Money.RATE_SCALE}};
+        for (long[] c : cases) {
+            for (RoundingMode mode : RoundingMode.values()) {
+                if (mode == RoundingMode.UNNECESSARY) {
+                    continue;
+                }
+                long expected = BigDecimal.valueOf(c[0]).multiply(BigDecimal.valueOf(c[1]))
+                        .divide(BigDecimal.valueOf(c[2]), 0, mode).longValueExact();
+                assertEquals(c[0] + "x" + c[1] + "/" + c[2] + " " + mode, expected, Money.multiplyDivide(c[0], c[1], c[2], mode));
+            }
+        }
+    }
+
+    @Test
+    public void multiplyDivideKeepsProductsBeyondSixtyFourBits() {
+        for (RoundingMode mode : new RoundingMode[]{RoundingMode.HALF_EVEN, RoundingMode.HALF_UP, RoundingMode.DOWN, RoundingMode.FLOOR}) {
+            long expected = BigDecimal.valueOf(Long.MAX_VALUE).multiply(BigDecimal.valueOf(3))
+                    .divide(BigDecimal.valueOf(6), 0, mode).longValueExact();
+            assertEquals(mode.toString(), expected, Money.multiplyDivide(Long.MAX_VALUE, 3, 6, mode));
+        }
+        assertEquals(Long.MAX_VALUE / 2, Money.multiplyDivide(Long.MAX_VALUE / 2, 4, 4, RoundingMode.UNNECESSARY));
+    }
+
+    @Test
+    public void appliesFixedPointRates() {
+        assertEquals(500_000_000L, Money.rate(0.5));
+        assertEquals(500, Money.applyRate(1_000_000, Money.rate(0.0005), RoundingMode.HALF_EVEN));
+        assertEquals(500, Money.applyRate(1001, Money.rate(0.5), RoundingMode.HALF_EVEN));
+        assertEquals(501, Money.applyRate(1001, Money.rate(0.5), RoundingMode.HALF_UP));
+        assertEquals(0.0005, Money.rateValue(Money.rate(0.0005)), 0);
+    }
+}
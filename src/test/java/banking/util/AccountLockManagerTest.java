@@ -0,0 +1,173 @@
+package banking.util;
+
+import banking.controller.AccountController;
+import banking.dao.AccountDAO;
+import banking.model.Account;
+import banking.model.ChequeAccount;
+import banking.model.Customer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static banking.util.TestDatabase.queryLong;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// A deadlock shows up as a task that never finishes, so every wait here has a timeout
+public class AccountLockManagerTest {
+    private static final int THREADS = 8;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @After
+    public void shutDown() {
+        executor.shutdownNow();
+        TestDatabase.close();
+    }
+
+    private static void awaitAll(List<Future<?>> tasks) throws Exception {
+        for (Future<?> task : tasks) {
+            try {
+                task.get(30, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                fail("Deadlocked: a task did not finish");
+            }
+        }
+    }
+
+    // Half the threads lock (a, b), the other half (b, a), as opposite transfers do
+    @Test
+    public void oppositeOrdersNeverDeadlock() throws Exception {
+        AccountLockManager locks = new AccountLockManager(256);
+        assertNotEquals(locks.stripeIndex("8000000001"), locks.stripeIndex("8000000002"));
+        int rounds = 20_000;
+        long[] counter = new long[1];
+
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            boolean forward = t % 2 == 0;
+            tasks.add(executor.submit(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    try (AccountLockManager.Lease lease = forward
+                            ? locks.lock("8000000001", "8000000002")
+                            : locks.lock("8000000002", "8000000001")) {
+                        counter[0]++;
+                    }
+                }
+            }));
+        }
+        awaitAll(tasks);
+
+        // A plain increment only adds up if the lease excluded every other thread
+        assertEquals((long) THREADS * rounds, counter[0]);
+        assertTrue(locks.getContended() > 0);
+    }
+
+    // While another thread holds the lower stripe, a lock(higher, lower) must wait for it
+    // without holding the higher one, which a single-account lock can still take
+    @Test
+    public void takesStripesInAscendingOrder() throws Exception {
+        AccountLockManager locks = new AccountLockManager(256);
+        String lower = "8000000001";
+        String higher = "8000000002";
+        if (locks.stripeIndex(lower) > locks.stripeIndex(higher)) {
+            lower = "8000000002";
+            higher = "8000000001";
+        }
+        String low = lower;
+        String high = higher;
+
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> holder = executor.submit(() -> {
+            try (AccountLockManager.Lease lease = locks.lock(low)) {
+                held.countDown();
+                release.await();
+            }
+            return null;
+        });
+        assertTrue(held.await(5, TimeUnit.SECONDS));
+
+        Future<?> both = executor.submit(() -> {
+            locks.lock(high, low).close();
+        });
+        while (locks.getContended() == 0) {
+            Thread.sleep(1);
+        }
+
+        Future<?> single = executor.submit(() -> {
+            locks.lock(high).close();
+        });
+        single.get(5, TimeUnit.SECONDS);
+        assertFalse(both.isDone());
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        both.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void lockingTwoAccountsOnOneStripeTakesItOnce() throws Exception {
+        AccountLockManager locks = new AccountLockManager(1);
+
+        Future<?> task = executor.submit(() -> {
+            locks.lock("8000000001", "8000000002").close();
+            locks.lock("8000000001").close();
+        });
+        task.get(5, TimeUnit.SECONDS);
+        assertEquals(2, locks.getAcquisitions());
+    }
+
+    // The same through the controller: transfers both ways between two accounts all
+    // post, and the money each way nets out
+    @Test
+    public void oppositeTransfersComplete() throws Exception {
+        openAccounts();
+        AccountController controller = new AccountController();
+        int transfers = 50;
+
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            boolean forward = t % 2 == 0;
+            tasks.add(executor.submit(() -> {
+                for (int i = 0; i < transfers; i++) {
+                    if (forward) {
+                        controller.transfer("8000000001", "8000000002", 10, "Forward");
+                    } else {
+                        controller.transfer("8000000002", "8000000001", 10, "Back");
+                    }
+                }
+            }));
+        }
+        awaitAll(tasks);
+
+        assertEquals(100_000, queryLong("SELECT balance FROM accounts WHERE account_number = '8000000001'"));
+        assertEquals(100_000, queryLong("SELECT balance FROM accounts WHERE account_number = '8000000002'"));
+        assertEquals((long) THREADS * transfers, queryLong("SELECT COUNT(*) FROM transfers"));
+    }
+
+    private static void openAccounts() throws SQLException {
+        TestDatabase.openMigrated();
+        TestDatabase.execute("INSERT INTO customers (customer_id, first_name, surname, email) VALUES (1, 'Kabo', 'Molefe', 'kabo@example.com')");
+        Customer customer = new Customer(1, "Kabo", "Molefe", null, null, "kabo@example.com");
+        for (String accountNumber : new String[]{"8000000001", "8000000002"}) {
+            Account account = new ChequeAccount(accountNumber, "Main", customer, "Molefe Ltd", "Plot 1");
+            account.deposit(100_000);
+            assertTrue(new AccountDAO().createAccount(account));
+        }
+        assertNotEquals(AccountLockManager.shared().stripeIndex("8000000001"),
+                AccountLockManager.shared().stripeIndex("8000000002"));
+    }
+}
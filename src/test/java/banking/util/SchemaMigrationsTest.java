@@ -0,0 +1,218 @@
+package banking.util;
+
+import banking.dao.AccountDAO;
+import banking.dao.TransactionDAO;
+import banking.model.Account;
+import banking.model.ChequeAccount;
+import banking.model.EpochMillis;
+import banking.model.Transaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static banking.util.TestDatabase.execute;
+import static banking.util.TestDatabase.migrateTo;
+import static banking.util.TestDatabase.queryLong;
+import static banking.util.TestDatabase.queryString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Runs every migration over data written by the original schema and checks what it became
+public class SchemaMigrationsTest {
+
+    @Before
+    public void openDatabase() {
+        TestDatabase.open();
+    }
+
+    @After
+    public void closeDatabase() {
+        TestDatabase.close();
+    }
+
+    // Rows as the first release wrote them: REAL money, LocalDateTime text, account numbers as keys
+    private static void seedBaseline() throws SQLException {
+        migrateTo(1);
+        execute("INSERT INTO customers (customer_id, first_name, surname, address, phone_number, email) VALUES " +
+                        "(1, 'Kabo', 'Molefe', 'Gaborone', '71000001', 'kabo@example.com'), " +
+                        "(2, 'Neo', 'Dube', 'Francistown', '71000002', 'neo@example.com')",
+                "INSERT INTO accounts (account_number, customer_id, account_type, balance, branch, date_opened, " +
+                        "is_active, company_name, company_address) VALUES " +
+                        "('1000000001', 1, 'Savings Account', 1250.5, 'Main', '2024-03-15T10:20:30.123', 1, NULL, NULL), " +
+                        "('1000000002', 1, 'Cheque Account', 19.99, 'Main', '2024-03-15T10:20', 1, 'Molefe Ltd', 'Plot 1'), " +
+                        "('1000000003', 2, 'Investment Account', 0.1, 'North', '2023-12-31T23:59:59.999999', 1, NULL, NULL)",
+                "INSERT INTO transactions (account_number, transaction_type, amount, balance_after, description, timestamp) VALUES " +
+                        "('1000000001', 'DEPOSIT', 1250.5, 1250.5, 'Deposit', '2024-03-15T10:20:30.123'), " +
+                        "('1000000002', 'DEPOSIT', 20, 20, 'Initial deposit', '2024-03-15T10:20'), " +
+                        "('1000000002', 'FEE', 0.01, 19.99, 'Monthly fee', '2024-03-31T23:59:59.999'), " +
+                        "('1000000003', 'DEPOSIT', 0.2, 0.2, 'Birthday gift', '2023-12-31T23:59:59.999999'), " +
+                        "('1000000003', 'FEE', 0.1, 0.1, 'Monthly fee', '2024-01-31T12:00:00.001'), " +
+                        "('1000000001', 'DEPOSIT', 1, 1251.5, 'Deposit', '2024-03-16T09:00:00.000')",
+                "DELETE FROM transactions WHERE transaction_id = 6");
+
+        migrateTo(5);
+        execute("INSERT INTO transfers (transfer_id, from_account, to_account, amount, description, timestamp) VALUES " +
+                        "(1, '1000000002', '1000000003', 5.25, 'Rent', '2024-04-02T09:15:00.250')",
+                "INSERT INTO transactions (account_number, transaction_type, amount, balance_after, description, timestamp, transfer_id) VALUES " +
+                        "('1000000002', 'TRANSFER_OUT', 5.25, 14.74, 'Rent', '2024-04-02T09:15:00.250', 1), " +
+                        "('1000000003', 'TRANSFER_IN', 5.25, 5.35, 'Rent', '2024-04-02T09:15:00.250', 1)",
+                // The newest id deleted: only the carried-over counter still knows it was used
+                "INSERT INTO transactions (account_number, transaction_type, amount, balance_after, timestamp) " +
+                        "VALUES ('1000000001', 'DEPOSIT', 1, 1, '2024-04-03T00:00:00.000')",
+                "DELETE FROM transactions WHERE transaction_id = 9");
+    }
+
+    private static long epoch(String localDateTime) {
+        return EpochMillis.of(LocalDateTime.parse(localDateTime));
+    }
+
+    // type_code, amount, balance_after, description (dictionary or inline), timestamp, transfer_id
+    private static void assertLedgerRow(long id, long accountId, int typeCode, long amount, long balanceAfter,
+                                        String description, boolean inDictionary, long timestamp, Long transferId) throws SQLException {
+        String where = " FROM transactions WHERE transaction_id = " + id;
+        assertEquals("account of " + id, accountId, queryLong("SELECT account_id" + where));
+        assertEquals("type of " + id, typeCode, queryLong("SELECT type_code" + where));
+        assertEquals("amount of " + id, amount, queryLong("SELECT amount" + where));
+        assertEquals("balance of " + id, balanceAfter, queryLong("SELECT balance_after" + where));
+        assertEquals("time of " + id, timestamp, queryLong("SELECT timestamp" + where));
+        assertEquals("typeof time of " + id, "integer", queryString("SELECT typeof(timestamp)" + where));
+        if (inDictionary) {
+            assertNull(queryString("SELECT description" + where));
+            assertEquals(description, queryString("SELECT d.text FROM transactions t JOIN transaction_descriptions d " +
+                    "ON d.description_id = t.description_id WHERE t.transaction_id = " + id));
+        } else {
+            assertEquals(0, queryLong("SELECT COUNT(description_id)" + where));
+            assertEquals(description, queryString("SELECT description" + where));
+        }
+        if (transferId == null) {
+            assertEquals(0, queryLong("SELECT COUNT(transfer_id)" + where));
+        } else {
+            assertEquals((long) transferId, queryLong("SELECT transfer_id" + where));
+        }
+    }
+
+    @Test
+    public void migratesBaselineDataToTheLatestSchema() throws SQLException {
+        seedBaseline();
+        new SchemaMigrator(SchemaMigrations.all()).migrate();
+
+        assertEquals(SchemaMigrations.all().size(), queryLong("SELECT COUNT(*) FROM schema_version"));
+        assertEquals(23, new SchemaMigrator(SchemaMigrations.all()).getCurrentVersion());
+        assertEquals(0, new SchemaMigrator(SchemaMigrations.all()).migrate());
+
+        // Accounts: integer keys in rowid order, thebe balances, epoch open times
+        assertEquals(2, queryLong("SELECT account_id FROM accounts WHERE account_number = '1000000002'"));
+        assertEquals(125050, queryLong("SELECT balance FROM accounts WHERE account_id = 1"));
+        assertEquals(1999, queryLong("SELECT balance FROM accounts WHERE account_id = 2"));
+        assertEquals(10, queryLong("SELECT balance FROM accounts WHERE account_id = 3"));
+        assertEquals(epoch("2024-03-15T10:20:30.123"), queryLong("SELECT date_opened FROM accounts WHERE account_id = 1"));
+        assertEquals(epoch("2024-03-15T10:20"), queryLong("SELECT date_opened FROM accounts WHERE account_id = 2"));
+        assertEquals(epoch("2023-12-31T23:59:59.999"), queryLong("SELECT date_opened FROM accounts WHERE account_id = 3"));
+
+        // Ledger: codes, thebe, account keys, dictionary or inline descriptions, epoch times
+        assertEquals(7, queryLong("SELECT COUNT(*) FROM transactions"));
+        assertLedgerRow(1, 1, 1, 125050, 125050, "Deposit", true, epoch("2024-03-15T10:20:30.123"), null);
+        assertLedgerRow(2, 2, 1, 2000, 2000, "Initial deposit", true, epoch("2024-03-15T10:20"), null);
+        assertLedgerRow(3, 2, 4, 1, 1999, "Monthly fee", true, epoch("2024-03-31T23:59:59.999"), null);
+        assertLedgerRow(4, 3, 1, 20, 20, "Birthday gift", false, epoch("2023-12-31T23:59:59.999"), null);
+        assertLedgerRow(5, 3, 4, 10, 10, "Monthly fee", true, epoch("2024-01-31T12:00:00.001"), null);
+        assertLedgerRow(7, 2, 6, 525, 1474, "Rent", false, epoch("2024-04-02T09:15:00.250"), 1L);
+        assertLedgerRow(8, 3, 5, 525, 535, "Rent", false, epoch("2024-04-02T09:15:00.250"), 1L);
+
+        assertEquals(2, queryLong("SELECT from_account_id FROM transfers WHERE transfer_id = 1"));
+        assertEquals(3, queryLong("SELECT to_account_id FROM transfers WHERE transfer_id = 1"));
+        assertEquals(525, queryLong("SELECT amount FROM transfers WHERE transfer_id = 1"));
+        assertEquals(epoch("2024-04-02T09:15:00.250"), queryLong("SELECT timestamp FROM transfers WHERE transfer_id = 1"));
+
+        // The AUTOINCREMENT counter survived every rebuild, so the deleted id 9 stays retired
+        execute("INSERT INTO transactions (account_id, type_code, amount, balance_after, timestamp) VALUES (1, 1, 1, 1, 0)");
+        assertEquals(10, queryLong("SELECT MAX(transaction_id) FROM transactions"));
+
+        assertEquals(1, queryLong("SELECT COUNT(*) FROM product_rules WHERE account_type = 'Savings Account' AND kind = 'RATE'"));
+        assertEquals(1_000_000_000L, queryLong("SELECT next_value FROM id_blocks WHERE name = 'account_number'"));
+    }
+
+    @Test
+    public void migratedRowsReadBackThroughTheDaos() throws SQLException {
+        seedBaseline();
+        TestDatabase.migrate();
+
+        Account cheque = new AccountDAO().getAccountByNumber("1000000002");
+        assertTrue(cheque instanceof ChequeAccount);
+        assertEquals(1999, cheque.getBalance());
+        assertEquals("Molefe Ltd", ((ChequeAccount) cheque).getCompanyName());
+
+        List<Transaction> history = new TransactionDAO().getTransactionsByAccountNumber("1000000002");
+        assertEquals(3, history.size());
+        int fees = 0;
+        for (Transaction transaction : history) {
+            if (transaction.getType() == Transaction.TransactionType.FEE) {
+                fees++;
+                assertEquals("Monthly fee", transaction.getDescription());
+                assertEquals(1, transaction.getAmount());
+            }
+            if (transaction.getType() == Transaction.TransactionType.TRANSFER_OUT) {
+                assertEquals("Rent", transaction.getDescription());
+            }
+        }
+        assertEquals(1, fees);
+    }
+
+    // Another workstation on the old schema may post between a chunked copy and its swap
+    @Test
+    public void swapsCopyRowsPostedAfterTheChunkedCopy() throws SQLException {
+        seedBaseline();
+
+        migrateTo(11);
+        assertEquals(7, queryLong("SELECT COUNT(*) FROM transactions_new"));
+        execute("INSERT INTO transactions (account_number, transaction_type, amount, balance_after, description, timestamp) " +
+                "VALUES ('1000000001', 'WITHDRAWAL', 2.5, 1248, 'Withdrawal', '2024-04-20T08:00:00.500')");
+
+        migrateTo(15);
+        assertEquals(8, queryLong("SELECT COUNT(*) FROM transactions_new"));
+        execute("INSERT INTO transactions (account_number, transaction_type, amount, balance_after, description, timestamp) " +
+                "VALUES ('1000000002', 'DEPOSIT', 300, 2299, 'Deposit', '2024-04-25T12:00:00.000')");
+
+        migrateTo(18);
+        assertEquals(9, queryLong("SELECT COUNT(*) FROM transactions_new"));
+        execute("INSERT INTO transactions (account_id, transaction_type, amount, balance_after, description, timestamp) " +
+                "VALUES (1, 'WITHDRAWAL', 500, 124550, 'Withdrawal', '2024-05-01T10:00:00.042')");
+
+        migrateTo(21);
+        assertEquals(10, queryLong("SELECT COUNT(*) FROM transactions_new"));
+        execute("INSERT INTO transactions (account_id, transaction_type, amount, balance_after, description, timestamp) " +
+                "VALUES (1, 'INTEREST', 63, 124613, 'Monthly interest payment', " + epoch("2024-05-31T23:00:00.007") + ")");
+
+        new SchemaMigrator(SchemaMigrations.all()).migrate();
+
+        assertEquals(11, queryLong("SELECT COUNT(*) FROM transactions"));
+        assertLedgerRow(10, 1, 2, 250, 124800, "Withdrawal", true, epoch("2024-04-20T08:00:00.500"), null);
+        assertLedgerRow(11, 2, 1, 300, 2299, "Deposit", true, epoch("2024-04-25T12:00:00.000"), null);
+        assertLedgerRow(12, 1, 2, 500, 124550, "Withdrawal", true, epoch("2024-05-01T10:00:00.042"), null);
+        assertLedgerRow(13, 1, 3, 63, 124613, "Monthly interest payment", true, epoch("2024-05-31T23:00:00.007"), null);
+    }
+
+    // A ledger row whose account is gone has no key to take; the re-keying stops instead of dropping it
+    @Test
+    public void rekeyingStopsAtALedgerRowWithoutAnAccount() throws SQLException {
+        seedBaseline();
+        execute("INSERT INTO transactions (account_number, transaction_type, amount, balance_after, timestamp) " +
+                "VALUES ('1000000099', 'DEPOSIT', 1, 1, '2024-04-04T00:00:00.000')");
+        try {
+            new SchemaMigrator(SchemaMigrations.all()).migrate();
+            fail("Dropped or kept a ledger row without an account");
+        } catch (SQLException expected) {
+            // stopped in V15
+        }
+
+        assertEquals(14, new SchemaMigrator(SchemaMigrations.all()).getCurrentVersion());
+        assertEquals(0, queryLong("SELECT COUNT(*) FROM transactions_new WHERE transaction_id >= 10"));
+        assertEquals(1, queryLong("SELECT COUNT(*) FROM transactions WHERE account_number = '1000000099'"));
+    }
+}
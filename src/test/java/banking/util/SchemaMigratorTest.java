@@ -0,0 +1,118 @@
+package banking.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import static banking.util.TestDatabase.execute;
+import static banking.util.TestDatabase.queryLong;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SchemaMigratorTest {
+    private static final Migration SOURCE = Migration.sql(1, "Source rows",
+            "CREATE TABLE src (id INTEGER PRIMARY KEY, value INTEGER NOT NULL)",
+            "WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < 25) " +
+                    "INSERT INTO src (id, value) SELECT i, i * 10 FROM n");
+
+    private static Migration copy(int chunkSize) {
+        return Migration.chunked(2, "Copy rows",
+                Arrays.asList("CREATE TABLE IF NOT EXISTS dst (id INTEGER PRIMARY KEY, value INTEGER NOT NULL CHECK (value >= 0))"),
+                "INSERT INTO dst SELECT id, value FROM src WHERE id > (SELECT COALESCE(MAX(id), 0) FROM dst) ORDER BY id LIMIT ?",
+                chunkSize);
+    }
+
+    @Before
+    public void openDatabase() {
+        TestDatabase.open();
+    }
+
+    @After
+    public void closeDatabase() {
+        TestDatabase.close();
+    }
+
+    @Test
+    public void appliesPendingMigrationsInVersionOrderOnce() throws SQLException {
+        SchemaMigrator migrator = new SchemaMigrator(Arrays.asList(copy(4), SOURCE));
+
+        assertEquals(2, migrator.migrate());
+        assertEquals(2, migrator.getCurrentVersion());
+        assertEquals(25, queryLong("SELECT COUNT(*) FROM dst"));
+
+        assertEquals(0, migrator.migrate());
+        assertEquals(25, queryLong("SELECT COUNT(*) FROM dst"));
+        assertEquals(2, queryLong("SELECT COUNT(*) FROM schema_version"));
+    }
+
+    @Test
+    public void refusesAMigrationChangedAfterItWasApplied() throws SQLException {
+        new SchemaMigrator(Arrays.asList(SOURCE)).migrate();
+
+        Migration edited = Migration.sql(1, "Source rows", "CREATE TABLE src (id INTEGER PRIMARY KEY)");
+        try {
+            new SchemaMigrator(Arrays.asList(edited)).migrate();
+            fail("Applied over a changed migration");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("was changed after it was applied"));
+        }
+    }
+
+    @Test
+    public void chunkSizeIsNotPartOfTheChecksum() {
+        assertEquals(copy(4).getChecksum(), copy(5000).getChecksum());
+        assertNotEquals(copy(4).getChecksum(), SOURCE.getChecksum());
+    }
+
+    @Test
+    public void rollsBackAFailedTransactionalMigration() throws SQLException {
+        new SchemaMigrator(Arrays.asList(SOURCE)).migrate();
+        Migration broken = Migration.sql(2, "Broken",
+                "CREATE TABLE half_done (x INTEGER)",
+                "INSERT INTO missing_table VALUES (1)");
+        try {
+            new SchemaMigrator(Arrays.asList(SOURCE, broken)).migrate();
+            fail("Broken migration applied");
+        } catch (SQLException expected) {
+            // reported
+        }
+
+        assertEquals(0, queryLong("SELECT COUNT(*) FROM sqlite_master WHERE name = 'half_done'"));
+        assertEquals(1, new SchemaMigrator(Arrays.asList(SOURCE)).getCurrentVersion());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesDuplicateVersions() {
+        new SchemaMigrator(Arrays.asList(SOURCE, Migration.sql(1, "Again", "SELECT 1")));
+    }
+
+    // A chunked migration that stops part way keeps its committed chunks and carries on
+    // from there on the next start, without copying any row twice
+    @Test
+    public void resumesAChunkedMigrationAfterAFailure() throws SQLException {
+        new SchemaMigrator(Arrays.asList(SOURCE)).migrate();
+        execute("UPDATE src SET value = -1 WHERE id = 13");
+        SchemaMigrator migrator = new SchemaMigrator(Arrays.asList(SOURCE, copy(4)));
+        try {
+            migrator.migrate();
+            fail("Copied a row the CHECK constraint refuses");
+        } catch (SQLException expected) {
+            // stopped at the chunk holding id 13
+        }
+        assertEquals(12, queryLong("SELECT COUNT(*) FROM dst"));
+        assertEquals(1, migrator.getCurrentVersion());
+
+        // Fix the data that stopped it, then start again
+        execute("UPDATE src SET value = 130 WHERE id = 13");
+        assertEquals(1, migrator.migrate());
+
+        assertEquals(2, migrator.getCurrentVersion());
+        assertEquals(25, queryLong("SELECT COUNT(*) FROM dst"));
+        assertEquals(0, queryLong("SELECT COUNT(*) FROM src s LEFT JOIN dst d ON d.id = s.id WHERE d.value IS NOT s.value"));
+    }
+}
@@ -0,0 +1,83 @@
+package banking.util;
+
+import banking.dao.IdempotencyDAO;
+import banking.dao.TransactionDescriptions;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+// A private in-memory database per test, reached through DatabaseUtil's pool like the
+// app's own. Each open() starts from an empty database.
+public final class TestDatabase {
+    private static int opened;
+
+    private TestDatabase() {
+    }
+
+    public static synchronized void open() {
+        DatabaseUtil.closeConnection();
+        Properties props = new Properties();
+        props.setProperty("banking.db.inMemory", "true");
+        props.setProperty("banking.db.path", "banking-test-" + (++opened));
+        props.setProperty("banking.db.maintenance", "false");
+        DatabaseUtil.configure(StorageProfile.fromProperties(props));
+        // Otherwise a key cached against an earlier test's database would replay here
+        IdempotencyDAO.clearCache();
+    }
+
+    // An empty database at the latest schema
+    public static void openMigrated() throws SQLException {
+        open();
+        migrate();
+    }
+
+    // Applies every pending migration
+    public static void migrate() throws SQLException {
+        new SchemaMigrator(SchemaMigrations.all()).migrate();
+        // The description dictionary is cached per process; load this database's
+        TransactionDescriptions.register();
+    }
+
+    public static void close() {
+        DatabaseUtil.closeConnection();
+    }
+
+    // Applies the first versions migrations only
+    public static void migrateTo(int version) throws SQLException {
+        new SchemaMigrator(SchemaMigrations.all().subList(0, version)).migrate();
+    }
+
+    public static void execute(String... statements) throws SQLException {
+        try (Connection conn = DatabaseUtil.getWriteConnection();
+             Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        }
+    }
+
+    public static long queryLong(String sql) throws SQLException {
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            if (!rs.next()) {
+                throw new SQLException("No row for " + sql);
+            }
+            return rs.getLong(1);
+        }
+    }
+
+    public static String queryString(String sql) throws SQLException {
+        try (Connection conn = DatabaseUtil.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            if (!rs.next()) {
+                throw new SQLException("No row for " + sql);
+            }
+            return rs.getString(1);
+        }
+    }
+}